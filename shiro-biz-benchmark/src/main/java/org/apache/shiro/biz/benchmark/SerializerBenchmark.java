@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.apache.shiro.biz.cache.redis.serializer.BinarySerializer;
+import org.apache.shiro.biz.cache.redis.serializer.CompressionSerializer;
+import org.apache.shiro.biz.cache.redis.serializer.FastjsonSerializer;
+import org.apache.shiro.biz.cache.redis.serializer.FlexjsonSerializer;
+import org.apache.shiro.biz.cache.redis.serializer.InternalSerializer;
+import org.apache.shiro.biz.cache.redis.serializer.XstreamSerializer;
+import org.apache.shiro.session.mgt.SimpleOnlineSession;
+import org.crazycake.shiro.serializer.RedisSerializer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * cache.redis.serializer 各序列化实现的吞吐量基准测试。
+ * <p>序列化结果的字节数作为 <code>serialize:payloadBytes</code> 辅助指标输出，内存分配速率通过 <code>-prof gc</code> 获取：</p>
+ * <pre>java -jar target/benchmarks.jar SerializerBenchmark -prof gc</pre>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class SerializerBenchmark {
+
+	@Param({ "internal", "fastjson", "flexjson", "xstream", "binary", "binary+lz4" })
+	public String codec;
+
+	@Param({ "session", "principal" })
+	public String fixture;
+
+	private RedisSerializer<Object> serializer;
+	private Object source;
+	private byte[] payload;
+
+	@Setup
+	public void setup() throws Exception {
+		boolean session = "session".equals(fixture);
+		source = session ? SerializerFixtures.session() : SerializerFixtures.principal();
+		serializer = session ? (RedisSerializer) sessionSerializer(codec) : (RedisSerializer) principalSerializer(codec);
+		payload = serializer.serialize(source);
+		// 校验可以正确反序列化，避免测量到异常路径
+		if (serializer.deserialize(payload) == null) {
+			throw new IllegalStateException(codec + " could not round-trip " + fixture);
+		}
+	}
+
+	/**
+	 * 序列化结果大小，作为 JMH 辅助指标与吞吐量一起输出
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class PayloadSize {
+
+		/** 最近一次序列化结果的字节数 */
+		public long payloadBytes;
+
+	}
+
+	/**
+	 * 显式声明泛型的子类，以便 Fastjson/Flexjson 解析出目标类型
+	 */
+	private static RedisSerializer<SimpleOnlineSession> sessionSerializer(String codec) {
+		switch (codec) {
+		case "fastjson":
+			return new FastjsonSerializer<SimpleOnlineSession>() {};
+		case "flexjson":
+			return new FlexjsonSerializer<SimpleOnlineSession>() {};
+		default:
+			return (RedisSerializer) genericSerializer(codec);
+		}
+	}
+
+	private static RedisSerializer<ShiroPrincipal> principalSerializer(String codec) {
+		switch (codec) {
+		case "fastjson":
+			return new FastjsonSerializer<ShiroPrincipal>() {};
+		case "flexjson":
+			return new FlexjsonSerializer<ShiroPrincipal>() {};
+		default:
+			return (RedisSerializer) genericSerializer(codec);
+		}
+	}
+
+	private static RedisSerializer<Object> genericSerializer(String codec) {
+		switch (codec) {
+		case "internal":
+			return new InternalSerializer<Object>();
+		case "xstream":
+			return new XstreamSerializer<Object>();
+		case "binary":
+			return new BinarySerializer<Object>();
+		case "binary+lz4":
+			return new CompressionSerializer<Object>(new BinarySerializer<Object>(), CompressionSerializer.Codec.FAST,
+					CompressionSerializer.DEFAULT_THRESHOLD);
+		default:
+			throw new IllegalArgumentException("Unknown codec " + codec);
+		}
+	}
+
+	@Benchmark
+	public byte[] serialize(PayloadSize size) throws Exception {
+		byte[] bytes = serializer.serialize(source);
+		size.payloadBytes = bytes.length;
+		return bytes;
+	}
+
+	@Benchmark
+	public Object deserialize() throws Exception {
+		return serializer.deserialize(payload);
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.apache.shiro.session.mgt.SimpleOnlineSession;
+
+import com.github.hiwepy.jwt.JwtPayload.RolePair;
+
+/**
+ * 基准测试数据：贴近生产环境的会话与用户对象
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public final class SerializerFixtures {
+
+	public static final int PERMISSIONS = 200;
+	public static final int ROLES = 10;
+	public static final int SESSION_ATTRIBUTES = 20;
+
+	private SerializerFixtures() {
+	}
+
+	/**
+	 * @return a principal with {@link #PERMISSIONS} permissions and {@link #ROLES} roles
+	 */
+	public static ShiroPrincipal principal() {
+		ShiroPrincipal principal = new ShiroPrincipal("zhangsan", "5f4dcc3b5aa765d61d8327deb882cf99");
+		principal.setUserid("1024");
+		principal.setUserkey("u-1024");
+		principal.setUsercode("ZS001");
+		principal.setNickname("张三");
+		principal.setSalt("c2FsdC12YWx1ZQ==");
+		principal.setRoleid("1");
+		principal.setRole("admin");
+		List<RolePair> roles = new ArrayList<RolePair>(ROLES);
+		for (int i = 0; i < ROLES; i++) {
+			roles.add(new RolePair(String.valueOf(i), "role_" + i, "角色" + i));
+		}
+		principal.setRoles(roles);
+		Set<String> perms = new HashSet<String>(PERMISSIONS * 2);
+		String[] modules = { "user", "role", "menu", "dept", "dict", "log", "notice", "report" };
+		String[] actions = { "view", "add", "edit", "delete", "export" };
+		for (int i = 0; perms.size() < PERMISSIONS; i++) {
+			perms.add(modules[i % modules.length] + ":" + actions[i % actions.length] + ":" + (i / 40));
+		}
+		principal.setPerms(perms);
+		Map<String, Object> profile = new HashMap<String, Object>();
+		profile.put("deptId", "D0001");
+		profile.put("deptName", "研发中心");
+		profile.put("email", "zhangsan@example.com");
+		profile.put("mobile", "13800000000");
+		profile.put("level", 3);
+		principal.setProfile(profile);
+		return principal;
+	}
+
+	/**
+	 * @return an online session with {@link #SESSION_ATTRIBUTES} attributes
+	 */
+	public static SimpleOnlineSession session() {
+		SimpleOnlineSession session = new SimpleOnlineSession("192.168.1.100");
+		session.setId("3f1c2d9a-6b7e-4c1d-8f2a-9e5b7c3d1a20");
+		session.setUserAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/89.0 Safari/537.36");
+		session.setSystemHost("10.0.0.12");
+		session.setLastAccessTime(new Date());
+		for (int i = 0; i < SESSION_ATTRIBUTES; i++) {
+			switch (i % 4) {
+			case 0:
+				session.setAttribute("attr.string." + i, "value-" + i);
+				break;
+			case 1:
+				session.setAttribute("attr.long." + i, System.currentTimeMillis() + i);
+				break;
+			case 2:
+				session.setAttribute("attr.boolean." + i, (i & 1) == 0);
+				break;
+			default:
+				session.setAttribute("attr.int." + i, i * 31);
+				break;
+			}
+		}
+		return session;
+	}
+
+}
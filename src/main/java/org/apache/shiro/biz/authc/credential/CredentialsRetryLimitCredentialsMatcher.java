@@ -21,14 +21,27 @@ import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.ExcessiveAttemptsException;
 import org.apache.shiro.authc.credential.HashedCredentialsMatcher;
+import org.apache.shiro.biz.authc.credential.retry.CacheCredentialRetryStore;
+import org.apache.shiro.biz.authc.credential.retry.CredentialRetryStore;
+import org.apache.shiro.biz.authc.credential.retry.MemoryCredentialRetryStore;
+import org.apache.shiro.biz.authc.credential.retry.RetryWindow;
+import org.apache.shiro.biz.authc.exception.HashingRejectedException;
 import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.util.Initializable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.CacheBuilder;
 
 /**
- * 密码校验器，支持重复提交次数校验，防范暴力破解
+ * 密码校验器，支持重复提交次数校验，防范暴力破解。
+ * 设置 {@link #setCalibrationTargetMillis(long)} 后，{@link #init()} 时测量本机哈希耗时并记录推荐的迭代次数。
  * @author <a href="https://github.com/hiwepy">hiwepy</a>
  */
-public class CredentialsRetryLimitCredentialsMatcher extends HashedCredentialsMatcher {
+public class CredentialsRetryLimitCredentialsMatcher extends HashedCredentialsMatcher implements Initializable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CredentialsRetryLimitCredentialsMatcher.class);
 
     /**
      * The default active retry times cache name, equal to {@code shiro-activeSessionCache}.
@@ -36,15 +49,20 @@ public class CredentialsRetryLimitCredentialsMatcher extends HashedCredentialsMa
     public static final String CREDENTIALS_RETRY_CACHE_NAME = "shiro-credentialsRetryCache";
 
     public static final int CREDENTIALS_RETRY_TIMES_LIMIT = 5;
+
+    /**
+     * The maximum number of decoded stored credentials kept in memory.
+     */
+    public static final int DECODED_CREDENTIALS_LIMIT = 10000;
 	
     /**
      * The CacheManager to use to acquire the retry times.
      */
     private CacheManager cacheManager;
     /**
-     * The Cache instance responsible for caching retry times.
+     * The store responsible for counting retry times within a sliding window.
      */
-    private Cache<Object, AtomicInteger> credentialsRetryTimes;
+    private volatile CredentialRetryStore credentialsRetryStore;
 	/**
      * The credentials retry limit, defaults to {@link #CREDENTIALS_RETRY_TIMES_LIMIT}.
      */
@@ -53,30 +71,133 @@ public class CredentialsRetryLimitCredentialsMatcher extends HashedCredentialsMa
      * The name of the retry times, defaults to {@link #CREDENTIALS_RETRY_CACHE_NAME}.
      */
 	protected String credentialsRetryCacheName = CREDENTIALS_RETRY_CACHE_NAME;
+	/**
+	 * The sliding window of the retry times in milliseconds, defaults to {@link MemoryCredentialRetryStore#DEFAULT_WINDOW}.
+	 */
+	protected long credentialsRetryWindow = MemoryCredentialRetryStore.DEFAULT_WINDOW;
+	/**
+	 * Limits concurrent hashing, not limited if null.
+	 */
+	protected HashingBulkhead hashingBulkhead;
+	/**
+	 * Remembers recent successful verifications, disabled if null.
+	 */
+	protected VerifiedCredentialsCache verifiedCredentialsCache;
+	/**
+	 * The target latency of one hash checked by {@link #init()} in milliseconds, {@code 0} skips the calibration.
+	 */
+	protected long calibrationTargetMillis = 0;
+	/**
+	 * Stored (encoded) credentials -> decoded hash, avoids decoding hex/base64 on every attempt. Least recently used entries are evicted.
+	 */
+	private final com.google.common.cache.Cache<String, Object> decodedCredentials = CacheBuilder.newBuilder()
+			.maximumSize(DECODED_CREDENTIALS_LIMIT).build();
+
+	/**
+	 * Logs the recommended hash iterations for this hardware if {@link #getCalibrationTargetMillis()} is set.
+	 */
+	@Override
+	public void init() {
+		if (calibrationTargetMillis > 0) {
+			calibrate(calibrationTargetMillis);
+		}
+	}
 
     @Override
     public boolean doCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) {
 		
-		AtomicInteger retryCount = getCachedRetryTimes(token.getPrincipal());
-		if (retryCount == null) {
-			retryCount = new AtomicInteger(0);
-			getCredentialsRetryCacheLazy().put(token.getPrincipal(), retryCount);
-		}
-		
 		//retry count + 1
-		if (retryCount.incrementAndGet() >= getCredentialsRetryTimesLimit()) {
+		if (getCredentialsRetryStoreLazy().incrementAndGet(token.getPrincipal()) >= getCredentialsRetryTimesLimit()) {
 			throw new ExcessiveAttemptsException();
 		}
 		
-		boolean matches = super.doCredentialsMatch(token, info);
+		// 近期已校验通过的相同凭证只需一次 HMAC
+		boolean matches = verifiedCredentialsCache != null && verifiedCredentialsCache.isVerified(token, info);
+		if (!matches) {
+			// 只哈希一次，与预先解码的存储凭证做常量时间比较
+			try {
+				matches = hashingBulkhead != null ? hashingBulkhead.execute(() -> super.doCredentialsMatch(token, info))
+						: super.doCredentialsMatch(token, info);
+			} catch (HashingRejectedException e) {
+				// 未校验凭证，不计入重试次数
+				getCredentialsRetryStoreLazy().decrement(token.getPrincipal());
+				throw e;
+			}
+			if (matches && verifiedCredentialsCache != null) {
+				verifiedCredentialsCache.verified(token, info);
+			}
+		}
         if(matches) {
             //clear retry count
-        	getCredentialsRetryCacheLazy().remove(token.getPrincipal());
+        	getCredentialsRetryStoreLazy().reset(token.getPrincipal());
         }
         return matches;
         
     }
 
+    @Override
+    protected Object getCredentials(AuthenticationInfo info) {
+    	Object credentials = info.getCredentials();
+    	String encoded = credentials instanceof String ? (String) credentials
+    			: credentials instanceof char[] ? new String((char[]) credentials) : null;
+    	if (encoded == null) {
+    		return super.getCredentials(info);
+    	}
+    	Object decoded = decodedCredentials.getIfPresent(encoded);
+    	if (decoded == null) {
+    		decoded = super.getCredentials(info);
+    		decodedCredentials.put(encoded, decoded);
+    	}
+    	return decoded;
+    }
+
+    @Override
+    public void setStoredCredentialsHexEncoded(boolean storedCredentialsHexEncoded) {
+    	super.setStoredCredentialsHexEncoded(storedCredentialsHexEncoded);
+    	decodedCredentials.invalidateAll();
+    }
+
+    /**
+     * Measures {@link #getHashAlgorithmName()} on this hardware and returns the iterations needed to hit the target latency.
+     * The configured {@link #getHashIterations()} is not changed, as stored credentials were hashed with it.
+     * @param targetMillis the target latency of one hash in milliseconds, e.g. 50
+     * @return the calibration result
+     */
+    public HashIterationsCalibrator.Calibration calibrate(long targetMillis) {
+    	HashIterationsCalibrator.Calibration calibration = HashIterationsCalibrator.calibrate(getHashAlgorithmName(), targetMillis);
+    	LOG.info("{} with {} iterations takes about {} ms, {} iterations recommended for a {} ms target.",
+    			getHashAlgorithmName(), getHashIterations(), String.format("%.3f", calibration.estimateMillis(getHashIterations())),
+    			calibration.getIterations(), targetMillis);
+    	return calibration;
+    }
+
+    public long getCalibrationTargetMillis() {
+		return calibrationTargetMillis;
+	}
+
+	/**
+	 * @param calibrationTargetMillis the target latency of one hash in milliseconds, e.g. 50; {@code 0} disables the calibration at {@link #init()}
+	 */
+	public void setCalibrationTargetMillis(long calibrationTargetMillis) {
+		this.calibrationTargetMillis = calibrationTargetMillis;
+	}
+
+    public VerifiedCredentialsCache getVerifiedCredentialsCache() {
+		return verifiedCredentialsCache;
+	}
+
+	public void setVerifiedCredentialsCache(VerifiedCredentialsCache verifiedCredentialsCache) {
+		this.verifiedCredentialsCache = verifiedCredentialsCache;
+	}
+
+    public HashingBulkhead getHashingBulkhead() {
+		return hashingBulkhead;
+	}
+
+	public void setHashingBulkhead(HashingBulkhead hashingBulkhead) {
+		this.hashingBulkhead = hashingBulkhead;
+	}
+
     /**
      * Sets the cacheManager to use.
      * @param cacheManager the manager to use for constructing the session cache.
@@ -109,40 +230,64 @@ public class CredentialsRetryLimitCredentialsMatcher extends HashedCredentialsMa
 		this.credentialsRetryCacheName = credentialsRetryCacheName;
 	}
 	
+	public long getCredentialsRetryWindow() {
+		return credentialsRetryWindow;
+	}
+
+	/**
+	 * Sets the sliding window of the retry times, applies to stores created after this call.
+	 * @param credentialsRetryWindow the window length in milliseconds
+	 */
+	public void setCredentialsRetryWindow(long credentialsRetryWindow) {
+		this.credentialsRetryWindow = credentialsRetryWindow;
+	}
+
+	/**
+	 * @param credentialsRetryTimes the legacy retry times cache
+	 * @deprecated counters in this cache only expire with the cache itself, use {@link #setCredentialsRetryWindows(Cache)}
+	 */
+	@Deprecated
 	public void setCredentialsRetryTimes(Cache<Object, AtomicInteger> credentialsRetryTimes) {
-		this.credentialsRetryTimes = credentialsRetryTimes;
+		this.credentialsRetryStore = CacheCredentialRetryStore.ofCounters(credentialsRetryTimes, getCredentialsRetryWindow());
+	}
+
+	public void setCredentialsRetryWindows(Cache<Object, RetryWindow> credentialsRetryWindows) {
+		this.credentialsRetryStore = new CacheCredentialRetryStore(credentialsRetryWindows, getCredentialsRetryWindow());
+	}
+
+	public CredentialRetryStore getCredentialsRetryStore() {
+		return credentialsRetryStore;
+	}
+
+	public void setCredentialsRetryStore(CredentialRetryStore credentialsRetryStore) {
+		this.credentialsRetryStore = credentialsRetryStore;
 	}
 
-	private Cache<Object, AtomicInteger> getCredentialsRetryCacheLazy() {
-        if (this.credentialsRetryTimes == null) {
-            this.credentialsRetryTimes = createCredentialsRetryCache();
+	private CredentialRetryStore getCredentialsRetryStoreLazy() {
+		CredentialRetryStore store = this.credentialsRetryStore;
+        if (store == null) {
+        	synchronized (this) {
+        		store = this.credentialsRetryStore;
+        		if (store == null) {
+        			store = createCredentialsRetryStore();
+        			this.credentialsRetryStore = store;
+        		}
+        	}
         }
-        return credentialsRetryTimes;
+        return store;
     }
 
-    protected Cache<Object, AtomicInteger> createCredentialsRetryCache() {
-        Cache<Object, AtomicInteger> cache = null;
+    /**
+     * Creates a cache backed store when a CacheManager is configured, otherwise an in-memory one.
+     * @return the retry store
+     */
+    protected CredentialRetryStore createCredentialsRetryStore() {
         CacheManager mgr = getCacheManager();
         if (mgr != null) {
-            String name = getCredentialsRetryCacheName();
-            cache = mgr.getCache(name);
+            Cache<Object, RetryWindow> cache = mgr.getCache(getCredentialsRetryCacheName());
+            return new CacheCredentialRetryStore(cache, getCredentialsRetryWindow());
         }
-        return cache;
-    }
-    
-    protected AtomicInteger getCachedRetryTimes(Object principal) {
-    	AtomicInteger cached = null;
-        if (principal != null) {
-            Cache<Object, AtomicInteger> cache = getCredentialsRetryCacheLazy();
-            if (cache != null) {
-                cached = getCachedRetryTimes(principal, cache);
-            }
-        }
-        return cached;
-    }
-    
-    protected AtomicInteger getCachedRetryTimes(Object principal, Cache<Object, AtomicInteger> cache) {
-        return cache.get(principal);
+        return new MemoryCredentialRetryStore(getCredentialsRetryWindow());
     }
 	
 }
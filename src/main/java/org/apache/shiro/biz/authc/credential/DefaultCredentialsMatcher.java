@@ -16,14 +16,17 @@
 package org.apache.shiro.biz.authc.credential;
 
 
-import java.util.Arrays;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.security.MessageDigest;
 
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.ExcessiveAttemptsException;
 import org.apache.shiro.authc.credential.CredentialsMatcher;
-import org.apache.shiro.cache.Cache;
+import org.apache.shiro.biz.authc.credential.retry.CacheCredentialRetryStore;
+import org.apache.shiro.biz.authc.credential.retry.CredentialRetryStore;
+import org.apache.shiro.biz.authc.credential.retry.MemoryCredentialRetryStore;
+import org.apache.shiro.biz.authc.credential.retry.RetryWindow;
+import org.apache.shiro.biz.authc.exception.HashingRejectedException;
 import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.codec.CodecSupport;
 import org.slf4j.Logger;
@@ -45,18 +48,35 @@ public class DefaultCredentialsMatcher extends CodecSupport implements Credentia
 
 	protected String credentialsRetryCacheName = DEFAULT_CREDENTIALS_RETRY_CACHE_NAME;
 
+	protected long credentialsRetryWindow = MemoryCredentialRetryStore.DEFAULT_WINDOW;
+
 	protected CacheManager cacheManager;
+	
+	protected volatile CredentialRetryStore credentialsRetryStore;
+	
+	/**
+	 * Limits concurrent credentials matching, not limited if null.
+	 */
+	protected HashingBulkhead hashingBulkhead;
 
 	@Override
 	public boolean doCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) {
 		// check retry
 		checkCredentialsRetry(token);
 		// credentials match
-		boolean matches = credentialsMatch(token, info);
+		boolean matches;
+		try {
+			matches = hashingBulkhead != null ? hashingBulkhead.execute(() -> credentialsMatch(token, info))
+					: credentialsMatch(token, info);
+		} catch (HashingRejectedException e) {
+			// 未校验凭证，不计入重试次数
+			getCredentialsRetryStore().decrement(token.getPrincipal());
+			throw e;
+		}
 		if (matches) {
-			cacheManager.getCache(getCredentialsRetryCacheName()).remove(token.getPrincipal());
+			getCredentialsRetryStore().reset(token.getPrincipal());
 		}
-		return credentialsMatch(token, info);
+		return matches;
 	}
 
 	//匹配用户输入的token的凭证（未加密）与系统提供的凭证（已加密） 
@@ -75,28 +95,58 @@ public class DefaultCredentialsMatcher extends CodecSupport implements Credentia
 		if (isByteSource(tokenCredentials) && isByteSource(accountCredentials)) {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("Both credentials arguments can be easily converted to byte arrays.  Performing "
-						+ "array equals comparison");
+						+ "constant time array equals comparison");
 			}
 			byte[] tokenBytes = toBytes(tokenCredentials);
 			byte[] accountBytes = toBytes(accountCredentials);
-			return Arrays.equals(tokenBytes, accountBytes);
+			return MessageDigest.isEqual(tokenBytes, accountBytes);
 		} else {
 			return accountCredentials.equals(tokenCredentials);
 		}
 	}
 
 	protected void checkCredentialsRetry(AuthenticationToken token) {
-		Cache<Object, AtomicInteger> credentialsRetryCache = cacheManager.getCache(getCredentialsRetryCacheName());
-		AtomicInteger retryCount = credentialsRetryCache.get(token.getPrincipal());
-		if (retryCount == null) {
-			retryCount = new AtomicInteger(0);
-			credentialsRetryCache.put(token.getPrincipal(), retryCount);
-		}
-		if (retryCount.incrementAndGet() >= getRetryLimit()) {
+		if (getCredentialsRetryStore().incrementAndGet(token.getPrincipal()) >= getRetryLimit()) {
 			throw new ExcessiveAttemptsException();
 		}
 	}
 
+	/**
+	 * Returns the retry store, created on first use from {@link #getCacheManager()} if present, otherwise in memory.
+	 * @return the retry store
+	 */
+	public CredentialRetryStore getCredentialsRetryStore() {
+		CredentialRetryStore store = this.credentialsRetryStore;
+		if (store == null) {
+			synchronized (this) {
+				store = this.credentialsRetryStore;
+				if (store == null) {
+					store = cacheManager != null
+							? new CacheCredentialRetryStore(cacheManager.<Object, RetryWindow>getCache(getCredentialsRetryCacheName()), getCredentialsRetryWindow())
+							: new MemoryCredentialRetryStore(getCredentialsRetryWindow());
+					this.credentialsRetryStore = store;
+				}
+			}
+		}
+		return store;
+	}
+
+	public void setCredentialsRetryStore(CredentialRetryStore credentialsRetryStore) {
+		this.credentialsRetryStore = credentialsRetryStore;
+	}
+
+	public long getCredentialsRetryWindow() {
+		return credentialsRetryWindow;
+	}
+
+	/**
+	 * Sets the sliding window of the retry times, applies to stores created after this call.
+	 * @param credentialsRetryWindow the window length in milliseconds
+	 */
+	public void setCredentialsRetryWindow(long credentialsRetryWindow) {
+		this.credentialsRetryWindow = credentialsRetryWindow;
+	}
+
 	public int getRetryLimit() {
 		return retryLimit;
 	}
@@ -113,6 +163,14 @@ public class DefaultCredentialsMatcher extends CodecSupport implements Credentia
 		this.credentialsRetryCacheName = credentialsRetryCacheName;
 	}
 
+	public HashingBulkhead getHashingBulkhead() {
+		return hashingBulkhead;
+	}
+
+	public void setHashingBulkhead(HashingBulkhead hashingBulkhead) {
+		this.hashingBulkhead = hashingBulkhead;
+	}
+
 	public CacheManager getCacheManager() {
 		return cacheManager;
 	}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.authc.credential;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.crypto.hash.SimpleHash;
+import org.apache.shiro.util.Assert;
+import org.apache.shiro.util.ByteSource;
+
+/**
+ * 哈希迭代次数校准：在当前硬件上测量单次迭代耗时，推算达到目标耗时所需的迭代次数。
+ * 迭代次数只影响新生成的密文，已存储的密文需按原迭代次数校验或重新哈希。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public final class HashIterationsCalibrator {
+
+	/**
+	 * The minimum measurement duration used to extrapolate the cost of one iteration.
+	 */
+	private static final long MIN_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+	private static final int SAMPLES = 5;
+
+	private HashIterationsCalibrator() {
+	}
+
+	/**
+	 * Measures the given algorithm and returns the iterations needed to hash one credential in about the target time.
+	 * @param algorithmName the hash algorithm, e.g. <code>SHA-256</code>
+	 * @param targetMillis the target latency of one hash in milliseconds
+	 * @return the calibration result
+	 */
+	public static Calibration calibrate(String algorithmName, long targetMillis) {
+		Assert.hasText(algorithmName, "algorithmName must not be empty");
+		Assert.isTrue(targetMillis > 0, "targetMillis must be positive");
+		ByteSource salt = ByteSource.Util.bytes("calibration-salt");
+		// 预热后按倍增的迭代次数采样，直到单次采样足够长以减少计时误差
+		int iterations = 1024;
+		long elapsed = measure(algorithmName, salt, iterations);
+		while (elapsed < MIN_SAMPLE_NANOS && iterations < (1 << 30)) {
+			iterations <<= 1;
+			elapsed = measure(algorithmName, salt, iterations);
+		}
+		// 重复采样取最小值，排除 JIT 编译和调度带来的抖动
+		for (int i = 0; i < SAMPLES; i++) {
+			elapsed = Math.min(elapsed, measure(algorithmName, salt, iterations));
+		}
+		double nanosPerIteration = (double) elapsed / iterations;
+		long recommended = (long) (TimeUnit.MILLISECONDS.toNanos(targetMillis) / nanosPerIteration);
+		int result = (int) Math.max(1, Math.min(Integer.MAX_VALUE, recommended));
+		return new Calibration(algorithmName, result, targetMillis, nanosPerIteration);
+	}
+
+	private static long measure(String algorithmName, ByteSource salt, int iterations) {
+		long start = System.nanoTime();
+		new SimpleHash(algorithmName, "calibration-credentials", salt, iterations);
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * The result of a calibration run.
+	 */
+	public static final class Calibration {
+
+		private final String algorithmName;
+		private final int iterations;
+		private final long targetMillis;
+		private final double nanosPerIteration;
+
+		Calibration(String algorithmName, int iterations, long targetMillis, double nanosPerIteration) {
+			this.algorithmName = algorithmName;
+			this.iterations = iterations;
+			this.targetMillis = targetMillis;
+			this.nanosPerIteration = nanosPerIteration;
+		}
+
+		public String getAlgorithmName() {
+			return algorithmName;
+		}
+
+		/**
+		 * @return the recommended hash iterations
+		 */
+		public int getIterations() {
+			return iterations;
+		}
+
+		public long getTargetMillis() {
+			return targetMillis;
+		}
+
+		public double getNanosPerIteration() {
+			return nanosPerIteration;
+		}
+
+		/**
+		 * @param iterations the iterations to estimate
+		 * @return the estimated latency of one hash with the given iterations, in milliseconds
+		 */
+		public double estimateMillis(int iterations) {
+			return iterations * nanosPerIteration / TimeUnit.MILLISECONDS.toNanos(1);
+		}
+
+		@Override
+		public String toString() {
+			return "Calibration [algorithmName=" + algorithmName + ", iterations=" + iterations + ", targetMillis="
+					+ targetMillis + ", nanosPerIteration=" + nanosPerIteration + "]";
+		}
+
+	}
+
+}
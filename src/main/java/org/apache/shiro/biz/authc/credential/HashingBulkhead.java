@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.authc.credential;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.shiro.biz.authc.exception.HashingRejectedException;
+import org.apache.shiro.util.Assert;
+
+/**
+ * 凭证哈希并发隔离：限制同时进行的哈希计算数量，登录洪峰时超出的请求在限定时间内等待，
+ * 超时则抛出 {@link HashingRejectedException}，避免所有容器线程都被哈希计算占满。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class HashingBulkhead {
+
+	/**
+	 * The default time to wait for a permit, in milliseconds.
+	 */
+	public static final long DEFAULT_ACQUIRE_TIMEOUT = 1000L;
+
+	private final Semaphore permits;
+	private final int maxConcurrent;
+	private final long acquireTimeout;
+
+	/**
+	 * Creates a bulkhead allowing one concurrent hash per available processor.
+	 */
+	public HashingBulkhead() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_ACQUIRE_TIMEOUT);
+	}
+
+	public HashingBulkhead(int maxConcurrent, long acquireTimeout) {
+		Assert.isTrue(maxConcurrent > 0, "maxConcurrent must be positive");
+		Assert.isTrue(acquireTimeout >= 0, "acquireTimeout must not be negative");
+		this.permits = new Semaphore(maxConcurrent);
+		this.maxConcurrent = maxConcurrent;
+		this.acquireTimeout = acquireTimeout;
+	}
+
+	/**
+	 * Runs the given hashing work once a permit is available.
+	 * @param work the hashing work
+	 * @param <T> the result type
+	 * @return the result of the work
+	 * @throws HashingRejectedException if no permit is available within the acquire timeout
+	 */
+	public <T> T execute(Supplier<T> work) {
+		boolean acquired;
+		try {
+			acquired = permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HashingRejectedException("Interrupted while waiting for a hashing permit.", e);
+		}
+		if (!acquired) {
+			throw new HashingRejectedException("No hashing permit available within " + acquireTimeout + " ms.");
+		}
+		try {
+			return work.get();
+		} finally {
+			permits.release();
+		}
+	}
+
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	public long getAcquireTimeout() {
+		return acquireTimeout;
+	}
+
+	/**
+	 * @return the permits currently in use
+	 */
+	public int getActiveCount() {
+		return maxConcurrent - permits.availablePermits();
+	}
+
+	/**
+	 * @return the estimated number of threads waiting for a permit
+	 */
+	public int getQueueLength() {
+		return permits.getQueueLength();
+	}
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.authc.credential;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.SaltedAuthenticationInfo;
+import org.apache.shiro.codec.CodecSupport;
+import org.apache.shiro.util.Assert;
+
+/**
+ * 短时效的凭证校验结果缓存：记住最近校验成功的凭证，重复登录只需一次 HMAC 计算，无需再次进行慢哈希。
+ * <ul>
+ * <li>缓存以认证主体为键，值为 HMAC(提交的凭证 + 存储的密文 + 盐)，不保存明文；HMAC 密钥默认每个实例随机生成；</li>
+ * <li>每个条目同时记录校验时存储的密文与盐的指纹，查找时指纹不一致（修改密码、重新加密）即丢弃该条目，
+ * 因此旧密码在存储更新后不会再通过校验，不依赖调用方失效；</li>
+ * <li>账号锁定时应调用 {@link #invalidate(Object)} 立即失效，
+ * 修改密码可通过 {@link org.apache.shiro.biz.authz.principal.ShiroPrincipalRepositoryImpl#updateCredentials} 完成加密并失效。</li>
+ * </ul>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class VerifiedCredentialsCache extends CodecSupport {
+
+	/**
+	 * The default time a verification is remembered, 60 seconds.
+	 */
+	public static final long DEFAULT_TTL = TimeUnit.SECONDS.toMillis(60);
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+	private final ConcurrentHashMap<Object, Verified> verified = new ConcurrentHashMap<Object, Verified>();
+	private final SecretKeySpec key;
+	private final ThreadLocal<Mac> macs;
+	private long ttl = DEFAULT_TTL;
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	public VerifiedCredentialsCache() {
+		this(randomKey());
+	}
+
+	public VerifiedCredentialsCache(byte[] secret) {
+		Assert.isTrue(secret != null && secret.length >= 16, "secret must have at least 16 bytes");
+		this.key = new SecretKeySpec(secret.clone(), HMAC_ALGORITHM);
+		this.macs = ThreadLocal.withInitial(() -> {
+			try {
+				Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+				mac.init(key);
+				return mac;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException("Unable to initialize " + HMAC_ALGORITHM, e);
+			}
+		});
+	}
+
+	private static byte[] randomKey() {
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		return secret;
+	}
+
+	/**
+	 * @param token the presented token
+	 * @param info the stored account
+	 * @return true if the same credentials were verified against the same stored credentials within the TTL
+	 */
+	public boolean isVerified(AuthenticationToken token, AuthenticationInfo info) {
+		Object principal = token.getPrincipal();
+		if (principal == null) {
+			return false;
+		}
+		Verified entry = verified.get(principal);
+		if (entry == null) {
+			return false;
+		}
+		if (entry.expiresAt < System.currentTimeMillis()) {
+			verified.remove(principal, entry);
+			return false;
+		}
+		byte[] stored = fingerprint(info);
+		if (stored == null || !MessageDigest.isEqual(entry.stored, stored)) {
+			// 存储的凭证已变化，校验结果不再有效
+			verified.remove(principal, entry);
+			return false;
+		}
+		byte[] mac = mac(token, info);
+		return mac != null && MessageDigest.isEqual(entry.mac, mac);
+	}
+
+	/**
+	 * Remembers a successful verification of the presented credentials.
+	 * @param token the presented token
+	 * @param info the stored account
+	 */
+	public void verified(AuthenticationToken token, AuthenticationInfo info) {
+		Object principal = token.getPrincipal();
+		if (principal == null) {
+			return;
+		}
+		byte[] mac = mac(token, info);
+		byte[] stored = fingerprint(info);
+		if (mac == null || stored == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (verified.size() >= maxEntries && !verified.containsKey(principal)) {
+			purgeExpired(now);
+			if (verified.size() >= maxEntries) {
+				return;
+			}
+		}
+		verified.put(principal, new Verified(mac, stored, now + ttl));
+	}
+
+	/**
+	 * Forgets the verification of the given principal, e.g. when the account is locked or the password changed.
+	 * @param principal the principal as presented in the token
+	 */
+	public void invalidate(Object principal) {
+		if (principal != null) {
+			verified.remove(principal);
+		}
+	}
+
+	public void invalidateAll() {
+		verified.clear();
+	}
+
+	/**
+	 * @param info the stored account
+	 * @return the HMAC of the stored credentials and salt only, identifies the version of the stored credentials
+	 */
+	protected byte[] fingerprint(AuthenticationInfo info) {
+		Object stored = info.getCredentials();
+		if (stored == null || !isByteSource(stored)) {
+			return null;
+		}
+		Mac mac = macs.get();
+		mac.reset();
+		update(mac, toBytes(stored));
+		if (info instanceof SaltedAuthenticationInfo && ((SaltedAuthenticationInfo) info).getCredentialsSalt() != null) {
+			update(mac, ((SaltedAuthenticationInfo) info).getCredentialsSalt().getBytes());
+		}
+		return mac.doFinal();
+	}
+
+	protected byte[] mac(AuthenticationToken token, AuthenticationInfo info) {
+		Object presented = token.getCredentials();
+		Object stored = info.getCredentials();
+		if (presented == null || stored == null || !isByteSource(presented) || !isByteSource(stored)) {
+			return null;
+		}
+		Mac mac = macs.get();
+		mac.reset();
+		update(mac, toBytes(presented));
+		update(mac, toBytes(stored));
+		if (info instanceof SaltedAuthenticationInfo && ((SaltedAuthenticationInfo) info).getCredentialsSalt() != null) {
+			update(mac, ((SaltedAuthenticationInfo) info).getCredentialsSalt().getBytes());
+		}
+		return mac.doFinal();
+	}
+
+	private static void update(Mac mac, byte[] bytes) {
+		// 写入长度前缀，避免不同字段拼接产生歧义
+		int length = bytes.length;
+		mac.update((byte) (length >>> 24));
+		mac.update((byte) (length >>> 16));
+		mac.update((byte) (length >>> 8));
+		mac.update((byte) length);
+		mac.update(bytes);
+	}
+
+	protected void purgeExpired(long now) {
+		Iterator<Map.Entry<Object, Verified>> it = verified.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue().expiresAt < now) {
+				it.remove();
+			}
+		}
+	}
+
+	public int size() {
+		return verified.size();
+	}
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	public void setTtl(long ttl) {
+		Assert.isTrue(ttl > 0, "ttl must be positive");
+		this.ttl = ttl;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		Assert.isTrue(maxEntries > 0, "maxEntries must be positive");
+		this.maxEntries = maxEntries;
+	}
+
+	private static final class Verified {
+
+		private final byte[] mac;
+		private final byte[] stored;
+		private final long expiresAt;
+
+		Verified(byte[] mac, byte[] stored, long expiresAt) {
+			this.mac = mac;
+			this.stored = stored;
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
+}
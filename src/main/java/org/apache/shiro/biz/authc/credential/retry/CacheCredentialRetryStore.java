@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.authc.credential.retry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.util.Assert;
+
+/**
+ * 基于 Shiro {@link Cache} 的重试次数存储，缓存中保存不可变的 {@link RetryWindow}，每次尝试写回新的计数，
+ * 因此远程缓存（返回副本）同样可用。
+ * <p>这是单节点实现：读改写只由本节点内按 key 分段的锁保护，每次尝试需要一次读取加一次写入两次往返；
+ * 多个节点共享同一缓存时，并发尝试的计数会相互覆盖而丢失，限额可被绕过。
+ * 集群部署请使用 {@link JedisCredentialRetryStore} 等基于存储端原子操作的实现。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class CacheCredentialRetryStore implements CredentialRetryStore {
+
+	private static final int DEFAULT_STRIPES = 64;
+
+	private final Cache<Object, RetryWindow> cache;
+	private final Object[] locks;
+	private final long window;
+
+	public CacheCredentialRetryStore(Cache<Object, RetryWindow> cache) {
+		this(cache, MemoryCredentialRetryStore.DEFAULT_WINDOW);
+	}
+
+	public CacheCredentialRetryStore(Cache<Object, RetryWindow> cache, long window) {
+		Assert.notNull(cache, "cache must not be null");
+		Assert.isTrue(window > 0, "window must be positive");
+		this.cache = cache;
+		this.window = window;
+		this.locks = new Object[DEFAULT_STRIPES];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Adapts a legacy cache of plain {@link AtomicInteger} counters. The counters have no window of their own,
+	 * attempts are only forgotten when the cache expires them, as before.
+	 * @param counters the legacy retry times cache
+	 * @param window the window length in milliseconds
+	 * @return the store writing plain counters to the given cache
+	 */
+	public static CacheCredentialRetryStore ofCounters(Cache<Object, AtomicInteger> counters, long window) {
+		Assert.notNull(counters, "counters must not be null");
+		return new CacheCredentialRetryStore(new CounterCache(counters, window), window);
+	}
+
+	@Override
+	public int incrementAndGet(Object key) {
+		long now = System.currentTimeMillis();
+		RetryWindow updated;
+		synchronized (lockFor(key)) {
+			updated = RetryWindow.increment(cache.get(key), now, window);
+			cache.put(key, updated);
+		}
+		return RetryWindow.count(updated, now, window);
+	}
+
+	@Override
+	public void decrement(Object key) {
+		synchronized (lockFor(key)) {
+			RetryWindow current = cache.get(key);
+			if (current == null) {
+				return;
+			}
+			RetryWindow updated = RetryWindow.decrement(current);
+			if (updated == null) {
+				cache.remove(key);
+			} else {
+				cache.put(key, updated);
+			}
+		}
+	}
+
+	@Override
+	public int get(Object key) {
+		return RetryWindow.count(cache.get(key), System.currentTimeMillis(), window);
+	}
+
+	@Override
+	public void reset(Object key) {
+		synchronized (lockFor(key)) {
+			cache.remove(key);
+		}
+	}
+
+	private Object lockFor(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return locks[h & (locks.length - 1)];
+	}
+
+	public Cache<Object, RetryWindow> getCache() {
+		return cache;
+	}
+
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * Presents a cache of {@link AtomicInteger} counters as windows which always start in the current window.
+	 */
+	private static class CounterCache implements Cache<Object, RetryWindow> {
+
+		private final Cache<Object, AtomicInteger> counters;
+		private final long window;
+
+		CounterCache(Cache<Object, AtomicInteger> counters, long window) {
+			this.counters = counters;
+			this.window = window;
+		}
+
+		private RetryWindow toWindow(AtomicInteger counter) {
+			if (counter == null) {
+				return null;
+			}
+			long now = System.currentTimeMillis();
+			return new RetryWindow(now - now % window, counter.get(), 0);
+		}
+
+		@Override
+		public RetryWindow get(Object key) throws CacheException {
+			return toWindow(counters.get(key));
+		}
+
+		@Override
+		public RetryWindow put(Object key, RetryWindow value) throws CacheException {
+			return toWindow(counters.put(key, new AtomicInteger(value.getCurrent())));
+		}
+
+		@Override
+		public RetryWindow remove(Object key) throws CacheException {
+			return toWindow(counters.remove(key));
+		}
+
+		@Override
+		public void clear() throws CacheException {
+			counters.clear();
+		}
+
+		@Override
+		public int size() {
+			return counters.size();
+		}
+
+		@Override
+		public Set<Object> keys() {
+			return counters.keys();
+		}
+
+		@Override
+		public Collection<RetryWindow> values() {
+			Collection<AtomicInteger> values = counters.values();
+			List<RetryWindow> windows = new ArrayList<RetryWindow>(values.size());
+			for (AtomicInteger counter : values) {
+				windows.add(toWindow(counter));
+			}
+			return windows;
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.authc.credential.retry;
+
+/**
+ * 凭证重试次数存储，在滑动时间窗口内原子地累加失败次数
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public interface CredentialRetryStore {
+
+	/**
+	 * Atomically records one attempt for the given key and returns the attempts within the current window, including this one.
+	 * @param key the retry key, usually the principal
+	 * @return the attempts within the sliding window
+	 */
+	int incrementAndGet(Object key);
+
+	/**
+	 * Withdraws one attempt recorded by {@link #incrementAndGet(Object)}, e.g. when it was rejected before the credentials were checked.
+	 * @param key the retry key, usually the principal
+	 */
+	void decrement(Object key);
+
+	/**
+	 * Returns the attempts within the sliding window without recording a new one.
+	 * @param key the retry key, usually the principal
+	 * @return the attempts within the sliding window
+	 */
+	int get(Object key);
+
+	/**
+	 * Clears the attempts of the given key, usually after a successful match.
+	 * @param key the retry key, usually the principal
+	 */
+	void reset(Object key);
+
+}
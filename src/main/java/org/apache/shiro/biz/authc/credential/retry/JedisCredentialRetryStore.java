@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.authc.credential.retry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.shiro.util.Assert;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * 基于 Redis 的重试次数存储，集群内的计数是精确的：每个固定窗口一个计数键，
+ * 每次尝试是一次原子的 Lua 脚本调用（INCR + PEXPIRE 并读取上一窗口计数），只需一次往返；
+ * 滑动窗口计数的近似方式与 {@link RetryWindow} 相同。窗口按本节点时钟划分，节点间时钟需大致同步。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class JedisCredentialRetryStore implements CredentialRetryStore {
+
+	public static final String DEFAULT_KEY_PREFIX = "shiro:retry:";
+
+	private static final String INCREMENT_SCRIPT =
+			"local current = redis.call('INCR', KEYS[1]) "
+			+ "redis.call('PEXPIRE', KEYS[1], ARGV[1]) "
+			+ "return {current, tonumber(redis.call('GET', KEYS[2]) or '0')}";
+
+	private static final String DECREMENT_SCRIPT =
+			"for i = 1, 2 do "
+			+ "if tonumber(redis.call('GET', KEYS[i]) or '0') > 0 then redis.call('DECR', KEYS[i]) return 1 end "
+			+ "end "
+			+ "return 0";
+
+	private final JedisPool jedisPool;
+	private final long window;
+	private String keyPrefix = DEFAULT_KEY_PREFIX;
+
+	public JedisCredentialRetryStore(JedisPool jedisPool) {
+		this(jedisPool, MemoryCredentialRetryStore.DEFAULT_WINDOW);
+	}
+
+	public JedisCredentialRetryStore(JedisPool jedisPool, long window) {
+		Assert.notNull(jedisPool, "jedisPool must not be null");
+		Assert.isTrue(window > 0, "window must be positive");
+		this.jedisPool = jedisPool;
+		this.window = window;
+	}
+
+	@Override
+	public int incrementAndGet(Object key) {
+		long now = System.currentTimeMillis();
+		long start = now - now % window;
+		Object result;
+		try (Jedis jedis = jedisPool.getResource()) {
+			// 保留两个窗口的长度，下一窗口仍需读取本窗口的计数
+			result = jedis.eval(INCREMENT_SCRIPT, keys(key, start), Collections.singletonList(String.valueOf(2 * window)));
+		}
+		List<?> counts = (List<?>) result;
+		return RetryWindow.count(new RetryWindow(start, toInt(counts.get(0)), toInt(counts.get(1))), now, window);
+	}
+
+	@Override
+	public void decrement(Object key) {
+		long now = System.currentTimeMillis();
+		try (Jedis jedis = jedisPool.getResource()) {
+			// 窗口可能在记录后已切换，当前窗口没有计数时撤回上一窗口的
+			jedis.eval(DECREMENT_SCRIPT, keys(key, now - now % window), Collections.<String>emptyList());
+		}
+	}
+
+	@Override
+	public int get(Object key) {
+		long now = System.currentTimeMillis();
+		long start = now - now % window;
+		List<String> counts;
+		try (Jedis jedis = jedisPool.getResource()) {
+			List<String> keys = keys(key, start);
+			counts = jedis.mget(keys.toArray(new String[keys.size()]));
+		}
+		return RetryWindow.count(new RetryWindow(start, toInt(counts.get(0)), toInt(counts.get(1))), now, window);
+	}
+
+	@Override
+	public void reset(Object key) {
+		long now = System.currentTimeMillis();
+		try (Jedis jedis = jedisPool.getResource()) {
+			List<String> keys = keys(key, now - now % window);
+			jedis.del(keys.toArray(new String[keys.size()]));
+		}
+	}
+
+	/**
+	 * @return the keys of the window starting at the given time and of the previous window
+	 */
+	protected List<String> keys(Object key, long start) {
+		String prefix = keyPrefix + key + ":";
+		return Arrays.asList(prefix + start, prefix + (start - window));
+	}
+
+	private static int toInt(Object value) {
+		if (value == null) {
+			return 0;
+		}
+		return value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+	}
+
+	public long getWindow() {
+		return window;
+	}
+
+	public String getKeyPrefix() {
+		return keyPrefix;
+	}
+
+	public void setKeyPrefix(String keyPrefix) {
+		this.keyPrefix = keyPrefix;
+	}
+
+}
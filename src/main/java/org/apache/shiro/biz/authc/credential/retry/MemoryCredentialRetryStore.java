@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.authc.credential.retry;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.shiro.util.Assert;
+
+/**
+ * 基于 {@link ConcurrentHashMap} 的单机重试次数存储，每次尝试只有一次按 key 分段加锁的原子 compute，
+ * 过期的计数在写入过程中周期性清理。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class MemoryCredentialRetryStore implements CredentialRetryStore {
+
+	/**
+	 * The default sliding window, 10 minutes.
+	 */
+	public static final long DEFAULT_WINDOW = TimeUnit.MINUTES.toMillis(10);
+
+	private static final int SWEEP_INTERVAL = 1024;
+
+	private final ConcurrentHashMap<Object, RetryWindow> windows = new ConcurrentHashMap<Object, RetryWindow>();
+	private final AtomicInteger operations = new AtomicInteger();
+	private final long window;
+
+	public MemoryCredentialRetryStore() {
+		this(DEFAULT_WINDOW);
+	}
+
+	public MemoryCredentialRetryStore(long window) {
+		Assert.isTrue(window > 0, "window must be positive");
+		this.window = window;
+	}
+
+	@Override
+	public int incrementAndGet(Object key) {
+		final long now = System.currentTimeMillis();
+		RetryWindow updated = windows.compute(key, (k, v) -> RetryWindow.increment(v, now, window));
+		if ((operations.incrementAndGet() & (SWEEP_INTERVAL - 1)) == 0) {
+			sweep(now);
+		}
+		return RetryWindow.count(updated, now, window);
+	}
+
+	@Override
+	public void decrement(Object key) {
+		windows.computeIfPresent(key, (k, v) -> RetryWindow.decrement(v));
+	}
+
+	@Override
+	public int get(Object key) {
+		return RetryWindow.count(windows.get(key), System.currentTimeMillis(), window);
+	}
+
+	@Override
+	public void reset(Object key) {
+		windows.remove(key);
+	}
+
+	protected void sweep(long now) {
+		Iterator<Map.Entry<Object, RetryWindow>> it = windows.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue().isExpired(now, window)) {
+				it.remove();
+			}
+		}
+	}
+
+	public int size() {
+		return windows.size();
+	}
+
+	public long getWindow() {
+		return window;
+	}
+
+}
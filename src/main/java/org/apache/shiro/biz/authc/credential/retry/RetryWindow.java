@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.authc.credential.retry;
+
+import java.io.Serializable;
+
+/**
+ * 不可变的滑动窗口计数：保存当前与上一个固定窗口的计数，按当前窗口已流逝的比例加权上一窗口计数，
+ * 以两个整数近似滑动窗口，不需要保存每次尝试的时间戳。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public final class RetryWindow implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long start;
+	private final int current;
+	private final int previous;
+
+	public RetryWindow(long start, int current, int previous) {
+		this.start = start;
+		this.current = current;
+		this.previous = previous;
+	}
+
+	/**
+	 * Returns a window with one more attempt recorded at the given time.
+	 * @param window the current window, may be null
+	 * @param now the attempt time in milliseconds
+	 * @param length the window length in milliseconds
+	 * @return the new window
+	 */
+	public static RetryWindow increment(RetryWindow window, long now, long length) {
+		long start = now - now % length;
+		if (window == null || window.start <= start - 2 * length) {
+			return new RetryWindow(start, 1, 0);
+		}
+		if (window.start < start) {
+			return new RetryWindow(start, 1, window.start == start - length ? window.current : 0);
+		}
+		return new RetryWindow(window.start, window.current + 1, window.previous);
+	}
+
+	/**
+	 * Returns a window with the last recorded attempt withdrawn. The attempt stays in {@code current} even if
+	 * the fixed window rolled over since, because {@link #increment(RetryWindow, long, long)} moves it to previous lazily.
+	 * @param window the current window, may be null
+	 * @return the new window, null if no attempt is left
+	 */
+	public static RetryWindow decrement(RetryWindow window) {
+		if (window == null || window.current == 0) {
+			return window;
+		}
+		if (window.current == 1 && window.previous == 0) {
+			return null;
+		}
+		return new RetryWindow(window.start, window.current - 1, window.previous);
+	}
+
+	/**
+	 * Returns the attempts within the sliding window ending at the given time.
+	 * @param window the window, may be null
+	 * @param now the current time in milliseconds
+	 * @param length the window length in milliseconds
+	 * @return the weighted attempts, rounded up
+	 */
+	public static int count(RetryWindow window, long now, long length) {
+		if (window == null) {
+			return 0;
+		}
+		long start = now - now % length;
+		int current;
+		int previous;
+		if (window.start == start) {
+			current = window.current;
+			previous = window.previous;
+		} else if (window.start == start - length) {
+			current = 0;
+			previous = window.current;
+		} else {
+			return 0;
+		}
+		if (previous == 0) {
+			return current;
+		}
+		double weight = 1d - (double) (now - start) / length;
+		return current + (int) Math.ceil(previous * weight);
+	}
+
+	/**
+	 * @param now the current time in milliseconds
+	 * @param length the window length in milliseconds
+	 * @return true if no attempt of this window can be counted any more
+	 */
+	public boolean isExpired(long now, long length) {
+		return start <= now - now % length - 2 * length;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public int getCurrent() {
+		return current;
+	}
+
+	public int getPrevious() {
+		return previous;
+	}
+
+}
@@ -19,12 +19,19 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.shiro.biz.authc.credential.VerifiedCredentialsCache;
+import org.apache.shiro.biz.utils.PasswordEncryptUtils;
 
 import com.github.hiwepy.jwt.JwtPayload.RolePair;
 import com.google.common.collect.Sets;
 
 public abstract class ShiroPrincipalRepositoryImpl implements ShiroPrincipalRepository {
 
+	/**
+	 * The cache of recent successful verifications, shared with the credentials matcher.
+	 */
+	private VerifiedCredentialsCache verifiedCredentialsCache;
+
 	@Override
 	public Set<String> getRoles(Object principal) {
 		Set<String> sets = Sets.newHashSet();
@@ -75,9 +82,46 @@ public abstract class ShiroPrincipalRepositoryImpl implements ShiroPrincipalRepo
 		return sets;
 	}
 	
+	/**
+	 * 锁定账号，子类覆盖时应调用 super.doLock 以失效已缓存的凭证校验结果
+	 */
 	@Override
 	public void doLock(Object principal) {
-		// do nothing
+		invalidateVerifiedCredentials(principal);
+	}
+	
+	/**
+	 * 修改密码：以新盐加密 principal 的 password 字段（明文），并失效已缓存的凭证校验结果；持久化由调用方完成
+	 * @param principal 认证主体对象，password 为新密码明文
+	 * @param algorithmName 哈希算法，如 SHA-256
+	 * @param hashIterations 迭代次数
+	 */
+	public void updateCredentials(ShiroPrincipal principal, String algorithmName, int hashIterations) {
+		PasswordEncryptUtils.encryptPassword(principal, algorithmName, hashIterations);
+		invalidateVerifiedCredentials(principal);
+	}
+
+	/**
+	 * 失效已缓存的凭证校验结果，修改密码后调用
+	 * @param principal 认证主体对象或登录账号
+	 */
+	public void invalidateVerifiedCredentials(Object principal) {
+		if (verifiedCredentialsCache == null || principal == null) {
+			return;
+		}
+		if (principal instanceof ShiroPrincipal) {
+			verifiedCredentialsCache.invalidate(((ShiroPrincipal) principal).getUsername());
+		} else {
+			verifiedCredentialsCache.invalidate(principal);
+		}
+	}
+
+	public VerifiedCredentialsCache getVerifiedCredentialsCache() {
+		return verifiedCredentialsCache;
+	}
+
+	public void setVerifiedCredentialsCache(VerifiedCredentialsCache verifiedCredentialsCache) {
+		this.verifiedCredentialsCache = verifiedCredentialsCache;
 	}
 	
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.caffeine;
+
+import org.apache.shiro.biz.realm.AbstractAuthorizingRealm;
+import org.apache.shiro.subject.PrincipalCollection;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
+/**
+ * 授权信息缓存加载器：配合 <code>refreshAfterWrite</code> 在授权缓存条目过期前由 Realm 异步重新加载，
+ * 注册到 {@link CaffeineCacheManager#setCacheLoaders(java.util.Map)} 中 Realm 的 authorizationCacheName 下。
+ * <p>仅在 Realm 使用默认缓存 key（{@link PrincipalCollection}）时生效，其他类型的 key 返回 null，条目将被移除。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class AuthorizationInfoCacheLoader implements CacheLoader<Object, Object> {
+
+	private final AbstractAuthorizingRealm realm;
+
+	public AuthorizationInfoCacheLoader(AbstractAuthorizingRealm realm) {
+		this.realm = realm;
+	}
+
+	@Override
+	public Object load(Object key) throws Exception {
+		if (key instanceof PrincipalCollection) {
+			return realm.loadAuthorizationInfo((PrincipalCollection) key);
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.caffeine;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.util.Destroyable;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Caffeine Cache Wrapper
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class CaffeineCache<K, V> implements Cache<K, V>, Destroyable {
+
+	protected final String name;
+	protected final com.github.benmanes.caffeine.cache.Cache<K, V> cache;
+
+	public CaffeineCache(com.github.benmanes.caffeine.cache.Cache<K, V> cache) {
+		this(null, cache);
+	}
+
+	public CaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<K, V> cache) {
+		this.name = name;
+		this.cache = cache;
+	}
+
+	@Override
+	public V get(K key) throws CacheException {
+		// 无锁读取；未命中时不加载，已到 refreshAfterWrite 的条目会触发异步刷新
+		return key == null ? null : this.cache.getIfPresent(key);
+	}
+
+	@Override
+	public V put(K key, V value) throws CacheException {
+		this.cache.put(key, value);
+		return value;
+	}
+
+	@Override
+	public V remove(K key) throws CacheException {
+		return key == null ? null : this.cache.asMap().remove(key);
+	}
+
+	@Override
+	public void clear() throws CacheException {
+		this.cache.invalidateAll();
+	}
+
+	@Override
+	public int size() {
+		return Long.valueOf(this.cache.estimatedSize()).intValue();
+	}
+
+	@Override
+	public Set<K> keys() {
+		return this.cache.asMap().keySet();
+	}
+
+	@Override
+	public Collection<V> values() {
+		return this.cache.asMap().values();
+	}
+
+	/**
+	 * Returns the statistics of this region, only populated when the spec contains <code>recordStats</code>.
+	 * @return the caffeine cache stats
+	 */
+	public CacheStats stats() {
+		return this.cache.stats();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		this.cache.invalidateAll();
+		this.cache.cleanUp();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return "CaffeineCache [" + name + "]";
+	}
+
+}
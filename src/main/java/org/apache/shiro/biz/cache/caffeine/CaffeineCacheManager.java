@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.caffeine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.shiro.cache.AbstractCacheManager;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.util.Destroyable;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * Caffeine CacheManager，每个缓存名称（region）对应一个独立的 Caffeine Cache（W-TinyLFU 淘汰策略），
+ * 各 region 通过 {@link Caffeine#from(String)} 规格字符串单独配置，例如：
+ * <code>maximumSize=10000,expireAfterAccess=30m,recordStats</code>。
+ * <p>为 region 注册 {@link CacheLoader} 后可在规格中使用 <code>refreshAfterWrite</code>，
+ * 热点条目过期前由 {@link #getExecutor()} 异步刷新，读请求不会阻塞，参见 {@link AuthorizationInfoCacheLoader}。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class CaffeineCacheManager extends AbstractCacheManager implements Destroyable {
+
+	/**
+	 * The default spec used for regions without an explicit spec.
+	 */
+	public static final String DEFAULT_CACHE_SPEC = "maximumSize=10000,expireAfterAccess=30m";
+
+	/**
+	 * The spec used for regions without an explicit spec, defaults to {@link #DEFAULT_CACHE_SPEC}.
+	 */
+	protected String defaultSpec = DEFAULT_CACHE_SPEC;
+	/**
+	 * Region name -> Caffeine cache spec.
+	 */
+	protected Map<String, String> cacheSpecs = new HashMap<String, String>();
+	/**
+	 * Region name -> loader used to refresh entries ahead of expiration.
+	 */
+	protected Map<String, CacheLoader<Object, Object>> cacheLoaders = new HashMap<String, CacheLoader<Object, Object>>();
+	/**
+	 * The weigher applied to regions whose spec declares <code>maximumWeight</code>.
+	 */
+	protected Weigher<Object, Object> weigher;
+	/**
+	 * The executor running asynchronous refreshes and maintenance, defaults to the common pool.
+	 */
+	protected Executor executor;
+
+	public CaffeineCacheManager() {
+	}
+
+	public CaffeineCacheManager(String defaultSpec) {
+		this.defaultSpec = defaultSpec;
+	}
+
+	public CaffeineCacheManager(String defaultSpec, Map<String, String> cacheSpecs) {
+		this.defaultSpec = defaultSpec;
+		this.setCacheSpecs(cacheSpecs);
+	}
+
+	@Override
+	protected CaffeineCache<Object, Object> createCache(String name) throws CacheException {
+		String spec = getCacheSpec(name);
+		try {
+			Caffeine<Object, Object> builder = Caffeine.from(spec);
+			if (spec.contains("maximumWeight")) {
+				if (weigher == null) {
+					throw new CacheException("Cache region [" + name + "] declares maximumWeight but no weigher is configured.");
+				}
+				builder = builder.weigher(weigher);
+			}
+			if (executor != null) {
+				builder = builder.executor(executor);
+			}
+			CacheLoader<Object, Object> loader = cacheLoaders.get(name);
+			if (loader != null) {
+				return new CaffeineCache<Object, Object>(name, builder.build(loader));
+			}
+			if (spec.contains("refreshAfterWrite")) {
+				throw new CacheException("Cache region [" + name + "] declares refreshAfterWrite but no cache loader is registered.");
+			}
+			return new CaffeineCache<Object, Object>(name, builder.build());
+		} catch (IllegalArgumentException e) {
+			throw new CacheException("Invalid caffeine cache spec [" + spec + "] for region [" + name + "].", e);
+		}
+	}
+
+	/**
+	 * Returns the spec of the given region, falling back to {@link #getDefaultSpec()}.
+	 * @param name the region name
+	 * @return the caffeine cache spec
+	 */
+	protected String getCacheSpec(String name) {
+		String spec = cacheSpecs.get(name);
+		return spec != null ? spec : getDefaultSpec();
+	}
+
+	public String getDefaultSpec() {
+		return defaultSpec;
+	}
+
+	public void setDefaultSpec(String defaultSpec) {
+		this.defaultSpec = defaultSpec;
+	}
+
+	public Map<String, String> getCacheSpecs() {
+		return cacheSpecs;
+	}
+
+	public void setCacheSpecs(Map<String, String> cacheSpecs) {
+		this.cacheSpecs = cacheSpecs != null ? new HashMap<String, String>(cacheSpecs) : new HashMap<String, String>();
+	}
+
+	public Map<String, CacheLoader<Object, Object>> getCacheLoaders() {
+		return cacheLoaders;
+	}
+
+	public void setCacheLoaders(Map<String, CacheLoader<Object, Object>> cacheLoaders) {
+		this.cacheLoaders = cacheLoaders != null ? new HashMap<String, CacheLoader<Object, Object>>(cacheLoaders)
+				: new HashMap<String, CacheLoader<Object, Object>>();
+	}
+
+	public Weigher<Object, Object> getWeigher() {
+		return weigher;
+	}
+
+	public void setWeigher(Weigher<Object, Object> weigher) {
+		this.weigher = weigher;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+}
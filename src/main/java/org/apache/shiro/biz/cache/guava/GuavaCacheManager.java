@@ -16,33 +16,123 @@
 package org.apache.shiro.biz.cache.guava;
 
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.shiro.cache.AbstractCacheManager;
 import org.apache.shiro.cache.CacheException;
 import org.apache.shiro.util.Destroyable;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 
+/**
+ * Guava CacheManager，每个缓存名称（region）对应一个独立的 Guava Cache，
+ * 各 region 的容量、过期策略和统计开关通过 {@link CacheBuilder#from(String)} 规格字符串单独配置，
+ * 例如：<code>maximumSize=10000,expireAfterAccess=30m,recordStats</code>。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
 public class GuavaCacheManager extends AbstractCacheManager implements Destroyable {
-	
+
+	/**
+	 * The default spec used for regions without an explicit spec.
+	 */
+	public static final String DEFAULT_CACHE_SPEC = "maximumSize=10000,expireAfterAccess=30m";
+
+	/**
+	 * The spec used for regions without an explicit spec, defaults to {@link #DEFAULT_CACHE_SPEC}.
+	 */
+	protected String defaultSpec = DEFAULT_CACHE_SPEC;
+	/**
+	 * Region name -> Guava cache spec.
+	 */
+	protected Map<String, String> cacheSpecs = new HashMap<String, String>();
+	/**
+	 * The weigher applied to regions whose spec declares <code>maximumWeight</code>.
+	 */
+	protected Weigher<Object, Object> weigher;
+	/**
+	 * The single cache shared by all regions in earlier versions, used for regions without an explicit spec when set.
+	 * @deprecated configure {@link #setDefaultSpec(String)} and {@link #setCacheSpecs(Map)} instead
+	 */
+	@Deprecated
 	protected LoadingCache<String, Object> cache;
 
 	public GuavaCacheManager() {
 	}
-	
+
+	/**
+	 * Regions without an explicit spec share the given cache, as before per-region specs were supported.
+	 * @param cache the shared cache of the default region
+	 * @deprecated use {@link #GuavaCacheManager(String, Map)}
+	 */
+	@Deprecated
 	public GuavaCacheManager(LoadingCache<String, Object> cache) {
 		this.cache = cache;
 	}
 
-	@Override
-	public void destroy() throws Exception {
-		if (cache != null) {
-			this.cache.invalidateAll();;
-		}
+	public GuavaCacheManager(String defaultSpec) {
+		this.defaultSpec = defaultSpec;
+	}
+
+	public GuavaCacheManager(String defaultSpec, Map<String, String> cacheSpecs) {
+		this.defaultSpec = defaultSpec;
+		this.setCacheSpecs(cacheSpecs);
 	}
 
 	@Override
 	protected GuavaCacheWrapper<Object> createCache(String name) throws CacheException {
-		return new GuavaCacheWrapper<Object>(this.cache);
+		if (cache != null && !cacheSpecs.containsKey(name)) {
+			return new GuavaCacheWrapper<Object>(name, cache);
+		}
+		String spec = getCacheSpec(name);
+		try {
+			CacheBuilder<Object, Object> builder = CacheBuilder.from(spec);
+			if (spec.contains("maximumWeight")) {
+				if (weigher == null) {
+					throw new CacheException("Cache region [" + name + "] declares maximumWeight but no weigher is configured.");
+				}
+				builder = builder.weigher(weigher);
+			}
+			return new GuavaCacheWrapper<Object>(name, builder.<String, Object>build());
+		} catch (IllegalArgumentException e) {
+			throw new CacheException("Invalid guava cache spec [" + spec + "] for region [" + name + "].", e);
+		}
+	}
+
+	/**
+	 * Returns the spec of the given region, falling back to {@link #getDefaultSpec()}.
+	 * @param name the region name
+	 * @return the guava cache spec
+	 */
+	protected String getCacheSpec(String name) {
+		String spec = cacheSpecs.get(name);
+		return spec != null ? spec : getDefaultSpec();
+	}
+
+	public String getDefaultSpec() {
+		return defaultSpec;
+	}
+
+	public void setDefaultSpec(String defaultSpec) {
+		this.defaultSpec = defaultSpec;
+	}
+
+	public Map<String, String> getCacheSpecs() {
+		return cacheSpecs;
+	}
+
+	public void setCacheSpecs(Map<String, String> cacheSpecs) {
+		this.cacheSpecs = cacheSpecs != null ? new HashMap<String, String>(cacheSpecs) : new HashMap<String, String>();
+	}
+
+	public Weigher<Object, Object> getWeigher() {
+		return weigher;
+	}
+
+	public void setWeigher(Weigher<Object, Object> weigher) {
+		this.weigher = weigher;
 	}
 
 }
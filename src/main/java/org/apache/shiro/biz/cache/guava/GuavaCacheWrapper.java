@@ -18,63 +18,88 @@ package org.apache.shiro.biz.cache.guava;
 
 import java.util.Collection;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 
 import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.util.Destroyable;
 
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.CacheStats;
 
 /**
  * Guava Cache Wrapper
  */
-public class GuavaCacheWrapper<V> implements Cache<String, V> {
-	
-	protected LoadingCache<String, V> cache;
-	
-	public GuavaCacheWrapper( LoadingCache<String, V> cache) {
+public class GuavaCacheWrapper<V> implements Cache<String, V>, Destroyable {
+
+	protected final String name;
+	protected final com.google.common.cache.Cache<String, V> cache;
+
+	public GuavaCacheWrapper(com.google.common.cache.Cache<String, V> cache) {
+		this(null, cache);
+	}
+
+	public GuavaCacheWrapper(String name, com.google.common.cache.Cache<String, V> cache) {
+		this.name = name;
 		this.cache = cache;
 	}
-	
+
 	@Override
 	public V get(String key) throws CacheException {
-		try {
-			return (V) this.cache.get(key);
-		} catch (ExecutionException e) {
-			throw new CacheException(e);
-		}
+		// 未命中时直接返回 null，不经过 CacheLoader
+		return key == null ? null : this.cache.getIfPresent(key);
 	}
-	
+
 	@Override
 	public V put(String key, V value) throws CacheException {
 		this.cache.put(key, value);
 		return value;
 	}
-	
+
 	@Override
 	public V remove(String key) throws CacheException {
-		this.cache.invalidate(key);
-		return null;
+		return key == null ? null : this.cache.asMap().remove(key);
 	}
-	
+
 	@Override
 	public void clear() throws CacheException {
 		this.cache.invalidateAll();
 	}
-	
+
 	@Override
 	public int size() {
 		return Long.valueOf(this.cache.size()).intValue();
 	}
-	
+
 	@Override
 	public Set<String> keys() {
 		return this.cache.asMap().keySet();
 	}
-	
+
 	@Override
 	public Collection<V> values() {
 		return this.cache.asMap().values();
 	}
 
+	/**
+	 * Returns the statistics of this region, only populated when the spec contains <code>recordStats</code>.
+	 * @return the guava cache stats
+	 */
+	public CacheStats stats() {
+		return this.cache.stats();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		this.cache.invalidateAll();
+		this.cache.cleanUp();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return "GuavaCache [" + name + "]";
+	}
+
 }
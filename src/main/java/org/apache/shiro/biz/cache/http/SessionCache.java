@@ -15,11 +15,15 @@
  */
 package org.apache.shiro.biz.cache.http;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
+import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.shiro.SecurityUtils;
@@ -35,25 +39,62 @@ import org.slf4j.LoggerFactory;
 
 /**
  * SESSION缓存管理类
+ * <p>每个缓存名称在 Session 中对应一个属性，属性值是按 key 存放的有界 LRU Map（默认最多 {@link #DEFAULT_MAX_ENTRIES} 个条目）。</p>
+ * <ul>
+ * <li>读操作只读取已存在的 Session，不会创建 Session；同一请求内 Map 被缓存到 request 属性中，只读取一次 Session；</li>
+ * <li>写操作在请求由 HttpServletShiroFilter 处理时延迟到请求结束统一写回 Session（每个缓存一次），否则立即写回；
+ * 需要 Session 时在第一次写入时创建，而不是在请求结束、响应已提交之后。</li>
+ * </ul>
  */
 public class SessionCache<K, V> implements Cache<K, V> {
 
-	private Logger logger = LoggerFactory.getLogger(getClass());
+	public static final int DEFAULT_MAX_ENTRIES = 32;
+
+	/**
+	 * Request attribute marking that pending writes will be flushed by {@link #flush(ServletRequest)} at the end of the request.
+	 */
+	public static final String WRITE_BEHIND_ATTRIBUTE = SessionCache.class.getName() + ".WRITE_BEHIND";
+
+	private static final String MEMO_ATTRIBUTE_PREFIX = SessionCache.class.getName() + ".MEMO.";
+	private static final String PENDING_ATTRIBUTE = SessionCache.class.getName() + ".PENDING";
+
+	private static final Logger logger = LoggerFactory.getLogger(SessionCache.class);
 	
-	private String cacheKeyName = null;
+	private final String cacheKeyName;
+	private final int maxEntries;
 
 	public SessionCache(String cacheKeyName) {
+		this(cacheKeyName, DEFAULT_MAX_ENTRIES);
+	}
+
+	public SessionCache(String cacheKeyName, int maxEntries) {
 		this.cacheKeyName = cacheKeyName;
+		this.maxEntries = maxEntries;
 	}
 	
+	/**
+	 * 获取当前 Session，不存在时创建
+	 * @return the current session
+	 * @deprecated reads should not create sessions, use {@link #getSession(boolean)}
+	 */
+	@Deprecated
 	public Session getSession(){
+		return getSession(true);
+	}
+	
+	/**
+	 * 获取当前 Session
+	 * @param create whether to create a session if none exists
+	 * @return the current session, or null
+	 */
+	public Session getSession(boolean create){
+		return currentSession(create);
+	}
+	
+	private static Session currentSession(boolean create){
 		Session session = null;
 		try{
-			Subject subject = SecurityUtils.getSubject();
-			session = subject.getSession(false);
-			if (session == null){
-				session = subject.getSession();
-			}
+			session = SecurityUtils.getSubject().getSession(create);
 		}catch (InvalidSessionException e){
 			logger.error("Invalid session error", e);
 		}catch (UnavailableSecurityManagerException e2){
@@ -62,32 +103,114 @@ public class SessionCache<K, V> implements Cache<K, V> {
 		return session;
 	}
 	
+	private static HttpServletRequest currentRequest() {
+		try {
+			return WebUtils.getHttpRequest(SecurityUtils.getSubject());
+		} catch (UnavailableSecurityManagerException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 获取当前请求对应的缓存 Map：优先取 request 中的缓存，其次取 Session 属性
+	 * @param request the current request, may be null
+	 * @param create whether to create an empty map (and never a session) when none exists
+	 * @return the entries map, or null
+	 */
+	@SuppressWarnings("unchecked")
+	protected LruMap<K, V> getEntries(HttpServletRequest request, boolean create) {
+		String memoAttribute = MEMO_ATTRIBUTE_PREFIX + cacheKeyName;
+		if (request != null) {
+			LruMap<K, V> entries = (LruMap<K, V>) request.getAttribute(memoAttribute);
+			if (entries != null) {
+				return entries;
+			}
+		}
+		LruMap<K, V> entries = null;
+		Session session = getSession(false);
+		if (session != null) {
+			Object attribute = session.getAttribute(cacheKeyName);
+			if (attribute instanceof LruMap) {
+				entries = (LruMap<K, V>) attribute;
+			}
+		}
+		if (entries == null && create) {
+			entries = new LruMap<K, V>(maxEntries);
+		}
+		if (request != null && entries != null) {
+			request.setAttribute(memoAttribute, entries);
+		}
+		return entries;
+	}
+
+	/**
+	 * 写回 Session：请求支持延迟写回时登记到待写列表，否则立即写回。
+	 * <p>延迟写回时如果还没有 Session，则立即创建，确保响应提交前能下发 Session Cookie。</p>
+	 */
+	@SuppressWarnings("unchecked")
+	protected void writeBack(HttpServletRequest request, LruMap<K, V> entries) {
+		if (request != null && Boolean.TRUE.equals(request.getAttribute(WRITE_BEHIND_ATTRIBUTE))) {
+			Map<String, LruMap<?, ?>> pending = (Map<String, LruMap<?, ?>>) request.getAttribute(PENDING_ATTRIBUTE);
+			if (pending == null) {
+				pending = new LinkedHashMap<String, LruMap<?, ?>>();
+				request.setAttribute(PENDING_ATTRIBUTE, pending);
+			}
+			pending.put(cacheKeyName, entries);
+			if (!entries.isEmpty()) {
+				currentSession(true);
+			}
+			return;
+		}
+		store(cacheKeyName, entries);
+	}
+
+	private static void store(String cacheKeyName, LruMap<?, ?> entries) {
+		// 条目为空时不为写操作创建 Session
+		Session session = currentSession(!entries.isEmpty());
+		if (session == null) {
+			return;
+		}
+		if (entries.isEmpty()) {
+			session.removeAttribute(cacheKeyName);
+		} else {
+			session.setAttribute(cacheKeyName, entries);
+		}
+	}
+
+	/**
+	 * 将当前请求内所有 SessionCache 的待写数据写回 Session，每个缓存只写一次。
+	 * @param request the current request
+	 */
 	@SuppressWarnings("unchecked")
+	public static void flush(ServletRequest request) {
+		Map<String, LruMap<?, ?>> pending = (Map<String, LruMap<?, ?>>) request.getAttribute(PENDING_ATTRIBUTE);
+		if (pending == null || pending.isEmpty()) {
+			return;
+		}
+		request.removeAttribute(PENDING_ATTRIBUTE);
+		for (Map.Entry<String, LruMap<?, ?>> entry : pending.entrySet()) {
+			try {
+				store(entry.getKey(), entry.getValue());
+			} catch (InvalidSessionException e) {
+				logger.error("Invalid session error", e);
+			}
+		}
+	}
+	
 	@Override
 	public V get(K key) throws CacheException {
 		if (key == null){
 			return null;
 		}
-		
-		V v = null;
-		
-		Subject subject = SecurityUtils.getSubject();
-		HttpServletRequest request = WebUtils.getHttpRequest(subject);
-		
-		if (request != null){
-			v = (V)request.getAttribute(cacheKeyName);
-			if (v != null){
-				return v;
+		HttpServletRequest request = currentRequest();
+		LruMap<K, V> entries = getEntries(request, false);
+		V value = null;
+		if (entries != null) {
+			synchronized (entries) {
+				value = entries.get(key);
 			}
 		}
-		
-		V value = null;
-		value = (V)getSession().getAttribute(cacheKeyName);
 		logger.debug("get {} {} {}", cacheKeyName, key, request != null ? request.getRequestURI() : "");
-		
-		if (request != null && value != null){
-			request.setAttribute(cacheKeyName, value);
-		}
 		return value;
 	}
 
@@ -96,53 +219,100 @@ public class SessionCache<K, V> implements Cache<K, V> {
 		if (key == null){
 			return null;
 		}
-
-		getSession().setAttribute(cacheKeyName, value);
-		
-		if (logger.isDebugEnabled()){
-			Subject subject = SecurityUtils.getSubject();
-			HttpServletRequest request = WebUtils.getHttpRequest(subject);
-			logger.debug("put {} {} {}", cacheKeyName, key, request != null ? request.getRequestURI() : "");
+		HttpServletRequest request = currentRequest();
+		LruMap<K, V> entries = getEntries(request, true);
+		synchronized (entries) {
+			entries.put(key, value);
 		}
-		
+		writeBack(request, entries);
+		logger.debug("put {} {} {}", cacheKeyName, key, request != null ? request.getRequestURI() : "");
 		return value;
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public V remove(K key) throws CacheException {
-		
+		HttpServletRequest request = currentRequest();
+		LruMap<K, V> entries = getEntries(request, false);
+		if (entries == null) {
+			return null;
+		}
 		V value = null;
-		value = (V)getSession().removeAttribute(cacheKeyName);
+		synchronized (entries) {
+			value = entries.remove(key);
+		}
+		if (value != null) {
+			writeBack(request, entries);
+		}
 		logger.debug("remove {} {}", cacheKeyName, key);
-		
 		return value;
 	}
 
 	@Override
 	public void clear() throws CacheException {
-		getSession().removeAttribute(cacheKeyName);
+		HttpServletRequest request = currentRequest();
+		LruMap<K, V> entries = getEntries(request, false);
+		if (entries == null) {
+			return;
+		}
+		synchronized (entries) {
+			entries.clear();
+		}
+		writeBack(request, entries);
 		logger.debug("clear {}", cacheKeyName);
 	}
 
 	@Override
 	public int size() {
-		logger.debug("invoke session size abstract size method not supported.");
-		return 0;
+		LruMap<K, V> entries = getEntries(currentRequest(), false);
+		if (entries == null) {
+			return 0;
+		}
+		synchronized (entries) {
+			return entries.size();
+		}
 	}
 
 	@Override
 	public Set<K> keys() {
-		logger.debug("invoke session keys abstract size method not supported.");
-		return new HashSet<K>();
+		LruMap<K, V> entries = getEntries(currentRequest(), false);
+		if (entries == null) {
+			return Collections.emptySet();
+		}
+		synchronized (entries) {
+			return new HashSet<K>(entries.keySet());
+		}
 	}
 
 	@Override
 	public Collection<V> values() {
-		logger.debug("invoke session values abstract size method not supported.");
-		return Collections.emptyList();
+		LruMap<K, V> entries = getEntries(currentRequest(), false);
+		if (entries == null) {
+			return Collections.emptyList();
+		}
+		synchronized (entries) {
+			return new ArrayList<V>(entries.values());
+		}
 	}
 	
-	
+	/**
+	 * 按访问顺序淘汰的有界 Map，作为 Session 属性值保存
+	 */
+	public static class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maxEntries;
+
+		public LruMap(int maxEntries) {
+			super(16, 0.75f, true);
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > maxEntries;
+		}
+
+	}
 	
 }
@@ -24,10 +24,22 @@ import org.apache.shiro.cache.CacheManager;
  */
 public class SessionCacheManager implements CacheManager {
 
+	/**
+	 * The maximum number of entries kept per cache in each session.
+	 */
+	private int maxEntries = SessionCache.DEFAULT_MAX_ENTRIES;
+
 	@Override
 	public <K, V> Cache<K, V> getCache(String name) throws CacheException {
-		return new SessionCache<K, V>(name);
+		return new SessionCache<K, V>(name, maxEntries);
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
 	}
 	
 }
-
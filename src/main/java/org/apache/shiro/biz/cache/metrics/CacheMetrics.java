@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.biz.utils.LatencyHistogram;
+
+/**
+ * 单个缓存区域的统计指标：命中、未命中、写入、移除次数及读写延迟直方图，全部基于无锁计数。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class CacheMetrics implements CacheMetricsMBean {
+
+	private final String region;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder puts = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder clears = new LongAdder();
+	private final LatencyHistogram getLatency = new LatencyHistogram();
+	private final LatencyHistogram putLatency = new LatencyHistogram();
+
+	public CacheMetrics(String region) {
+		this.region = region;
+	}
+
+	public void recordGet(boolean hit, long nanos) {
+		if (hit) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		getLatency.record(nanos);
+	}
+
+	public void recordPut(long nanos) {
+		puts.increment();
+		putLatency.record(nanos);
+	}
+
+	public void recordEviction() {
+		evictions.increment();
+	}
+
+	public void recordClear() {
+		clears.increment();
+	}
+
+	@Override
+	public String getRegion() {
+		return region;
+	}
+
+	@Override
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@Override
+	public double getHitRatio() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0d : (double) h / total;
+	}
+
+	@Override
+	public long getPuts() {
+		return puts.sum();
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@Override
+	public long getClears() {
+		return clears.sum();
+	}
+
+	@Override
+	public long getGetCount() {
+		return getLatency.getCount();
+	}
+
+	@Override
+	public double getGetMeanNanos() {
+		return getLatency.getMeanNanos();
+	}
+
+	@Override
+	public long getGetP50Nanos() {
+		return getLatency.getPercentileNanos(50);
+	}
+
+	@Override
+	public long getGetP99Nanos() {
+		return getLatency.getPercentileNanos(99);
+	}
+
+	@Override
+	public long getGetMaxNanos() {
+		return getLatency.getMaxNanos();
+	}
+
+	@Override
+	public long getPutCount() {
+		return putLatency.getCount();
+	}
+
+	@Override
+	public double getPutMeanNanos() {
+		return putLatency.getMeanNanos();
+	}
+
+	@Override
+	public long getPutP50Nanos() {
+		return putLatency.getPercentileNanos(50);
+	}
+
+	@Override
+	public long getPutP99Nanos() {
+		return putLatency.getPercentileNanos(99);
+	}
+
+	@Override
+	public long getPutMaxNanos() {
+		return putLatency.getMaxNanos();
+	}
+
+	public LatencyHistogram getGetLatency() {
+		return getLatency;
+	}
+
+	public LatencyHistogram getPutLatency() {
+		return putLatency;
+	}
+
+	@Override
+	public void reset() {
+		hits.reset();
+		misses.reset();
+		puts.reset();
+		evictions.reset();
+		clears.reset();
+		getLatency.reset();
+		putLatency.reset();
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.metrics;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.LifecycleUtils;
+
+/**
+ * 缓存统计装饰器，可包装任意 {@link Cache} 实现（Guava、Spring、Session、Redis 等），
+ * 记录命中/未命中、写入、移除次数以及 get/put 延迟。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class InstrumentedCache<K, V> implements Cache<K, V>, Destroyable {
+
+	private final Cache<K, V> delegate;
+	private final CacheMetrics metrics;
+
+	public InstrumentedCache(Cache<K, V> delegate, CacheMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public V get(K key) throws CacheException {
+		long start = System.nanoTime();
+		V value = delegate.get(key);
+		metrics.recordGet(value != null, System.nanoTime() - start);
+		return value;
+	}
+
+	@Override
+	public V put(K key, V value) throws CacheException {
+		long start = System.nanoTime();
+		V previous = delegate.put(key, value);
+		metrics.recordPut(System.nanoTime() - start);
+		return previous;
+	}
+
+	@Override
+	public V remove(K key) throws CacheException {
+		V previous = delegate.remove(key);
+		metrics.recordEviction();
+		return previous;
+	}
+
+	@Override
+	public void clear() throws CacheException {
+		delegate.clear();
+		metrics.recordClear();
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	@Override
+	public Set<K> keys() {
+		return delegate.keys();
+	}
+
+	@Override
+	public Collection<V> values() {
+		return delegate.values();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		LifecycleUtils.destroy(delegate);
+	}
+
+	public Cache<K, V> getDelegate() {
+		return delegate;
+	}
+
+	public CacheMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public String toString() {
+		return "InstrumentedCache [" + delegate + "]";
+	}
+
+}
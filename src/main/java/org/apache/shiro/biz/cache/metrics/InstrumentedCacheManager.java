@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.LifecycleUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 缓存统计管理器：包装任意 {@link CacheManager}，为每个缓存区域创建 {@link InstrumentedCache}，
+ * 并将统计指标以 MBean 形式注册到平台 MBeanServer（<code>org.apache.shiro.biz:type=Cache,name=区域名</code>）。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class InstrumentedCacheManager implements CacheManager, Destroyable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(InstrumentedCacheManager.class);
+
+	public static final String DEFAULT_JMX_DOMAIN = "org.apache.shiro.biz";
+
+	private final ConcurrentMap<String, InstrumentedCache> caches = new ConcurrentHashMap<String, InstrumentedCache>();
+	private final ConcurrentMap<String, CacheMetrics> metrics = new ConcurrentHashMap<String, CacheMetrics>();
+
+	private CacheManager cacheManager;
+	private MBeanServer mBeanServer;
+	private String jmxDomain = DEFAULT_JMX_DOMAIN;
+	private boolean jmxEnabled = true;
+
+	public InstrumentedCacheManager() {
+	}
+
+	public InstrumentedCacheManager(CacheManager cacheManager) {
+		this.cacheManager = cacheManager;
+	}
+
+	@Override
+	public <K, V> Cache<K, V> getCache(String name) throws CacheException {
+		InstrumentedCache cache = caches.get(name);
+		if (cache == null) {
+			Cache<K, V> delegate = cacheManager.getCache(name);
+			CacheMetrics regionMetrics = new CacheMetrics(name);
+			InstrumentedCache<K, V> created = new InstrumentedCache<K, V>(delegate, regionMetrics);
+			cache = caches.putIfAbsent(name, created);
+			if (cache == null) {
+				cache = created;
+				metrics.put(name, regionMetrics);
+				register(regionMetrics);
+			}
+		}
+		return cache;
+	}
+
+	protected void register(CacheMetrics regionMetrics) {
+		if (!jmxEnabled) {
+			return;
+		}
+		try {
+			ObjectName objectName = getObjectName(regionMetrics.getRegion());
+			MBeanServer server = getMBeanServer();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(regionMetrics, objectName);
+		} catch (JMException e) {
+			LOG.warn("Unable to register cache metrics MBean for region [{}].", regionMetrics.getRegion(), e);
+		}
+	}
+
+	protected ObjectName getObjectName(String region) throws JMException {
+		return new ObjectName(jmxDomain + ":type=Cache,name=" + ObjectName.quote(region));
+	}
+
+	/**
+	 * Returns the metrics of all regions created so far, keyed by region name.
+	 * @return an unmodifiable view of the region metrics
+	 */
+	public Map<String, CacheMetrics> getMetrics() {
+		return Collections.unmodifiableMap(metrics);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (jmxEnabled) {
+			for (String region : metrics.keySet()) {
+				try {
+					ObjectName objectName = getObjectName(region);
+					if (getMBeanServer().isRegistered(objectName)) {
+						getMBeanServer().unregisterMBean(objectName);
+					}
+				} catch (JMException e) {
+					LOG.warn("Unable to unregister cache metrics MBean for region [{}].", region, e);
+				}
+			}
+		}
+		caches.clear();
+		metrics.clear();
+		LifecycleUtils.destroy(cacheManager);
+	}
+
+	public CacheManager getCacheManager() {
+		return cacheManager;
+	}
+
+	public void setCacheManager(CacheManager cacheManager) {
+		this.cacheManager = cacheManager;
+	}
+
+	public MBeanServer getMBeanServer() {
+		if (mBeanServer == null) {
+			mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		}
+		return mBeanServer;
+	}
+
+	public void setMBeanServer(MBeanServer mBeanServer) {
+		this.mBeanServer = mBeanServer;
+	}
+
+	public String getJmxDomain() {
+		return jmxDomain;
+	}
+
+	public void setJmxDomain(String jmxDomain) {
+		this.jmxDomain = jmxDomain;
+	}
+
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.near;
+
+import java.io.Serializable;
+
+/**
+ * 缓存失效消息：由修改缓存的节点发出，其他节点收到后移除本地一级缓存中对应的条目。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+@SuppressWarnings("serial")
+public class CacheInvalidation implements Serializable {
+
+	/**
+	 * The id of the node which published this message.
+	 */
+	private final String origin;
+	/**
+	 * The cache region name.
+	 */
+	private final String region;
+	/**
+	 * The invalidated key, null means the whole region was cleared.
+	 */
+	private final Object key;
+
+	public CacheInvalidation(String origin, String region, Object key) {
+		this.origin = origin;
+		this.region = region;
+		this.key = key;
+	}
+
+	public String getOrigin() {
+		return origin;
+	}
+
+	public String getRegion() {
+		return region;
+	}
+
+	public Object getKey() {
+		return key;
+	}
+
+	public boolean isClear() {
+		return key == null;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheInvalidation [origin=" + origin + ", region=" + region + ", key=" + key + "]";
+	}
+
+}
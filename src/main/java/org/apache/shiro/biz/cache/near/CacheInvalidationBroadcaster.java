@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.near;
+
+/**
+ * 缓存失效消息广播通道（发布/订阅），如 Redis Pub/Sub。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public interface CacheInvalidationBroadcaster {
+
+	/**
+	 * Publishes the invalidation to all subscribed nodes.
+	 * @param invalidation the invalidation message
+	 */
+	void publish(CacheInvalidation invalidation);
+
+	/**
+	 * Subscribes the listener to invalidations published by any node.
+	 * @param listener the listener to notify
+	 */
+	void subscribe(CacheInvalidationListener listener);
+
+	/**
+	 * Removes the listener from this channel.
+	 * @param listener the listener to remove
+	 */
+	void unsubscribe(CacheInvalidationListener listener);
+
+}
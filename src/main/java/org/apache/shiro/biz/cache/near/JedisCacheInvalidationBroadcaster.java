@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.near;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.Initializable;
+import org.crazycake.shiro.exception.SerializationException;
+import org.crazycake.shiro.serializer.ObjectSerializer;
+import org.crazycake.shiro.serializer.RedisSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * 基于 Redis Pub/Sub 的缓存失效广播，订阅连接运行在独立的守护线程上，断线后自动重连。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class JedisCacheInvalidationBroadcaster implements CacheInvalidationBroadcaster, Initializable, Destroyable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JedisCacheInvalidationBroadcaster.class);
+
+	public static final String DEFAULT_CHANNEL = "shiro:cache:invalidation";
+
+	private static final long RECONNECT_INTERVAL = 3000;
+
+	private final CopyOnWriteArrayList<CacheInvalidationListener> listeners = new CopyOnWriteArrayList<CacheInvalidationListener>();
+
+	private JedisPool jedisPool;
+	private String channel = DEFAULT_CHANNEL;
+	private RedisSerializer<Object> serializer = new ObjectSerializer();
+
+	private volatile boolean running;
+	private volatile BinaryJedisPubSub pubSub;
+	private Thread subscriber;
+
+	public JedisCacheInvalidationBroadcaster() {
+	}
+
+	public JedisCacheInvalidationBroadcaster(JedisPool jedisPool) {
+		this.jedisPool = jedisPool;
+	}
+
+	@Override
+	public void init() {
+		if (running) {
+			return;
+		}
+		running = true;
+		subscriber = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				subscribeLoop();
+			}
+		}, "shiro-cache-invalidation-subscriber");
+		subscriber.setDaemon(true);
+		subscriber.start();
+	}
+
+	protected void subscribeLoop() {
+		byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+		while (running) {
+			Jedis jedis = null;
+			try {
+				jedis = jedisPool.getResource();
+				pubSub = new BinaryJedisPubSub() {
+					@Override
+					public void onMessage(byte[] channel, byte[] message) {
+						dispatch(message);
+					}
+				};
+				// 阻塞直到 unsubscribe 或连接断开
+				jedis.subscribe(pubSub, channelBytes);
+			} catch (RuntimeException e) {
+				if (!running) {
+					break;
+				}
+				LOG.warn("Cache invalidation subscription lost, reconnecting in {} ms.", RECONNECT_INTERVAL, e);
+				try {
+					Thread.sleep(RECONNECT_INTERVAL);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			} finally {
+				if (jedis != null) {
+					jedis.close();
+				}
+			}
+		}
+	}
+
+	protected void dispatch(byte[] message) {
+		CacheInvalidation invalidation;
+		try {
+			invalidation = (CacheInvalidation) serializer.deserialize(message);
+		} catch (SerializationException e) {
+			LOG.warn("Unable to deserialize cache invalidation message.", e);
+			return;
+		}
+		for (CacheInvalidationListener listener : listeners) {
+			try {
+				listener.onInvalidation(invalidation);
+			} catch (RuntimeException e) {
+				LOG.warn("Cache invalidation listener failed for {}", invalidation, e);
+			}
+		}
+	}
+
+	@Override
+	public void publish(CacheInvalidation invalidation) {
+		try (Jedis jedis = jedisPool.getResource()) {
+			jedis.publish(channel.getBytes(StandardCharsets.UTF_8), serializer.serialize(invalidation));
+		} catch (SerializationException e) {
+			LOG.warn("Unable to serialize cache invalidation {}", invalidation, e);
+		} catch (RuntimeException e) {
+			// 广播失败时其他节点依赖一级缓存的过期时间收敛
+			LOG.warn("Unable to publish cache invalidation {}", invalidation, e);
+		}
+	}
+
+	@Override
+	public void subscribe(CacheInvalidationListener listener) {
+		listeners.addIfAbsent(listener);
+	}
+
+	@Override
+	public void unsubscribe(CacheInvalidationListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		running = false;
+		BinaryJedisPubSub current = pubSub;
+		if (current != null && current.isSubscribed()) {
+			current.unsubscribe();
+		}
+		if (subscriber != null) {
+			subscriber.interrupt();
+		}
+	}
+
+	public JedisPool getJedisPool() {
+		return jedisPool;
+	}
+
+	public void setJedisPool(JedisPool jedisPool) {
+		this.jedisPool = jedisPool;
+	}
+
+	public String getChannel() {
+		return channel;
+	}
+
+	public void setChannel(String channel) {
+		this.channel = channel;
+	}
+
+	public RedisSerializer<Object> getSerializer() {
+		return serializer;
+	}
+
+	public void setSerializer(RedisSerializer<Object> serializer) {
+		this.serializer = serializer;
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.near;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于内存的缓存失效广播：同一 JVM 内的多个 {@link NearCacheManager} 共享一个实例即可互相通知，
+ * 适用于单机部署和测试。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class MemoryCacheInvalidationBroadcaster implements CacheInvalidationBroadcaster {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MemoryCacheInvalidationBroadcaster.class);
+
+	private final CopyOnWriteArrayList<CacheInvalidationListener> listeners = new CopyOnWriteArrayList<CacheInvalidationListener>();
+
+	@Override
+	public void publish(CacheInvalidation invalidation) {
+		for (CacheInvalidationListener listener : listeners) {
+			try {
+				listener.onInvalidation(invalidation);
+			} catch (RuntimeException e) {
+				LOG.warn("Cache invalidation listener failed for {}", invalidation, e);
+			}
+		}
+	}
+
+	@Override
+	public void subscribe(CacheInvalidationListener listener) {
+		listeners.addIfAbsent(listener);
+	}
+
+	@Override
+	public void unsubscribe(CacheInvalidationListener listener) {
+		listeners.remove(listener);
+	}
+
+}
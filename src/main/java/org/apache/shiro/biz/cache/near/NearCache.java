@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.near;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+
+/**
+ * 两级缓存：本地有界一级缓存（L1）+ 共享远程二级缓存（L2）。
+ * <p>读操作优先命中 L1，未命中时读取 L2 并回填 L1；写操作先写 L2 再更新 L1，并广播失效消息，
+ * 其他节点收到后移除各自 L1 中的条目，下次读取时从 L2 获取最新值。</p>
+ * <p>每个 key（按哈希分段）维护失效版本号，回填 L1 期间若该 key 被失效或改写，回填的值会被立即移除，
+ * 避免与失效消息并发的读取把旧值写回 L1；只有广播丢失时，其他节点的 L1 才可能保留旧值，最长不超过 L1 的过期时间。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class NearCache<K, V> implements Cache<K, V> {
+
+	private final String name;
+	private final Cache<K, V> local;
+	private final Cache<K, V> remote;
+	private final NearCacheManager manager;
+	/**
+	 * Invalidation versions per key stripe, the last slot is bumped by region-wide clears.
+	 */
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES + 1);
+
+	private static final int STRIPES = 64;
+
+	public NearCache(String name, Cache<K, V> local, Cache<K, V> remote, NearCacheManager manager) {
+		this.name = name;
+		this.local = local;
+		this.remote = remote;
+		this.manager = manager;
+	}
+
+	@Override
+	public V get(K key) throws CacheException {
+		if (key == null) {
+			return null;
+		}
+		V value = local.get(key);
+		if (value != null) {
+			return value;
+		}
+		int stripe = stripeOf(key);
+		long version = versionOf(stripe);
+		value = remote.get(key);
+		if (value != null) {
+			local.put(key, value);
+			if (versionOf(stripe) != version) {
+				// invalidated or rewritten while reading the remote tier, the value may be stale
+				local.remove(key);
+			}
+		}
+		return value;
+	}
+
+	@Override
+	public V put(K key, V value) throws CacheException {
+		remote.put(key, value);
+		versions.incrementAndGet(stripeOf(key));
+		local.put(key, value);
+		manager.publish(name, key);
+		return value;
+	}
+
+	@Override
+	public V remove(K key) throws CacheException {
+		V previous = remote.remove(key);
+		versions.incrementAndGet(stripeOf(key));
+		local.remove(key);
+		manager.publish(name, key);
+		return previous;
+	}
+
+	@Override
+	public void clear() throws CacheException {
+		remote.clear();
+		versions.incrementAndGet(STRIPES);
+		local.clear();
+		manager.publish(name, null);
+	}
+
+	@Override
+	public int size() {
+		return remote.size();
+	}
+
+	@Override
+	public Set<K> keys() {
+		return remote.keys();
+	}
+
+	@Override
+	public Collection<V> values() {
+		return remote.values();
+	}
+
+	/**
+	 * Drops the entry from the local tier only, invoked on invalidations from other nodes.
+	 * @param key the key to evict, null clears the local tier
+	 */
+	@SuppressWarnings("unchecked")
+	protected void evictLocal(Object key) {
+		if (key == null) {
+			versions.incrementAndGet(STRIPES);
+			local.clear();
+		} else {
+			versions.incrementAndGet(stripeOf(key));
+			local.remove((K) key);
+		}
+	}
+
+	private static int stripeOf(Object key) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	private long versionOf(int stripe) {
+		return versions.get(stripe) + versions.get(STRIPES);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Cache<K, V> getLocal() {
+		return local;
+	}
+
+	public Cache<K, V> getRemote() {
+		return remote;
+	}
+
+	@Override
+	public String toString() {
+		return "NearCache [" + name + "]";
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.near;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.Initializable;
+import org.apache.shiro.util.LifecycleUtils;
+
+/**
+ * 两级缓存管理器：<code>localCacheManager</code> 提供有界的进程内一级缓存（如 GuavaCacheManager、CaffeineCacheManager），
+ * <code>remoteCacheManager</code> 提供共享的二级缓存（如 shiro-redis 的 RedisCacheManager），
+ * 节点之间通过 {@link CacheInvalidationBroadcaster} 传播失效消息。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class NearCacheManager implements CacheManager, CacheInvalidationListener, Initializable, Destroyable {
+
+	private final ConcurrentMap<String, NearCache> caches = new ConcurrentHashMap<String, NearCache>();
+
+	/**
+	 * The id of this node, used to skip invalidations published by itself.
+	 */
+	private String nodeId = UUID.randomUUID().toString();
+	private CacheManager localCacheManager;
+	private CacheManager remoteCacheManager;
+	private CacheInvalidationBroadcaster broadcaster;
+	private volatile boolean subscribed;
+
+	public NearCacheManager() {
+	}
+
+	public NearCacheManager(CacheManager localCacheManager, CacheManager remoteCacheManager,
+			CacheInvalidationBroadcaster broadcaster) {
+		this.localCacheManager = localCacheManager;
+		this.remoteCacheManager = remoteCacheManager;
+		this.broadcaster = broadcaster;
+		this.init();
+	}
+
+	@Override
+	public void init() {
+		if (!subscribed && broadcaster != null) {
+			broadcaster.subscribe(this);
+			subscribed = true;
+		}
+	}
+
+	@Override
+	public <K, V> Cache<K, V> getCache(String name) throws CacheException {
+		NearCache cache = caches.get(name);
+		if (cache == null) {
+			init();
+			Cache<K, V> local = localCacheManager.getCache(name);
+			Cache<K, V> remote = remoteCacheManager.getCache(name);
+			cache = new NearCache<K, V>(name, local, remote, this);
+			NearCache existing = caches.putIfAbsent(name, cache);
+			if (existing != null) {
+				cache = existing;
+			}
+		}
+		return cache;
+	}
+
+	protected void publish(String region, Object key) {
+		if (broadcaster != null) {
+			broadcaster.publish(new CacheInvalidation(nodeId, region, key));
+		}
+	}
+
+	@Override
+	public void onInvalidation(CacheInvalidation invalidation) {
+		if (nodeId.equals(invalidation.getOrigin())) {
+			return;
+		}
+		NearCache cache = caches.get(invalidation.getRegion());
+		if (cache != null) {
+			cache.evictLocal(invalidation.getKey());
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (broadcaster != null) {
+			broadcaster.unsubscribe(this);
+		}
+		subscribed = false;
+		caches.clear();
+		LifecycleUtils.destroy(localCacheManager);
+	}
+
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	public void setNodeId(String nodeId) {
+		this.nodeId = nodeId;
+	}
+
+	public CacheManager getLocalCacheManager() {
+		return localCacheManager;
+	}
+
+	public void setLocalCacheManager(CacheManager localCacheManager) {
+		this.localCacheManager = localCacheManager;
+	}
+
+	public CacheManager getRemoteCacheManager() {
+		return remoteCacheManager;
+	}
+
+	public void setRemoteCacheManager(CacheManager remoteCacheManager) {
+		this.remoteCacheManager = remoteCacheManager;
+	}
+
+	public CacheInvalidationBroadcaster getBroadcaster() {
+		return broadcaster;
+	}
+
+	public void setBroadcaster(CacheInvalidationBroadcaster broadcaster) {
+		this.broadcaster = broadcaster;
+	}
+
+}
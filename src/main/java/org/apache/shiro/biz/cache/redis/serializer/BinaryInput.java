@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.redis.serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.crazycake.shiro.exception.SerializationException;
+
+/**
+ * 二进制编码输入，与 {@link BinaryOutput} 对应
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+final class BinaryInput {
+
+	private final byte[] buf;
+	private int pos;
+	private final List<String> strings = new ArrayList<String>();
+
+	BinaryInput(byte[] buf) {
+		this.buf = buf;
+	}
+
+	int readByte() throws SerializationException {
+		if (pos >= buf.length) {
+			throw new SerializationException("Unexpected end of binary payload");
+		}
+		return buf[pos++] & 0xFF;
+	}
+
+	byte[] readBytes(int length) throws SerializationException {
+		if (length < 0 || pos + length > buf.length) {
+			throw new SerializationException("Unexpected end of binary payload");
+		}
+		byte[] bytes = new byte[length];
+		System.arraycopy(buf, pos, bytes, 0, length);
+		pos += length;
+		return bytes;
+	}
+
+	long readVarLong() throws SerializationException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new SerializationException("Malformed varint in binary payload");
+	}
+
+	int readVarInt() throws SerializationException {
+		return (int) readVarLong();
+	}
+
+	long readZigZagLong() throws SerializationException {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	long readLong() throws SerializationException {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | readByte();
+		}
+		return value;
+	}
+
+	String readString() throws SerializationException {
+		int header = readVarInt();
+		if (header == 0) {
+			return null;
+		}
+		if (header == 1) {
+			int length = readVarInt();
+			if (length < 0 || pos + length > buf.length) {
+				throw new SerializationException("Unexpected end of binary payload");
+			}
+			String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			strings.add(value);
+			return value;
+		}
+		int index = header - 2;
+		if (index >= strings.size()) {
+			throw new SerializationException("Invalid string table reference " + index);
+		}
+		return strings.get(index);
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.redis.serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 二进制编码输出缓冲：变长整数（varint/zigzag）与带字符串表的字符串编码，
+ * 同一负载中重复出现的字符串（角色、权限、属性名）只写入一次，之后以表索引引用。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+final class BinaryOutput {
+
+	private byte[] buf;
+	private int count;
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+	BinaryOutput(int initialCapacity) {
+		this.buf = new byte[initialCapacity];
+	}
+
+	private void ensureCapacity(int extra) {
+		if (count + extra > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+		}
+	}
+
+	void writeByte(int b) {
+		ensureCapacity(1);
+		buf[count++] = (byte) b;
+	}
+
+	void writeBytes(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buf, count, bytes.length);
+		count += bytes.length;
+	}
+
+	void writeVarLong(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buf[count++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buf[count++] = (byte) value;
+	}
+
+	void writeVarInt(int value) {
+		writeVarLong(value & 0xFFFFFFFFL);
+	}
+
+	void writeZigZagLong(long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	void writeLong(long value) {
+		ensureCapacity(8);
+		for (int i = 7; i >= 0; i--) {
+			buf[count++] = (byte) (value >>> (i << 3));
+		}
+	}
+
+	/**
+	 * 可空字符串：0 表示 null，1 表示新字符串（随后是长度和 UTF-8 字节），n &gt;= 2 表示引用字符串表第 n - 2 项。
+	 */
+	void writeString(String value) {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		Integer index = strings.get(value);
+		if (index != null) {
+			writeVarInt(index + 2);
+			return;
+		}
+		strings.put(value, strings.size());
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(1);
+		writeVarInt(bytes.length);
+		writeBytes(bytes);
+	}
+
+	byte[] toByteArray() {
+		return Arrays.copyOf(buf, count);
+	}
+
+}
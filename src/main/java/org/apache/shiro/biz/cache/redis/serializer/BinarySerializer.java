@@ -0,0 +1,495 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.redis.serializer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.apache.shiro.session.mgt.SimpleOnlineSession;
+import org.apache.shiro.session.mgt.SimpleOnlineSession.OnlineStatus;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.crazycake.shiro.exception.SerializationException;
+import org.crazycake.shiro.serializer.RedisSerializer;
+
+import com.github.hiwepy.jwt.JwtPayload.RolePair;
+
+/**
+ * 紧凑的版本化二进制序列化：
+ * <ul>
+ * <li>为 {@link SimpleOnlineSession}、{@link SimpleSession}、{@link ShiroPrincipal}、{@link SimplePrincipalCollection}、
+ * {@link SimpleAuthorizationInfo} 按字段手写编码，整数使用 varint，重复的字符串（角色、权限、属性名）通过字符串表只写一次；</li>
+ * <li>常用的 JDK 类型（字符串、数值、日期、ArrayList、HashSet、HashMap 等）直接编码；</li>
+ * <li>其他类型（如 Session 中的自定义属性）回退到 Java 序列化。</li>
+ * </ul>
+ * 负载以 {@link #MAGIC} 和 {@link #VERSION} 两个字节开头，版本不匹配时抛出异常。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+@SuppressWarnings("unchecked")
+public class BinarySerializer<T> implements RedisSerializer<T> {
+
+	public static final int MAGIC = 0xB5;
+	public static final int VERSION = 1;
+
+	private static final int NULL = 0;
+	private static final int TRUE = 1;
+	private static final int FALSE = 2;
+	private static final int INT = 3;
+	private static final int LONG = 4;
+	private static final int DOUBLE = 5;
+	private static final int STRING = 6;
+	private static final int DATE = 7;
+	private static final int BYTES = 8;
+	private static final int ARRAY_LIST = 9;
+	private static final int HASH_SET = 10;
+	private static final int LINKED_HASH_SET = 11;
+	private static final int HASH_MAP = 12;
+	private static final int LINKED_HASH_MAP = 13;
+	private static final int SIMPLE_SESSION = 20;
+	private static final int SIMPLE_ONLINE_SESSION = 21;
+	private static final int SHIRO_PRINCIPAL = 22;
+	private static final int PRINCIPAL_COLLECTION = 23;
+	private static final int AUTHORIZATION_INFO = 24;
+	private static final int ROLE_PAIR = 25;
+	private static final int SERIALIZABLE = 127;
+
+	private static final OnlineStatus[] ONLINE_STATUSES = OnlineStatus.values();
+
+	/**
+	 * The initial size of the output buffer.
+	 */
+	private int bufferSize = 256;
+
+	@Override
+	public byte[] serialize(T source) throws SerializationException {
+		BinaryOutput out = new BinaryOutput(bufferSize);
+		out.writeByte(MAGIC);
+		out.writeByte(VERSION);
+		writeValue(out, source);
+		return out.toByteArray();
+	}
+
+	@Override
+	public T deserialize(byte[] bytes) throws SerializationException {
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		BinaryInput in = new BinaryInput(bytes);
+		if (in.readByte() != MAGIC) {
+			throw new SerializationException("Not a binary serializer payload");
+		}
+		int version = in.readByte();
+		if (version != VERSION) {
+			throw new SerializationException("Unsupported binary payload version " + version);
+		}
+		return (T) readValue(in);
+	}
+
+	protected void writeValue(BinaryOutput out, Object value) throws SerializationException {
+		if (value == null) {
+			out.writeByte(NULL);
+			return;
+		}
+		Class<?> type = value.getClass();
+		if (type == String.class) {
+			out.writeByte(STRING);
+			out.writeString((String) value);
+		} else if (type == Boolean.class) {
+			out.writeByte(((Boolean) value) ? TRUE : FALSE);
+		} else if (type == Integer.class) {
+			out.writeByte(INT);
+			out.writeZigZagLong((Integer) value);
+		} else if (type == Long.class) {
+			out.writeByte(LONG);
+			out.writeZigZagLong((Long) value);
+		} else if (type == Double.class) {
+			out.writeByte(DOUBLE);
+			out.writeLong(Double.doubleToLongBits((Double) value));
+		} else if (type == Date.class) {
+			out.writeByte(DATE);
+			out.writeZigZagLong(((Date) value).getTime());
+		} else if (type == byte[].class) {
+			byte[] bytes = (byte[]) value;
+			out.writeByte(BYTES);
+			out.writeVarInt(bytes.length);
+			out.writeBytes(bytes);
+		} else if (type == ArrayList.class) {
+			out.writeByte(ARRAY_LIST);
+			writeElements(out, (Collection<?>) value);
+		} else if (type == HashSet.class) {
+			out.writeByte(HASH_SET);
+			writeElements(out, (Collection<?>) value);
+		} else if (type == LinkedHashSet.class) {
+			out.writeByte(LINKED_HASH_SET);
+			writeElements(out, (Collection<?>) value);
+		} else if (type == HashMap.class) {
+			out.writeByte(HASH_MAP);
+			writeEntries(out, (Map<?, ?>) value);
+		} else if (type == LinkedHashMap.class) {
+			out.writeByte(LINKED_HASH_MAP);
+			writeEntries(out, (Map<?, ?>) value);
+		} else if (type == SimpleOnlineSession.class) {
+			out.writeByte(SIMPLE_ONLINE_SESSION);
+			writeSession(out, (SimpleSession) value);
+			SimpleOnlineSession session = (SimpleOnlineSession) value;
+			out.writeString(session.getUserAgent());
+			out.writeVarInt(session.getStatus() == null ? 0 : session.getStatus().ordinal() + 1);
+			out.writeString(session.getSystemHost());
+		} else if (type == SimpleSession.class) {
+			out.writeByte(SIMPLE_SESSION);
+			writeSession(out, (SimpleSession) value);
+		} else if (type == ShiroPrincipal.class) {
+			out.writeByte(SHIRO_PRINCIPAL);
+			writePrincipal(out, (ShiroPrincipal) value);
+		} else if (type == SimplePrincipalCollection.class) {
+			out.writeByte(PRINCIPAL_COLLECTION);
+			writePrincipals(out, (PrincipalCollection) value);
+		} else if (type == SimpleAuthorizationInfo.class) {
+			out.writeByte(AUTHORIZATION_INFO);
+			SimpleAuthorizationInfo info = (SimpleAuthorizationInfo) value;
+			writeStrings(out, info.getRoles());
+			writeStrings(out, info.getStringPermissions());
+			writeValue(out, info.getObjectPermissions());
+		} else if (type == RolePair.class) {
+			out.writeByte(ROLE_PAIR);
+			writeRolePair(out, (RolePair) value);
+		} else {
+			writeSerializable(out, value);
+		}
+	}
+
+	protected Object readValue(BinaryInput in) throws SerializationException {
+		int tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case INT:
+			return (int) in.readZigZagLong();
+		case LONG:
+			return in.readZigZagLong();
+		case DOUBLE:
+			return Double.longBitsToDouble(in.readLong());
+		case STRING:
+			return in.readString();
+		case DATE:
+			return new Date(in.readZigZagLong());
+		case BYTES:
+			return in.readBytes(in.readVarInt());
+		case ARRAY_LIST: {
+			int size = in.readVarInt();
+			return readElements(in, new ArrayList<Object>(size), size);
+		}
+		case HASH_SET: {
+			int size = in.readVarInt();
+			return readElements(in, new HashSet<Object>(capacity(size)), size);
+		}
+		case LINKED_HASH_SET: {
+			int size = in.readVarInt();
+			return readElements(in, new LinkedHashSet<Object>(capacity(size)), size);
+		}
+		case HASH_MAP: {
+			int size = in.readVarInt();
+			return readEntries(in, new HashMap<Object, Object>(capacity(size)), size);
+		}
+		case LINKED_HASH_MAP: {
+			int size = in.readVarInt();
+			return readEntries(in, new LinkedHashMap<Object, Object>(capacity(size)), size);
+		}
+		case SIMPLE_ONLINE_SESSION: {
+			SimpleOnlineSession session = new SimpleOnlineSession();
+			readSession(in, session);
+			session.setUserAgent(in.readString());
+			int status = in.readVarInt();
+			session.setStatus(status == 0 ? null : ONLINE_STATUSES[status - 1]);
+			session.setSystemHost(in.readString());
+			// 刚加载的会话与存储一致
+			session.resetAttributeChanged();
+			return session;
+		}
+		case SIMPLE_SESSION: {
+			SimpleSession session = new SimpleSession();
+			readSession(in, session);
+			return session;
+		}
+		case SHIRO_PRINCIPAL:
+			return readPrincipal(in);
+		case PRINCIPAL_COLLECTION:
+			return readPrincipals(in);
+		case AUTHORIZATION_INFO: {
+			SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+			info.setRoles(readStrings(in));
+			info.setStringPermissions(readStrings(in));
+			info.setObjectPermissions((Set<Permission>) readValue(in));
+			return info;
+		}
+		case ROLE_PAIR:
+			return readRolePair(in);
+		case SERIALIZABLE:
+			return readSerializable(in);
+		default:
+			throw new SerializationException("Unknown binary type tag " + tag);
+		}
+	}
+
+	private static int capacity(int size) {
+		return Math.max(16, (int) (size / 0.75f) + 1);
+	}
+
+	private void writeElements(BinaryOutput out, Collection<?> values) throws SerializationException {
+		out.writeVarInt(values.size());
+		for (Object value : values) {
+			writeValue(out, value);
+		}
+	}
+
+	private <C extends Collection<Object>> C readElements(BinaryInput in, C values, int size) throws SerializationException {
+		for (int i = 0; i < size; i++) {
+			values.add(readValue(in));
+		}
+		return values;
+	}
+
+	private void writeEntries(BinaryOutput out, Map<?, ?> entries) throws SerializationException {
+		out.writeVarInt(entries.size());
+		for (Map.Entry<?, ?> entry : entries.entrySet()) {
+			writeValue(out, entry.getKey());
+			writeValue(out, entry.getValue());
+		}
+	}
+
+	private <M extends Map<Object, Object>> M readEntries(BinaryInput in, M entries, int size) throws SerializationException {
+		for (int i = 0; i < size; i++) {
+			Object key = readValue(in);
+			entries.put(key, readValue(in));
+		}
+		return entries;
+	}
+
+	/**
+	 * 可空字符串集合：0 表示 null，否则为元素个数 + 1
+	 */
+	private void writeStrings(BinaryOutput out, Collection<String> values) {
+		if (values == null) {
+			out.writeVarInt(0);
+			return;
+		}
+		out.writeVarInt(values.size() + 1);
+		for (String value : values) {
+			out.writeString(value);
+		}
+	}
+
+	private Set<String> readStrings(BinaryInput in) throws SerializationException {
+		int header = in.readVarInt();
+		if (header == 0) {
+			return null;
+		}
+		Set<String> values = new LinkedHashSet<String>(capacity(header - 1));
+		for (int i = 1; i < header; i++) {
+			values.add(in.readString());
+		}
+		return values;
+	}
+
+	private static long time(Date date) {
+		return date == null ? 0 : date.getTime() + 1;
+	}
+
+	private static Date date(long time) {
+		return time == 0 ? null : new Date(time - 1);
+	}
+
+	private void writeSession(BinaryOutput out, SimpleSession session) throws SerializationException {
+		writeValue(out, session.getId());
+		out.writeVarLong(time(session.getStartTimestamp()));
+		out.writeVarLong(time(session.getStopTimestamp()));
+		out.writeVarLong(time(session.getLastAccessTime()));
+		out.writeZigZagLong(session.getTimeout());
+		out.writeByte(session.isExpired() ? 1 : 0);
+		out.writeString(session.getHost());
+		Map<Object, Object> attributes = session.getAttributes();
+		if (attributes == null) {
+			out.writeVarInt(0);
+		} else {
+			out.writeVarInt(attributes.size() + 1);
+			for (Map.Entry<Object, Object> entry : attributes.entrySet()) {
+				writeValue(out, entry.getKey());
+				writeValue(out, entry.getValue());
+			}
+		}
+	}
+
+	private void readSession(BinaryInput in, SimpleSession session) throws SerializationException {
+		session.setId((Serializable) readValue(in));
+		session.setStartTimestamp(date(in.readVarLong()));
+		session.setStopTimestamp(date(in.readVarLong()));
+		session.setLastAccessTime(date(in.readVarLong()));
+		session.setTimeout(in.readZigZagLong());
+		session.setExpired(in.readByte() == 1);
+		session.setHost(in.readString());
+		int header = in.readVarInt();
+		if (header == 0) {
+			session.setAttributes(null);
+		} else {
+			session.setAttributes(readEntries(in, new HashMap<Object, Object>(capacity(header - 1)), header - 1));
+		}
+	}
+
+	private void writePrincipal(BinaryOutput out, ShiroPrincipal principal) throws SerializationException {
+		out.writeString(principal.getUserid());
+		out.writeString(principal.getUserkey());
+		out.writeString(principal.getUsercode());
+		out.writeString(principal.getUsername());
+		out.writeString(principal.getPassword());
+		out.writeString(principal.getSalt());
+		out.writeString(principal.getSecret());
+		out.writeString(principal.getAlias());
+		out.writeString(principal.getNickname());
+		out.writeString(principal.getRoleid());
+		out.writeString(principal.getRole());
+		out.writeString(principal.getFaceId());
+		List<RolePair> roles = principal.getRoles();
+		if (roles == null) {
+			out.writeVarInt(0);
+		} else {
+			out.writeVarInt(roles.size() + 1);
+			for (RolePair role : roles) {
+				writeRolePair(out, role);
+			}
+		}
+		writeStrings(out, principal.getPerms());
+		writeValue(out, principal.getProfile());
+		int flags = (principal.isDisabled() ? 1 : 0) | (principal.isLocked() ? 2 : 0)
+				| (principal.isInitial() ? 4 : 0) | (principal.isFace() ? 8 : 0);
+		out.writeByte(flags);
+	}
+
+	private ShiroPrincipal readPrincipal(BinaryInput in) throws SerializationException {
+		ShiroPrincipal principal = new ShiroPrincipal();
+		principal.setUserid(in.readString());
+		principal.setUserkey(in.readString());
+		principal.setUsercode(in.readString());
+		principal.setUsername(in.readString());
+		principal.setPassword(in.readString());
+		principal.setSalt(in.readString());
+		principal.setSecret(in.readString());
+		principal.setAlias(in.readString());
+		principal.setNickname(in.readString());
+		principal.setRoleid(in.readString());
+		principal.setRole(in.readString());
+		principal.setFaceId(in.readString());
+		int header = in.readVarInt();
+		if (header > 0) {
+			List<RolePair> roles = new ArrayList<RolePair>(header - 1);
+			for (int i = 1; i < header; i++) {
+				roles.add(readRolePair(in));
+			}
+			principal.setRoles(roles);
+		}
+		principal.setPerms(readStrings(in));
+		principal.setProfile((Map<String, Object>) readValue(in));
+		int flags = in.readByte();
+		principal.setDisabled((flags & 1) != 0);
+		principal.setLocked((flags & 2) != 0);
+		principal.setInitial((flags & 4) != 0);
+		principal.setFace((flags & 8) != 0);
+		return principal;
+	}
+
+	private void writeRolePair(BinaryOutput out, RolePair role) {
+		out.writeString(role.getId());
+		out.writeString(role.getKey());
+		out.writeString(role.getValue());
+	}
+
+	private RolePair readRolePair(BinaryInput in) throws SerializationException {
+		return new RolePair(in.readString(), in.readString(), in.readString());
+	}
+
+	private void writePrincipals(BinaryOutput out, PrincipalCollection principals) throws SerializationException {
+		Set<String> realmNames = principals.getRealmNames();
+		out.writeVarInt(realmNames.size());
+		for (String realmName : realmNames) {
+			Collection<?> values = principals.fromRealm(realmName);
+			out.writeString(realmName);
+			writeElements(out, values);
+		}
+	}
+
+	private SimplePrincipalCollection readPrincipals(BinaryInput in) throws SerializationException {
+		SimplePrincipalCollection principals = new SimplePrincipalCollection();
+		int realms = in.readVarInt();
+		for (int i = 0; i < realms; i++) {
+			String realmName = in.readString();
+			int size = in.readVarInt();
+			for (int j = 0; j < size; j++) {
+				principals.add(readValue(in), realmName);
+			}
+		}
+		return principals;
+	}
+
+	private void writeSerializable(BinaryOutput out, Object value) throws SerializationException {
+		if (!(value instanceof Serializable)) {
+			throw new SerializationException("Type is not serializable: " + value.getClass().getName());
+		}
+		byte[] bytes;
+		try {
+			bytes = SerializationUtils.serialize((Serializable) value);
+		} catch (org.apache.commons.lang3.SerializationException e) {
+			throw new SerializationException("Unable to serialize " + value.getClass().getName(), e);
+		}
+		out.writeByte(SERIALIZABLE);
+		out.writeVarInt(bytes.length);
+		out.writeBytes(bytes);
+	}
+
+	private Object readSerializable(BinaryInput in) throws SerializationException {
+		byte[] bytes = in.readBytes(in.readVarInt());
+		try {
+			return SerializationUtils.deserialize(bytes);
+		} catch (org.apache.commons.lang3.SerializationException e) {
+			throw new SerializationException("Unable to deserialize generic value", e);
+		}
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+}
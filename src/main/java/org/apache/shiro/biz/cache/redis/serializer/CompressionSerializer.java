@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.redis.serializer;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.crazycake.shiro.exception.SerializationException;
+import org.crazycake.shiro.serializer.RedisSerializer;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * 压缩序列化包装：委托任意 {@link RedisSerializer} 序列化，超过阈值的负载按配置的算法压缩。
+ * <p>输出以一个字节的头部标记编码方式（{@link Codec}），压缩格式随后是 4 字节的原始长度；
+ * 反序列化按头部识别，与当前配置的算法无关，因此可以在线切换算法。压缩后没有变小的负载按原样保存。</p>
+ * <p>未经本包装写入的历史数据没有头部：首字节不是已知头部时（JDK 序列化以 0xAC、{@link BinarySerializer} 以 0xB5、
+ * JSON/XML 以可见字符开头，都不会与 0~2 冲突），默认按未压缩的原始数据交给委托对象读取，因此启用本包装无需迁移数据；
+ * 关闭 {@link #setLegacyFallback(boolean)} 后此类数据会被拒绝。反之，本包装写入的数据不能再由未包装的委托对象读取，
+ * 回退配置前需清空缓存。{@link Codec#FAST} 需要 lz4-java。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class CompressionSerializer<T> implements RedisSerializer<T> {
+
+	public static final int DEFAULT_THRESHOLD = 1024;
+	/**
+	 * The default upper bound of a decompressed payload, 64 MB.
+	 */
+	public static final int DEFAULT_MAX_DECOMPRESSED_LENGTH = 64 * 1024 * 1024;
+	/**
+	 * The best compression ratios the formats can reach, a larger declared length means a corrupt header.
+	 */
+	private static final int LZ4_MAX_RATIO = 255;
+	private static final int DEFLATE_MAX_RATIO = 1032;
+
+	public static enum Codec {
+
+		/** 不压缩 */
+		RAW(0),
+		/** LZ4 快速压缩 */
+		FAST(1),
+		/** Deflate 压缩 */
+		DEFLATE(2);
+
+		private final int header;
+
+		private Codec(int header) {
+			this.header = header;
+		}
+
+		public int getHeader() {
+			return header;
+		}
+
+	}
+
+	private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<Deflater>();
+	private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>();
+
+	private RedisSerializer<T> delegate;
+	private Codec codec = Codec.FAST;
+	private int threshold = DEFAULT_THRESHOLD;
+	private int deflateLevel = Deflater.BEST_SPEED;
+	private int maxDecompressedLength = DEFAULT_MAX_DECOMPRESSED_LENGTH;
+	/**
+	 * 首字节不是已知头部时是否按未经本包装写入的历史数据读取
+	 */
+	private boolean legacyFallback = true;
+
+	public CompressionSerializer() {
+	}
+
+	public CompressionSerializer(RedisSerializer<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	public CompressionSerializer(RedisSerializer<T> delegate, Codec codec, int threshold) {
+		this.delegate = delegate;
+		this.codec = codec;
+		this.threshold = threshold;
+	}
+
+	@Override
+	public byte[] serialize(T source) throws SerializationException {
+		byte[] raw = delegate.serialize(source);
+		if (raw == null) {
+			return null;
+		}
+		byte[] compressed = null;
+		if (raw.length >= threshold) {
+			if (codec == Codec.FAST) {
+				compressed = Lz4.compress(raw);
+			} else if (codec == Codec.DEFLATE) {
+				compressed = deflate(raw);
+			}
+		}
+		if (compressed != null) {
+			return compressed;
+		}
+		byte[] out = new byte[raw.length + 1];
+		out[0] = (byte) Codec.RAW.getHeader();
+		System.arraycopy(raw, 0, out, 1, raw.length);
+		return out;
+	}
+
+	@Override
+	public T deserialize(byte[] bytes) throws SerializationException {
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		int header = bytes[0];
+		if (header < Codec.RAW.getHeader() || header > Codec.DEFLATE.getHeader()) {
+			if (legacyFallback) {
+				return delegate.deserialize(bytes);
+			}
+			throw new SerializationException("Unknown compression header " + header);
+		}
+		if (header == Codec.RAW.getHeader()) {
+			return delegate.deserialize(Arrays.copyOfRange(bytes, 1, bytes.length));
+		}
+		if (bytes.length < 5) {
+			throw new SerializationException("Truncated compressed payload");
+		}
+		int length = readLength(bytes);
+		if (header == Codec.FAST.getHeader()) {
+			checkLength(length, bytes.length, LZ4_MAX_RATIO);
+			return delegate.deserialize(Lz4.decompress(bytes, length));
+		}
+		checkLength(length, bytes.length, DEFLATE_MAX_RATIO);
+		return delegate.deserialize(inflate(bytes, length));
+	}
+
+	private static void writeLength(byte[] out, int length) {
+		out[1] = (byte) (length >>> 24);
+		out[2] = (byte) (length >>> 16);
+		out[3] = (byte) (length >>> 8);
+		out[4] = (byte) length;
+	}
+
+	private static int readLength(byte[] in) {
+		return ((in[1] & 0xFF) << 24) | ((in[2] & 0xFF) << 16) | ((in[3] & 0xFF) << 8) | (in[4] & 0xFF);
+	}
+
+	/**
+	 * 解压前校验头部声明的长度，避免损坏或恶意的数据触发超大数组分配
+	 */
+	private void checkLength(int length, int payloadLength, int maxRatio) throws SerializationException {
+		if (length < 0 || length > maxDecompressedLength || length > (long) (payloadLength - 5) * maxRatio) {
+			throw new SerializationException("Invalid decompressed length " + length + " for a payload of " + payloadLength + " bytes");
+		}
+	}
+
+	/**
+	 * @return the compressed payload with header, or null if it did not shrink
+	 */
+	private byte[] deflate(byte[] raw) {
+		Deflater deflater = DEFLATERS.get();
+		if (deflater == null) {
+			deflater = new Deflater(deflateLevel);
+			DEFLATERS.set(deflater);
+		}
+		deflater.reset();
+		deflater.setLevel(deflateLevel);
+		deflater.setInput(raw);
+		deflater.finish();
+		// 压缩结果必须小于原始数据，否则放弃压缩
+		byte[] out = new byte[raw.length];
+		int offset = 5;
+		while (!deflater.finished() && offset < out.length) {
+			offset += deflater.deflate(out, offset, out.length - offset);
+		}
+		if (!deflater.finished()) {
+			return null;
+		}
+		out[0] = (byte) Codec.DEFLATE.getHeader();
+		writeLength(out, raw.length);
+		return Arrays.copyOf(out, offset);
+	}
+
+	private static byte[] inflate(byte[] bytes, int length) throws SerializationException {
+		Inflater inflater = INFLATERS.get();
+		if (inflater == null) {
+			inflater = new Inflater();
+			INFLATERS.set(inflater);
+		}
+		inflater.reset();
+		inflater.setInput(bytes, 5, bytes.length - 5);
+		byte[] out = new byte[length];
+		try {
+			int offset = 0;
+			while (offset < length && !inflater.finished()) {
+				int n = inflater.inflate(out, offset, length - offset);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				offset += n;
+			}
+			if (offset != length) {
+				throw new SerializationException("Corrupted deflate payload");
+			}
+		} catch (DataFormatException e) {
+			throw new SerializationException("Corrupted deflate payload", e);
+		}
+		return out;
+	}
+
+	/**
+	 * LZ4 相关类延迟加载，未使用 FAST 算法时不依赖 lz4-java
+	 */
+	private static class Lz4 {
+
+		private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+		private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+		static byte[] compress(byte[] raw) {
+			byte[] out = new byte[5 + COMPRESSOR.maxCompressedLength(raw.length)];
+			int length = COMPRESSOR.compress(raw, 0, raw.length, out, 5, out.length - 5);
+			if (length + 5 >= raw.length + 1) {
+				return null;
+			}
+			out[0] = (byte) Codec.FAST.getHeader();
+			writeLength(out, raw.length);
+			return Arrays.copyOf(out, length + 5);
+		}
+
+		static byte[] decompress(byte[] bytes, int length) throws SerializationException {
+			byte[] out = new byte[length];
+			try {
+				DECOMPRESSOR.decompress(bytes, 5, out, 0, length);
+			} catch (RuntimeException e) {
+				throw new SerializationException("Corrupted lz4 payload", e);
+			}
+			return out;
+		}
+
+	}
+
+	public RedisSerializer<T> getDelegate() {
+		return delegate;
+	}
+
+	public void setDelegate(RedisSerializer<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	public Codec getCodec() {
+		return codec;
+	}
+
+	public void setCodec(Codec codec) {
+		this.codec = codec;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	public void setThreshold(int threshold) {
+		this.threshold = threshold;
+	}
+
+	public int getMaxDecompressedLength() {
+		return maxDecompressedLength;
+	}
+
+	public void setMaxDecompressedLength(int maxDecompressedLength) {
+		this.maxDecompressedLength = maxDecompressedLength;
+	}
+
+	public boolean isLegacyFallback() {
+		return legacyFallback;
+	}
+
+	public void setLegacyFallback(boolean legacyFallback) {
+		this.legacyFallback = legacyFallback;
+	}
+
+	public int getDeflateLevel() {
+		return deflateLevel;
+	}
+
+	public void setDeflateLevel(int deflateLevel) {
+		this.deflateLevel = deflateLevel;
+	}
+
+}
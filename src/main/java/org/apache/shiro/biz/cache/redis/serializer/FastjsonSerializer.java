@@ -19,19 +19,36 @@ import org.apache.shiro.biz.utils.GenericsUtils;
 import org.crazycake.shiro.exception.SerializationException;
 import org.crazycake.shiro.serializer.RedisSerializer;
 
-import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSON;
 
 @SuppressWarnings("unchecked")
 public class FastjsonSerializer<T> implements RedisSerializer<T> {
 	
+	/**
+	 * The target type, resolved once from the generic declaration of the subclass.
+	 */
+	protected final Class<?> type;
+	
+	public FastjsonSerializer() {
+		this.type = GenericsUtils.getSuperClassGenricType(getClass());
+	}
+	
+	public FastjsonSerializer(Class<T> type) {
+		this.type = type;
+	}
+	
 	@Override
 	public byte[] serialize(T source) throws SerializationException {
-		return JSONObject.toJSONString(source).getBytes();
+		// 直接输出 UTF-8 字节，不经过中间 String
+		return JSON.toJSONBytes(source);
 	}
 
 	@Override
 	public T deserialize(byte[] bytes) throws SerializationException {
-		return (T) JSONObject.parseObject(new String(bytes), GenericsUtils.getSuperClassGenricType(getClass()));
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		return (T) JSON.parseObject(bytes, type);
 	}
 	
 }
@@ -15,6 +15,11 @@
  */
 package org.apache.shiro.biz.cache.redis.serializer;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
 import org.apache.shiro.biz.utils.GenericsUtils;
 import org.crazycake.shiro.exception.SerializationException;
 import org.crazycake.shiro.serializer.RedisSerializer;
@@ -26,15 +31,36 @@ public class FlexjsonSerializer<T> implements RedisSerializer<T> {
 
 	protected JSONSerializer serializer = new JSONSerializer();
 	protected JSONDeserializer<T> deserializer = new JSONDeserializer<T>();
+	/**
+	 * The target type, resolved once from the generic declaration of the subclass.
+	 */
+	protected final Class<?> type;
+	
+	public FlexjsonSerializer() {
+		this.type = GenericsUtils.getSuperClassGenricType(getClass());
+	}
+	
+	public FlexjsonSerializer(Class<T> type) {
+		this.type = type;
+	}
 	
 	@Override
 	public byte[] serialize(T target) throws SerializationException {
-		return serializer.deepSerialize(target).getBytes();
+		PooledOutputBuffer buffer = PooledOutputBuffer.current();
+		try {
+			serializer.deepSerialize(target, buffer.writer());
+			return buffer.toByteArray();
+		} catch (IOException e) {
+			throw new SerializationException("flexjson serialize error", e);
+		}
 	}
 	
 	@Override
 	public T deserialize(byte[] bytes) throws SerializationException {
-		return deserializer.deserialize(new String(bytes), GenericsUtils.getSuperClassGenricType(getClass()));
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		return deserializer.deserialize(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), type);
 	}
 	
 }
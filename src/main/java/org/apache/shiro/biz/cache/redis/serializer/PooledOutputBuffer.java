@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.redis.serializer;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 线程内复用的 UTF-8 输出缓冲：文本序列化器直接将字符编码写入复用的字节缓冲，不再生成中间 String。
+ * <p>使用方式：{@link #current()} 获取当前线程的缓冲，写入 {@link #writer()} 后调用 {@link #toByteArray()}。
+ * 超过 {@link #MAX_RETAINED_CAPACITY} 的缓冲用完即丢弃，避免线程长期持有大数组；
+ * 没有以 {@link #toByteArray()} 结束的缓冲（序列化中途抛出异常）也会被丢弃，
+ * 因为 writer 内部可能还残留已编码的字节，复用会污染下一次的输出。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+final class PooledOutputBuffer extends OutputStream {
+
+	static final int INITIAL_CAPACITY = 1024;
+	static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	private static final ThreadLocal<PooledOutputBuffer> BUFFERS = new ThreadLocal<PooledOutputBuffer>();
+
+	private byte[] buf = new byte[INITIAL_CAPACITY];
+	private int count;
+	/** 已由 {@link #current()} 取出、尚未 {@link #toByteArray()} 完成 */
+	private boolean inUse;
+	private final Writer writer = new OutputStreamWriter(this, StandardCharsets.UTF_8);
+
+	private PooledOutputBuffer() {
+	}
+
+	/**
+	 * @return the reset buffer bound to the current thread
+	 */
+	static PooledOutputBuffer current() {
+		PooledOutputBuffer buffer = BUFFERS.get();
+		if (buffer == null || buffer.inUse || buffer.buf.length > MAX_RETAINED_CAPACITY) {
+			buffer = new PooledOutputBuffer();
+			BUFFERS.set(buffer);
+		}
+		buffer.count = 0;
+		buffer.inUse = true;
+		return buffer;
+	}
+
+	/**
+	 * @return the UTF-8 writer over this buffer, flushed by {@link #toByteArray()}
+	 */
+	Writer writer() {
+		return writer;
+	}
+
+	@Override
+	public void write(int b) {
+		ensureCapacity(1);
+		buf[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensureCapacity(len);
+		System.arraycopy(b, off, buf, count, len);
+		count += len;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (count + extra > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+		}
+	}
+
+	/**
+	 * Flushes the writer and copies the written bytes.
+	 * @return the UTF-8 encoded content
+	 * @throws java.io.IOException if the writer cannot be flushed
+	 */
+	byte[] toByteArray() throws java.io.IOException {
+		writer.flush();
+		byte[] bytes = Arrays.copyOf(buf, count);
+		inUse = false;
+		return bytes;
+	}
+
+}
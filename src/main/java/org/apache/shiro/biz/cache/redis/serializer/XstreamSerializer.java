@@ -15,6 +15,11 @@
  */
 package org.apache.shiro.biz.cache.redis.serializer;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
 import org.crazycake.shiro.exception.SerializationException;
 import org.crazycake.shiro.serializer.RedisSerializer;
 
@@ -22,16 +27,28 @@ import com.thoughtworks.xstream.XStream;
 @SuppressWarnings("unchecked")
 public class XstreamSerializer<T> implements RedisSerializer<T> {
 
+	/**
+	 * XStream 配置完成后线程安全，所有线程共享同一实例以复用其反射元数据缓存
+	 */
 	protected  XStream xStream = new XStream();
 
 	@Override
 	public byte[] serialize(T source) throws SerializationException {
-		return xStream.toXML(source).getBytes();
+		PooledOutputBuffer buffer = PooledOutputBuffer.current();
+		try {
+			xStream.toXML(source, buffer.writer());
+			return buffer.toByteArray();
+		} catch (IOException e) {
+			throw new SerializationException("xstream serialize error", e);
+		}
 	}
 
 	@Override
 	public T deserialize(byte[] bytes) throws SerializationException {
-		return (T) xStream.fromXML(new String(bytes));
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		return (T) xStream.fromXML(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
 	};
 
 }
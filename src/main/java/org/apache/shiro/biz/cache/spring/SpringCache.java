@@ -16,7 +16,10 @@
 package org.apache.shiro.biz.cache.spring;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheException;
@@ -24,6 +27,9 @@ import org.springframework.cache.Cache.ValueWrapper;
 
 /**
  * Spring Cache Wrapper
+ * <p>当 {@link SpringCacheManager} 能识别底层原生缓存（ConcurrentMap、Caffeine、Guava）时，
+ * {@link #keys()}、{@link #values()} 返回原生缓存的只读实时视图（不复制数据），{@link #size()} 取原生缓存的大小，
+ * 并支持按条件批量移除 {@link #evictIf(Predicate)}；否则这些方法抛出 {@link UnsupportedOperationException}。</p>
  * @author wangjie (https://github.com/wj596)
  * @author ： <a href="https://github.com/hiwepy">hiwepy</a>
  */
@@ -32,10 +38,16 @@ public class SpringCache<K, V> implements Cache<K, V> {
 
 	private final String cacheName;
 	private final org.springframework.cache.Cache delegator;
+	private final Map<K, V> nativeMap;
 
 	public SpringCache(String cacheName, org.springframework.cache.Cache cache) {
+		this(cacheName, cache, null);
+	}
+
+	public SpringCache(String cacheName, org.springframework.cache.Cache cache, Map<K, V> nativeMap) {
 		this.cacheName = cacheName;
 		this.delegator = cache;
+		this.nativeMap = nativeMap;
 	}
 
 	@Override
@@ -62,19 +74,51 @@ public class SpringCache<K, V> implements Cache<K, V> {
 		return v;
 	}
 
+	/**
+	 * 按条件移除条目，只移除匹配的 key，避免 {@link #clear()} 清空整个区域导致的集中回源。
+	 * @param predicate the condition of the keys to evict
+	 * @return the number of evicted keys
+	 */
+	public int evictIf(Predicate<? super K> predicate) {
+		int evicted = 0;
+		for (K key : getNativeMap().keySet()) {
+			if (predicate.test(key)) {
+				this.delegator.evict(key);
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
 	@Override
 	public Set<K> keys() {
-		throw new UnsupportedOperationException(" not supported ");
+		return Collections.unmodifiableSet(getNativeMap().keySet());
 	}
 
 	@Override
 	public int size() {
-		throw new UnsupportedOperationException(" not supported ");
+		return getNativeMap().size();
 	}
 
 	@Override
 	public Collection<V> values() {
-		throw new UnsupportedOperationException(" not supported ");
+		return Collections.unmodifiableCollection(getNativeMap().values());
+	}
+
+	/**
+	 * Whether the native cache of this region could be introspected.
+	 * @return true if {@link #keys()}, {@link #size()}, {@link #values()} and {@link #evictIf(Predicate)} are supported
+	 */
+	public boolean isIntrospectable() {
+		return this.nativeMap != null;
+	}
+
+	private Map<K, V> getNativeMap() {
+		if (this.nativeMap == null) {
+			throw new UnsupportedOperationException("Native cache of [" + this.cacheName + "] is not introspectable: "
+					+ this.delegator.getNativeCache().getClass().getName());
+		}
+		return this.nativeMap;
 	}
 
 	@Override
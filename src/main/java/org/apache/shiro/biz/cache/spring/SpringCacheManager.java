@@ -15,21 +15,32 @@
  */
 package org.apache.shiro.biz.cache.spring;
 
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheException;
 import org.apache.shiro.cache.CacheManager;
+import org.springframework.util.ClassUtils;
 
 /**
  * Spring CacheManager Wrapper
+ * <p>创建缓存时识别 Spring Cache 的原生缓存：{@link ConcurrentMap}（ConcurrentMapCache）、
+ * Caffeine Cache、Guava Cache，取其 Map 视图供 {@link SpringCache} 枚举和按条件移除。
+ * Spring Data Redis 的 RedisCacheWriter 不提供 key 枚举接口，此类缓存仍不支持枚举。</p>
  * @author wangjie (https://github.com/wj596)
  * @author <a href="https://github.com/hiwepy">hiwepy</a>
  */
 @SuppressWarnings({ "unchecked", "rawtypes" })
 public class SpringCacheManager implements CacheManager {
 
+	private static final boolean caffeinePresent = ClassUtils.isPresent("com.github.benmanes.caffeine.cache.Cache",
+			SpringCacheManager.class.getClassLoader());
+
+	private static final boolean guavaPresent = ClassUtils.isPresent("com.google.common.cache.Cache",
+			SpringCacheManager.class.getClassLoader());
+
 	private final org.springframework.cache.CacheManager delegator;
 	private final ConcurrentMap<String, SpringCache> CACHES = new ConcurrentHashMap<String, SpringCache>();
 	
@@ -48,7 +59,7 @@ public class SpringCacheManager implements CacheManager {
 				cache = this.CACHES.get(cacheName);
 				if (cache == null) {
 					org.springframework.cache.Cache springCache = this.delegator.getCache(cacheName);
-					cache = new SpringCache(cacheName,springCache);
+					cache = new SpringCache(cacheName, springCache, resolveNativeMap(springCache));
 					this.CACHES.put(cacheName, cache);
 				}
 				return cache;
@@ -56,4 +67,26 @@ public class SpringCacheManager implements CacheManager {
 		}
 	}
 
+	/**
+	 * 获取原生缓存的 Map 视图，无法识别时返回 null
+	 * @param springCache the spring cache
+	 * @return the live map view of the native cache, or null
+	 */
+	protected Map<Object, Object> resolveNativeMap(org.springframework.cache.Cache springCache) {
+		if (springCache == null) {
+			return null;
+		}
+		Object nativeCache = springCache.getNativeCache();
+		if (nativeCache instanceof ConcurrentMap) {
+			return (Map<Object, Object>) nativeCache;
+		}
+		if (caffeinePresent && nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+			return ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache).asMap();
+		}
+		if (guavaPresent && nativeCache instanceof com.google.common.cache.Cache) {
+			return ((com.google.common.cache.Cache<Object, Object>) nativeCache).asMap();
+		}
+		return null;
+	}
+
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.util.Assert;
+
+/**
+ * 基于 Shiro {@link Cache} 的许可计数存储，缓存中保存 “窗口编号:已租用许可数”。
+ * Shiro Cache 没有原子的读改写操作，本节点内按 key 分段加锁，不同节点同时租用时可能略微超出限额；
+ * 需要严格的全局限额时请使用 {@link JedisPermitStore}。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class CachePermitStore implements PermitStore {
+
+	private static final int STRIPES = 16;
+
+	private final Cache<String, String> cache;
+	private final Object[] locks = new Object[STRIPES];
+
+	public CachePermitStore(Cache<String, String> cache) {
+		Assert.notNull(cache, "cache must not be null");
+		this.cache = cache;
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	@Override
+	public long lease(String key, long window, long requested, long limit, long windowMillis) {
+		synchronized (locks[(key.hashCode() & 0x7fffffff) % STRIPES]) {
+			long used = 0;
+			String value = cache.get(key);
+			if (value != null) {
+				int colon = value.indexOf(':');
+				long number = Long.parseLong(value.substring(0, colon));
+				if (number > window) {
+					return 0;
+				}
+				if (number == window) {
+					used = Long.parseLong(value.substring(colon + 1));
+				}
+			}
+			long grant = Math.min(requested, limit - used);
+			if (grant <= 0) {
+				return 0;
+			}
+			cache.put(key, window + ":" + (used + grant));
+			return grant;
+		}
+	}
+
+	public Cache<String, String> getCache() {
+		return cache;
+	}
+
+}
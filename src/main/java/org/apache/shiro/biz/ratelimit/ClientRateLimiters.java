@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.util.Assert;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * 同一限流规则下按客户端区分的令牌桶集合：
+ * 每个客户端一个 {@link GcraRateLimiter}，空闲超过 {@link #getIdleTimeout()} 的桶被清理；
+ * 客户端数量达到上限时淘汰最近最少使用的桶，新客户端始终获得独立的桶，内存始终有界。
+ * <p>空闲桶的清理由共享的后台守护线程按 {@link #getIdleTimeout()} 周期执行，不占用请求线程；
+ * 后台任务只弱引用本对象，对象不再被使用后任务自动取消，也可调用 {@link #close()} 立即取消。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class ClientRateLimiters {
+
+	public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+	public static final int DEFAULT_MAX_CLIENTS = 10000;
+
+	private final LoadingCache<String, GcraRateLimiter> limiters;
+	private final double permitsPerSecond;
+	private final int burst;
+	/**
+	 * The bucket shared by requests without a client key.
+	 */
+	private final GcraRateLimiter shared;
+	private final long idleNanos;
+	private final int maxClients;
+	private final ScheduledFuture<?> sweeping;
+
+	public ClientRateLimiters(double permitsPerSecond, int burst) {
+		this(permitsPerSecond, burst, DEFAULT_IDLE_TIMEOUT, DEFAULT_MAX_CLIENTS);
+	}
+
+	/**
+	 * @param permitsPerSecond the rate of each client
+	 * @param burst the burst of each client
+	 * @param idleTimeout milliseconds after which an idle (full) bucket is dropped
+	 * @param maxClients the maximum number of buckets
+	 */
+	public ClientRateLimiters(double permitsPerSecond, int burst, long idleTimeout, int maxClients) {
+		Assert.isTrue(idleTimeout > 0, "idleTimeout must be positive");
+		Assert.isTrue(maxClients > 0, "maxClients must be positive");
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+		this.shared = new GcraRateLimiter(permitsPerSecond, burst);
+		this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+		this.maxClients = maxClients;
+		this.limiters = CacheBuilder.newBuilder()
+				.maximumSize(maxClients)
+				.build(new CacheLoader<String, GcraRateLimiter>() {
+					@Override
+					public GcraRateLimiter load(String clientKey) {
+						return new GcraRateLimiter(permitsPerSecond, burst);
+					}
+				});
+		this.sweeping = Sweeper.schedule(this, idleTimeout);
+	}
+
+	/**
+	 * Returns the bucket of the given client, creating it if needed.
+	 * @param clientKey the client key, null for the shared bucket
+	 * @return the client's bucket
+	 */
+	public GcraRateLimiter get(String clientKey) {
+		if (clientKey == null) {
+			return shared;
+		}
+		return limiters.getUnchecked(clientKey);
+	}
+
+	/**
+	 * @param clientKey the client key, null for the shared bucket
+	 * @return true if the client got a permit
+	 */
+	public boolean tryAcquire(String clientKey) {
+		return get(clientKey).tryAcquire();
+	}
+
+	/**
+	 * Drops buckets idle for longer than the idle timeout.
+	 */
+	public void sweep() {
+		long now = System.nanoTime();
+		Iterator<GcraRateLimiter> it = limiters.asMap().values().iterator();
+		while (it.hasNext()) {
+			if (it.next().isIdle(now, idleNanos)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Stops the background sweeping of idle buckets.
+	 */
+	public void close() {
+		sweeping.cancel(false);
+	}
+
+	public int size() {
+		return (int) limiters.size();
+	}
+
+	public double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	public long getIdleTimeout() {
+		return TimeUnit.NANOSECONDS.toMillis(idleNanos);
+	}
+
+	public int getMaxClients() {
+		return maxClients;
+	}
+
+	/**
+	 * The daemon thread sweeping idle buckets of all instances.
+	 */
+	private static final class Sweeper {
+
+		private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "shiro-rate-limit-sweeper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		static ScheduledFuture<?> schedule(ClientRateLimiters limiters, long idleTimeout) {
+			final WeakReference<ClientRateLimiters> reference = new WeakReference<ClientRateLimiters>(limiters);
+			return EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					ClientRateLimiters current = reference.get();
+					if (current == null) {
+						// 抛出异常以取消后续执行
+						throw new IllegalStateException("rate limiters discarded");
+					}
+					current.sweep();
+				}
+			}, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+		}
+
+	}
+
+}
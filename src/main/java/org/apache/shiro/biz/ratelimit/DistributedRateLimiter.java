@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.shiro.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 集群限流器：全局限额按固定时间窗口划分，各节点从 {@link PermitStore} 批量租用本窗口的许可，
+ * 大部分请求只消耗本地租到的许可，无需访问共享存储。
+ * <ul>
+ * <li>租用批量根据本节点上一窗口的实际用量调整，并受 {@link #getMaxLeaseFraction()} 限制，流量在节点间迁移时租约随之重新分配；</li>
+ * <li>租约随窗口结束失效，未用完的许可不会带入下一窗口；租约只向后推进，跨越窗口边界时仍按旧窗口计算的请求使用当前租约；</li>
+ * <li>共享存储中本窗口许可耗尽后，本节点在窗口结束前直接拒绝，不再访问共享存储。</li>
+ * </ul>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class DistributedRateLimiter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DistributedRateLimiter.class);
+
+	public static final long DEFAULT_WINDOW_MILLIS = 1000L;
+	public static final double DEFAULT_MAX_LEASE_FRACTION = 0.1d;
+	/**
+	 * The leases a node aims to take per window at its recent rate.
+	 */
+	private static final int LEASES_PER_WINDOW = 4;
+
+	private final PermitStore store;
+	private final String key;
+	private final long limit;
+	private final long windowMillis;
+	private final long maxLease;
+
+	private volatile Lease lease = new Lease(-1, 0);
+	private volatile long lastWindowUsed;
+
+	/**
+	 * @param store the shared permit store
+	 * @param key the limiter key, shared by all nodes enforcing the same quota
+	 * @param permitsPerSecond the rate across the cluster
+	 */
+	public DistributedRateLimiter(PermitStore store, String key, double permitsPerSecond) {
+		this(store, key, permitsPerSecond, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_LEASE_FRACTION);
+	}
+
+	public DistributedRateLimiter(PermitStore store, String key, double permitsPerSecond, long windowMillis, double maxLeaseFraction) {
+		Assert.notNull(store, "store must not be null");
+		Assert.hasText(key, "key must not be empty");
+		Assert.isTrue(permitsPerSecond > 0, "permitsPerSecond must be positive");
+		Assert.isTrue(windowMillis > 0, "windowMillis must be positive");
+		Assert.isTrue(maxLeaseFraction > 0 && maxLeaseFraction <= 1, "maxLeaseFraction must be in (0, 1]");
+		this.store = store;
+		this.key = key;
+		this.windowMillis = windowMillis;
+		this.limit = Math.max(1L, Math.round(permitsPerSecond * windowMillis / 1000d));
+		this.maxLease = Math.max(1L, (long) (limit * maxLeaseFraction));
+	}
+
+	/**
+	 * Takes one permit if available in this window.
+	 * @return true if the permit was granted
+	 */
+	public boolean tryAcquire() {
+		return tryAcquire(System.currentTimeMillis() / windowMillis);
+	}
+
+	boolean tryAcquire(long window) {
+		Lease current = currentLease(window);
+		if (current.tryTake()) {
+			return true;
+		}
+		if (current.exhausted) {
+			return false;
+		}
+		synchronized (this) {
+			current = currentLease(window);
+			if (current.tryTake()) {
+				return true;
+			}
+			if (current.exhausted) {
+				return false;
+			}
+			long granted;
+			try {
+				granted = store.lease(key, current.window, nextLeaseSize(current), limit, windowMillis);
+			} catch (RuntimeException e) {
+				// 共享存储不可用时本窗口最多放行一个租约的额度，避免限流器成为单点故障
+				LOG.warn("Unable to lease permits of [{}], falling back to local permits.", key, e);
+				granted = Math.max(0, maxLease - current.leased);
+			}
+			if (granted <= 0) {
+				current.exhausted = true;
+				return false;
+			}
+			current.remaining.addAndGet(granted - 1);
+			current.leased += granted;
+			return true;
+		}
+	}
+
+	/**
+	 * Waits until a permit is granted, sleeping to the next window when this one is exhausted.
+	 */
+	public void acquire() {
+		while (!tryAcquire()) {
+			long now = System.currentTimeMillis();
+			long sleep = windowMillis - now % windowMillis;
+			try {
+				TimeUnit.MILLISECONDS.sleep(Math.max(1, sleep));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the lease of the given window, or the lease of a later window when the caller read the clock before a rollover.
+	 */
+	private Lease currentLease(long window) {
+		Lease current = this.lease;
+		if (current.window >= window) {
+			return current;
+		}
+		synchronized (this) {
+			current = this.lease;
+			if (window > current.window) {
+				if (current.window == window - 1) {
+					lastWindowUsed = current.leased - Math.max(0, current.remaining.get());
+				} else {
+					lastWindowUsed = 0;
+				}
+				current = new Lease(window, 0);
+				this.lease = current;
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Sizes the next lease from the previous window's usage, so busy nodes lease more and idle nodes release share.
+	 */
+	private long nextLeaseSize(Lease current) {
+		long size = Math.max(1L, lastWindowUsed / LEASES_PER_WINDOW);
+		// 已经在本窗口多次租用说明流量上升，逐步加倍
+		if (current.leased > 0) {
+			size = Math.max(size, current.leased);
+		}
+		return Math.min(size, maxLease);
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the permits per window across the cluster
+	 */
+	public long getLimit() {
+		return limit;
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	public double getMaxLeaseFraction() {
+		return (double) maxLease / limit;
+	}
+
+	/**
+	 * @return the permits leased by this node in the current window
+	 */
+	public long getLeased() {
+		return lease.leased;
+	}
+
+	private static final class Lease {
+
+		final long window;
+		final AtomicLong remaining;
+		volatile long leased;
+		volatile boolean exhausted;
+
+		Lease(long window, long remaining) {
+			this.window = window;
+			this.remaining = new AtomicLong(remaining);
+		}
+
+		boolean tryTake() {
+			for (;;) {
+				long available = remaining.get();
+				if (available <= 0) {
+					return false;
+				}
+				if (remaining.compareAndSet(available, available - 1)) {
+					return true;
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.shiro.util.Assert;
+
+/**
+ * 基于 GCRA（Generic Cell Rate Algorithm）的令牌桶：整个状态只有一个理论到达时间（TAT），
+ * 每次获取许可只需一次 long 的 CAS，无锁且不分配对象。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public final class GcraRateLimiter {
+
+	/**
+	 * Theoretical arrival time of the next request, in {@link System#nanoTime()} units.
+	 */
+	private final AtomicLong tat;
+	/**
+	 * Nanos between two permits at the steady rate.
+	 */
+	private final long interval;
+	/**
+	 * How far the TAT may run ahead of now, i.e. the burst beyond one permit.
+	 */
+	private final long tolerance;
+
+	/**
+	 * @param permitsPerSecond the steady rate
+	 * @param burst the permits that may be taken at once by an idle client, at least 1
+	 */
+	public GcraRateLimiter(double permitsPerSecond, int burst) {
+		this(permitsPerSecond, burst, System.nanoTime());
+	}
+
+	GcraRateLimiter(double permitsPerSecond, int burst, long now) {
+		Assert.isTrue(permitsPerSecond > 0, "permitsPerSecond must be positive");
+		Assert.isTrue(burst > 0, "burst must be positive");
+		this.interval = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		this.tolerance = interval * (burst - 1);
+		this.tat = new AtomicLong(now);
+	}
+
+	/**
+	 * Takes one permit if available without waiting.
+	 * @return true if the permit was granted
+	 */
+	public boolean tryAcquire() {
+		return tryAcquire(System.nanoTime());
+	}
+
+	boolean tryAcquire(long now) {
+		for (;;) {
+			long current = tat.get();
+			long start = current - now > 0 ? current : now;
+			if (start - now > tolerance) {
+				return false;
+			}
+			if (tat.compareAndSet(current, start + interval)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Reserves one permit and waits until it is due.
+	 */
+	public void acquire() {
+		long now = System.nanoTime();
+		long wait;
+		for (;;) {
+			long current = tat.get();
+			long start = current - now > 0 ? current : now;
+			if (tat.compareAndSet(current, start + interval)) {
+				wait = start - tolerance - now;
+				break;
+			}
+		}
+		while (wait > 0) {
+			long before = System.nanoTime();
+			LockSupport.parkNanos(wait);
+			wait -= System.nanoTime() - before;
+		}
+	}
+
+	/**
+	 * @param now the current {@link System#nanoTime()}
+	 * @param idleNanos the idle period
+	 * @return true if the bucket has been full for at least the idle period, so dropping it loses no state
+	 */
+	public boolean isIdle(long now, long idleNanos) {
+		return now - tat.get() > idleNanos;
+	}
+
+	public double getPermitsPerSecond() {
+		return (double) TimeUnit.SECONDS.toNanos(1) / interval;
+	}
+
+	public int getBurst() {
+		return (int) (tolerance / interval) + 1;
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.shiro.util.Assert;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * 基于 Redis 的许可计数存储，每次租用是一次原子的 Lua 脚本调用，集群内的全局限额是精确的。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class JedisPermitStore implements PermitStore {
+
+	public static final String DEFAULT_KEY_PREFIX = "shiro:ratelimit:";
+
+	private static final String LEASE_SCRIPT =
+			"local used = tonumber(redis.call('GET', KEYS[1]) or '0') "
+			+ "local grant = math.min(tonumber(ARGV[1]), tonumber(ARGV[2]) - used) "
+			+ "if grant <= 0 then return 0 end "
+			+ "redis.call('INCRBY', KEYS[1], grant) "
+			+ "redis.call('PEXPIRE', KEYS[1], ARGV[3]) "
+			+ "return grant";
+
+	private final JedisPool jedisPool;
+	private String keyPrefix = DEFAULT_KEY_PREFIX;
+
+	public JedisPermitStore(JedisPool jedisPool) {
+		Assert.notNull(jedisPool, "jedisPool must not be null");
+		this.jedisPool = jedisPool;
+	}
+
+	@Override
+	public long lease(String key, long window, long requested, long limit, long windowMillis) {
+		String redisKey = keyPrefix + key + ":" + window;
+		try (Jedis jedis = jedisPool.getResource()) {
+			// 保留两个窗口的长度，覆盖节点间的时钟偏差
+			Object grant = jedis.eval(LEASE_SCRIPT, Collections.singletonList(redisKey),
+					Arrays.asList(String.valueOf(requested), String.valueOf(limit), String.valueOf(2 * windowMillis)));
+			return grant instanceof Long ? (Long) grant : 0L;
+		}
+	}
+
+	public String getKeyPrefix() {
+		return keyPrefix;
+	}
+
+	public void setKeyPrefix(String keyPrefix) {
+		this.keyPrefix = keyPrefix;
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单机内存实现，用于测试或单节点部署时替代共享存储
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class MemoryPermitStore implements PermitStore {
+
+	private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<String, Window>();
+
+	@Override
+	public long lease(String key, long window, long requested, long limit, long windowMillis) {
+		Window current = windows.compute(key, (k, v) -> v == null || v.number < window ? new Window(window) : v);
+		if (current.number != window) {
+			return 0;
+		}
+		for (;;) {
+			long used = current.used.get();
+			long grant = Math.min(requested, limit - used);
+			if (grant <= 0) {
+				return 0;
+			}
+			if (current.used.compareAndSet(used, used + grant)) {
+				return grant;
+			}
+		}
+	}
+
+	private static final class Window {
+
+		final long number;
+		final AtomicLong used = new AtomicLong();
+
+		Window(long number) {
+			this.number = number;
+		}
+
+	}
+
+}
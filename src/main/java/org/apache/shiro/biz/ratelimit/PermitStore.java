@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+/**
+ * 集群共享的许可计数存储，各节点按时间窗口批量租用许可
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public interface PermitStore {
+
+	/**
+	 * Atomically grants up to <code>requested</code> permits of the given window without exceeding <code>limit</code>.
+	 * @param key the limiter key
+	 * @param window the window number, permits of older windows are no longer needed
+	 * @param requested the permits wanted by this node
+	 * @param limit the permits of the window across the cluster
+	 * @param windowMillis the window length, usable as the expiry of the counter
+	 * @return the granted permits, 0 if the window is exhausted
+	 */
+	long lease(String key, long window, long requested, long limit, long windowMillis);
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import javax.servlet.ServletRequest;
+
+import org.apache.shiro.biz.utils.RemoteAddrResolver;
+import org.apache.shiro.biz.utils.SubjectUtils;
+import org.apache.shiro.biz.utils.WebUtils;
+
+/**
+ * 限流客户端标识解析：同一规则下每个客户端使用独立的令牌桶。
+ * 默认的客户端IP取连接的对端地址，不信任转发请求头；位于反向代理之后时通过 {@link #ip(RemoteAddrResolver)} 配置受信任的代理。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public interface RateLimitKeyResolver {
+
+	/**
+	 * @param request the current request
+	 * @return the client key, or null to use the rule's shared bucket
+	 */
+	String resolve(ServletRequest request);
+
+	/**
+	 * @return a resolver keyed by the peer address of the connection
+	 */
+	static RateLimitKeyResolver ip() {
+		return ip(new RemoteAddrResolver());
+	}
+
+	/**
+	 * @param remoteAddrResolver resolves the client IP, e.g. with trusted proxies configured
+	 * @return a resolver keyed by the client IP
+	 */
+	static RateLimitKeyResolver ip(RemoteAddrResolver remoteAddrResolver) {
+		return request -> remoteAddrResolver.resolve(request);
+	}
+
+	/**
+	 * @return a resolver keyed by the current principal, falling back to the peer address for anonymous requests
+	 */
+	static RateLimitKeyResolver principal() {
+		RemoteAddrResolver remoteAddrResolver = new RemoteAddrResolver();
+		return request -> {
+			Object principal = SubjectUtils.getPrincipal();
+			return principal != null ? String.valueOf(principal) : remoteAddrResolver.resolve(request);
+		};
+	}
+
+	/**
+	 * @param headerName the header carrying the client key, e.g. an API key or tenant id
+	 * @return a resolver keyed by the given header, falling back to the peer address when absent
+	 */
+	static RateLimitKeyResolver header(String headerName) {
+		RemoteAddrResolver remoteAddrResolver = new RemoteAddrResolver();
+		return request -> {
+			String value = WebUtils.toHttp(request).getHeader(headerName);
+			return value != null ? value : remoteAddrResolver.resolve(request);
+		};
+	}
+
+}
@@ -148,6 +148,15 @@ public abstract class AbstractAuthorizingRealm extends AuthorizingRealm {
 		return info;
     }
 	
+	/**
+	 * 绕过授权缓存直接从 {@link ShiroPrincipalRepository} 加载授权信息，供缓存的异步刷新使用。
+	 * @param principals 身份集合
+	 * @return 授权信息
+	 */
+	public AuthorizationInfo loadAuthorizationInfo(PrincipalCollection principals) {
+		return doGetAuthorizationInfo(principals);
+	}
+	
 	public void clearAuthorizationCache(){
 		clearCachedAuthorizationInfo(SecurityUtils.getSubject().getPrincipals());
 	}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.session.mgt;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.shiro.biz.session.mgt.eis.PartialUpdateSessionDAO;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.session.mgt.eis.SessionDAO;
+import org.apache.shiro.util.Assert;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.Initializable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 会话访问时间（lastAccessTime）写入合并器：
+ * <ul>
+ * <li>仅当访问时间相对上次持久化的值前移超过 <code>timeout * touchThreshold</code> 时才需要写入；</li>
+ * <li>需要写入的会话进入待刷新集合（同一会话只保留最新一次），由后台线程按 {@link #getFlushInterval()} 周期批量写入；</li>
+ * <li>{@link #destroy()} 时刷新所有待写入的会话；</li>
+ * <li>委托对象未实现 {@link PartialUpdateSessionDAO} 时，刷新会重新读取存储中的会话，仅前移其访问时间后写回，不会以过期的快照覆盖其他写入。</li>
+ * </ul>
+ * <p>注意：本模块未提供 {@link PartialUpdateSessionDAO} 实现（shiro-redis 以单个序列化值保存会话），
+ * 此时每次刷新仍是一次完整读取加一次完整写入。节省来自写入次数：每个会话每 <code>timeout * touchThreshold</code>
+ * 至多刷新一次，而不是每个请求写入一次，单次写入的开销并未降低；需要单次写入也更轻时，应由存储层实现 {@link PartialUpdateSessionDAO}
+ * （如将访问时间保存为独立的键或 Hash 字段）。</p>
+ * 代价是存储中的访问时间最多落后 <code>timeout * touchThreshold + flushInterval</code>，
+ * 依赖存储端访问时间的过期判断（如会话校验、Redis TTL）会相应提前。
+ * 通常通过 {@link org.apache.shiro.biz.session.mgt.eis.DirtyCheckingSessionDAO#setTouchCoalescer(SessionTouchCoalescer)} 使用。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class SessionTouchCoalescer implements Initializable, Destroyable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SessionTouchCoalescer.class);
+
+	/**
+	 * The default fraction of the session timeout the access time must move before it is persisted.
+	 */
+	public static final double DEFAULT_TOUCH_THRESHOLD = 0.1d;
+	/**
+	 * The default interval of the background flush, in milliseconds.
+	 */
+	public static final long DEFAULT_FLUSH_INTERVAL = 5000L;
+
+	private final SessionDAO sessionDAO;
+	/**
+	 * Session id -> last access time known to be in the store.
+	 */
+	private final Map<Serializable, Long> persisted = new ConcurrentHashMap<Serializable, Long>();
+	/**
+	 * Session id -> session waiting for the next flush.
+	 */
+	private final Map<Serializable, Session> pending = new ConcurrentHashMap<Serializable, Session>();
+	private final AtomicLong absorbed = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+
+	private double touchThreshold = DEFAULT_TOUCH_THRESHOLD;
+	private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+	private volatile ScheduledExecutorService executor;
+
+	public SessionTouchCoalescer(SessionDAO sessionDAO) {
+		Assert.notNull(sessionDAO, "sessionDAO must not be null");
+		this.sessionDAO = sessionDAO;
+	}
+
+	@Override
+	public void init() {
+		if (executor != null) {
+			return;
+		}
+		synchronized (this) {
+			if (executor == null) {
+				ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "shiro-session-touch-flusher");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				service.scheduleWithFixedDelay(new Runnable() {
+					@Override
+					public void run() {
+						flush();
+					}
+				}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+				this.executor = service;
+			}
+		}
+	}
+
+	/**
+	 * Accepts a touch-only change of the given session; the write is either dropped or deferred.
+	 * @param session the touched session
+	 */
+	public void touch(Session session) {
+		Serializable id = session.getId();
+		Date lastAccessTime = session.getLastAccessTime();
+		if (id == null || lastAccessTime == null) {
+			return;
+		}
+		init();
+		Long stored = persisted.get(id);
+		long threshold = (long) (session.getTimeout() * touchThreshold);
+		if (stored != null && lastAccessTime.getTime() - stored.longValue() < threshold) {
+			absorbed.incrementAndGet();
+			return;
+		}
+		if (pending.put(id, session) != null) {
+			absorbed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records that the given session was written in full, so its stored access time is current.
+	 * Must only be called after a successful write, never after a read.
+	 * @param session the session written to the store
+	 */
+	public void synced(Session session) {
+		Serializable id = session.getId();
+		Date lastAccessTime = session.getLastAccessTime();
+		if (id == null || lastAccessTime == null) {
+			return;
+		}
+		long time = lastAccessTime.getTime();
+		Session waiting = pending.get(id);
+		if (waiting != null && !isNewer(waiting, time)) {
+			pending.remove(id, waiting);
+		}
+		advance(id, time);
+	}
+
+	/**
+	 * Forgets the given session, called when it is deleted from the store.
+	 * @param session the deleted session
+	 */
+	public void remove(Session session) {
+		Serializable id = session.getId();
+		if (id != null) {
+			pending.remove(id);
+			persisted.remove(id);
+		}
+	}
+
+	/**
+	 * Writes all pending access times to the store.
+	 * @return the number of sessions written
+	 */
+	public int flush() {
+		int count = 0;
+		Iterator<Map.Entry<Serializable, Session>> it = pending.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Serializable, Session> entry = it.next();
+			Session session = entry.getValue();
+			// 仅当条目未被新的 touch 替换时才移除
+			if (!pending.remove(entry.getKey(), session)) {
+				continue;
+			}
+			try {
+				Date lastAccessTime = session.getLastAccessTime();
+				if (sessionDAO instanceof PartialUpdateSessionDAO) {
+					((PartialUpdateSessionDAO) sessionDAO).updateLastAccessTime(session);
+				} else if (!touchStored(session, lastAccessTime)) {
+					continue;
+				}
+				advance(entry.getKey(), lastAccessTime.getTime());
+				count++;
+			} catch (UnknownSessionException e) {
+				persisted.remove(entry.getKey());
+			} catch (RuntimeException e) {
+				LOG.warn("Unable to flush last access time of session [{}].", entry.getKey(), e);
+			}
+		}
+		written.addAndGet(count);
+		purgeExpired();
+		return count;
+	}
+
+	/**
+	 * Moves only the access time of the stored session forward, keeping any attributes written since the touch.
+	 * @param session the touched session
+	 * @param lastAccessTime the access time to persist
+	 * @return false if the store already holds the same or a later access time
+	 */
+	protected boolean touchStored(Session session, Date lastAccessTime) {
+		Session stored = sessionDAO.readSession(session.getId());
+		if (stored == null) {
+			throw new UnknownSessionException("There is no session with id [" + session.getId() + "]");
+		}
+		if (stored != session) {
+			Date storedTime = stored.getLastAccessTime();
+			if (storedTime != null && !storedTime.before(lastAccessTime)) {
+				advance(session.getId(), storedTime.getTime());
+				return false;
+			}
+			if (!(stored instanceof SimpleSession)) {
+				LOG.debug("Session [{}] is not a SimpleSession, skip flushing its last access time.", session.getId());
+				return false;
+			}
+			((SimpleSession) stored).setLastAccessTime(lastAccessTime);
+		}
+		sessionDAO.update(stored);
+		return true;
+	}
+
+	private boolean isNewer(Session session, long time) {
+		Date lastAccessTime = session.getLastAccessTime();
+		return lastAccessTime != null && lastAccessTime.getTime() > time;
+	}
+
+	private void advance(Serializable id, long time) {
+		Long previous = persisted.get(id);
+		if (previous == null || previous.longValue() < time) {
+			persisted.put(id, time);
+		}
+	}
+
+	/**
+	 * Drops access times of sessions which must have expired in the store without being deleted through this DAO.
+	 */
+	protected void purgeExpired() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<Serializable, Long>> it = persisted.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Serializable, Long> entry = it.next();
+			if (now - entry.getValue().longValue() > getRetention() && !pending.containsKey(entry.getKey())) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return how long an access time is remembered without being touched, in milliseconds
+	 */
+	protected long getRetention() {
+		return TimeUnit.HOURS.toMillis(24);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		ScheduledExecutorService service = this.executor;
+		this.executor = null;
+		if (service != null) {
+			service.shutdown();
+			service.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+		}
+		flush();
+	}
+
+	public SessionDAO getSessionDAO() {
+		return sessionDAO;
+	}
+
+	/**
+	 * @return the number of touches that did not result in a store write
+	 */
+	public long getAbsorbedCount() {
+		return absorbed.get();
+	}
+
+	/**
+	 * @return the number of access times written by {@link #flush()}
+	 */
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	public double getTouchThreshold() {
+		return touchThreshold;
+	}
+
+	public void setTouchThreshold(double touchThreshold) {
+		Assert.isTrue(touchThreshold >= 0 && touchThreshold < 1, "touchThreshold must be in [0, 1)");
+		this.touchThreshold = touchThreshold;
+	}
+
+	public long getFlushInterval() {
+		return flushInterval;
+	}
+
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval > 0, "flushInterval must be positive");
+		this.flushInterval = flushInterval;
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.session.mgt.eis;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+import org.apache.shiro.biz.session.mgt.SessionTouchCoalescer;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SimpleOnlineSession;
+import org.apache.shiro.session.mgt.eis.SessionDAO;
+import org.apache.shiro.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于脏标记的 SessionDAO 装饰器：
+ * <ul>
+ * <li>会话未发生任何变化时跳过 update 写入；</li>
+ * <li>仅最后访问时间变化且委托对象实现了 {@link PartialUpdateSessionDAO} 时，只写入最后访问时间；</li>
+ * <li>仅部分属性变化且委托对象支持局部更新时，只写入变化的属性；</li>
+ * <li>其余情况写入完整会话。</li>
+ * </ul>
+ * 脏标记由 {@link SimpleOnlineSession} 记录，非 {@link SimpleOnlineSession} 的会话始终完整写入。
+ * 脏标记仅在写入成功后、且写入期间会话未再变化时清除，委托对象返回共享的会话实例（如 MemorySessionDAO）时，
+ * 一个请求的读取不会清除另一个请求尚未写入的变化。
+ * 配置 {@link SessionTouchCoalescer} 后，仅访问时间变化的写入交由其节流并批量刷新。
+ * <p>注意：只能检测通过会话方法产生的变化，直接修改属性值内部状态（如取出 List 后 add）不会触发写入，
+ * 需重新 setAttribute 或调用 {@link SimpleOnlineSession#markAttributeChanged()}。
+ * 局部更新需委托对象实现 {@link PartialUpdateSessionDAO}，本模块未提供实现，否则有变化时均写入完整会话。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class DirtyCheckingSessionDAO implements SessionDAO {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DirtyCheckingSessionDAO.class);
+
+	private final SessionDAO delegate;
+	private SessionTouchCoalescer touchCoalescer;
+
+	public DirtyCheckingSessionDAO(SessionDAO delegate) {
+		Assert.notNull(delegate, "delegate SessionDAO must not be null");
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Serializable create(Session session) {
+		Serializable sessionId = delegate.create(session);
+		// 新建会话尚未被其他线程共享，写入后与存储一致
+		resetChanged(session);
+		synced(session);
+		return sessionId;
+	}
+
+	@Override
+	public Session readSession(Serializable sessionId) throws UnknownSessionException {
+		// 读取不影响待刷新的访问时间：共享实例上的访问时间可能尚未写入存储
+		return delegate.readSession(sessionId);
+	}
+
+	@Override
+	public void update(Session session) throws UnknownSessionException {
+		if (!(session instanceof SimpleOnlineSession)) {
+			delegate.update(session);
+			synced(session);
+			return;
+		}
+		SimpleOnlineSession online = (SimpleOnlineSession) session;
+		// 先快照，写入成功后仅在期间未发生新变化时清除标记；写入失败时标记保留到下次写入
+		SimpleOnlineSession.Changes changes = online.getChanges();
+		boolean attributeChanged = changes.isAttributeChanged();
+		boolean stateChanged = changes.isStateChanged();
+		boolean lastAccessTimeChanged = changes.isLastAccessTimeChanged();
+		if (!attributeChanged && !stateChanged && !lastAccessTimeChanged) {
+			LOG.trace("Session [{}] unchanged, skip update.", session.getId());
+			return;
+		}
+		if (touchCoalescer != null && !attributeChanged && !stateChanged) {
+			touchCoalescer.touch(session);
+			online.resetAttributeChanged(changes);
+			return;
+		}
+		if (delegate instanceof PartialUpdateSessionDAO && !stateChanged) {
+			PartialUpdateSessionDAO partial = (PartialUpdateSessionDAO) delegate;
+			if (!attributeChanged) {
+				partial.updateLastAccessTime(session);
+				online.resetAttributeChanged(changes);
+				return;
+			}
+			if (!changes.isAllAttributesChanged()) {
+				if (lastAccessTimeChanged) {
+					partial.updateLastAccessTime(session);
+				}
+				partial.updateAttributes(session, changes.getChangedAttributeKeys());
+				online.resetAttributeChanged(changes);
+				if (lastAccessTimeChanged) {
+					synced(session);
+				}
+				return;
+			}
+		}
+		delegate.update(session);
+		online.resetAttributeChanged(changes);
+		synced(session);
+	}
+
+	@Override
+	public void delete(Session session) {
+		delegate.delete(session);
+		if (touchCoalescer != null) {
+			touchCoalescer.remove(session);
+		}
+	}
+
+	@Override
+	public Collection<Session> getActiveSessions() {
+		return delegate.getActiveSessions();
+	}
+
+	protected void resetChanged(Session session) {
+		if (session instanceof SimpleOnlineSession) {
+			((SimpleOnlineSession) session).resetAttributeChanged();
+		}
+	}
+
+	protected void synced(Session session) {
+		if (touchCoalescer != null && session != null) {
+			touchCoalescer.synced(session);
+		}
+	}
+
+	public SessionDAO getDelegate() {
+		return delegate;
+	}
+
+	public SessionTouchCoalescer getTouchCoalescer() {
+		return touchCoalescer;
+	}
+
+	public void setTouchCoalescer(SessionTouchCoalescer touchCoalescer) {
+		this.touchCoalescer = touchCoalescer;
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.session.mgt.eis;
+
+import java.util.Collection;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.eis.SessionDAO;
+
+/**
+ * 支持局部更新的 SessionDAO，存储端可仅写入发生变化的部分（如 Redis Hash 字段），避免每次请求整会话序列化。
+ * 本模块不提供实现：shiro-redis 的 RedisSessionDAO 以单个序列化值保存会话，无法按字段写入，需由存储层自行实现。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public interface PartialUpdateSessionDAO extends SessionDAO {
+
+	/**
+	 * Persists only the last access time of the given session.
+	 * @param session the session whose last access time changed
+	 * @throws UnknownSessionException if the session does not exist in the store
+	 */
+	void updateLastAccessTime(Session session) throws UnknownSessionException;
+
+	/**
+	 * Persists only the given attributes of the session; keys no longer present on the session must be removed.
+	 * @param session the session whose attributes changed
+	 * @param changedKeys the keys set or removed since the last write
+	 * @throws UnknownSessionException if the session does not exist in the store
+	 */
+	void updateAttributes(Session session, Collection<Object> changedKeys) throws UnknownSessionException;
+
+}
@@ -1,5 +1,7 @@
 package org.apache.shiro.biz.spring;
 
+import java.util.List;
+
 import org.apache.shiro.biz.web.filter.HttpServletShiroFilter;
 import org.apache.shiro.mgt.SecurityManager;
 import org.apache.shiro.spring.web.ShiroFilterFactoryBean;
@@ -22,6 +24,15 @@ public class ShiroFilterProxyFactoryBean extends ShiroFilterFactoryBean {
      * @since 1.2
      */
     private boolean staticSecurityManagerEnabled;
+    /**
+     * Paths passed straight to the servlet chain without a Subject, e.g. {@code /static/**}.
+     */
+    private List<String> bypassPatterns;
+    /**
+     * Whether requests whose matching chains only consist of anonymous filters skip Subject creation as well,
+     * see {@link HttpServletShiroFilter#isAnonymousChain(javax.servlet.ServletRequest)}.
+     */
+    private boolean bypassAnonymousChains;
 
 	@Override
 	protected AbstractShiroFilter createInstance() throws Exception {
@@ -53,6 +64,8 @@ public class ShiroFilterProxyFactoryBean extends ShiroFilterFactoryBean {
         //injection of the SecurityManager and FilterChainResolver:
         SpringShiroFilterProxy shiroFilterProxy = new SpringShiroFilterProxy((WebSecurityManager) securityManager, chainResolver);
         shiroFilterProxy.setStaticSecurityManagerEnabled(staticSecurityManagerEnabled);
+        shiroFilterProxy.setBypassPatterns(bypassPatterns);
+        shiroFilterProxy.setBypassAnonymousChains(bypassAnonymousChains);
         return shiroFilterProxy;
     }
 	
@@ -94,4 +107,20 @@ public class ShiroFilterProxyFactoryBean extends ShiroFilterFactoryBean {
 		this.staticSecurityManagerEnabled = staticSecurityManagerEnabled;
 	}
 
+	public List<String> getBypassPatterns() {
+		return bypassPatterns;
+	}
+
+	public void setBypassPatterns(List<String> bypassPatterns) {
+		this.bypassPatterns = bypassPatterns;
+	}
+
+	public boolean isBypassAnonymousChains() {
+		return bypassAnonymousChains;
+	}
+
+	public void setBypassAnonymousChains(boolean bypassAnonymousChains) {
+		this.bypassAnonymousChains = bypassAnonymousChains;
+	}
+
 }
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的 Ant 风格路径匹配器：配置时把所有规则按路径段构建为一棵前缀树（字面量子节点、段内通配 <code>*</code>/<code>?</code>、<code>**</code>），
+ * 请求时一次遍历路径即可得到所有匹配的规则，代价与规则数量基本无关。
+ * <p>匹配语义与 {@link org.apache.shiro.util.AntPathMatcher} 一致（路径段按 <code>/</code> 分隔，忽略空段），
+ * 不支持 Spring 的 <code>{variable}</code> 语法，见 {@link #isCompilable(String)}。
+ * <p>编译后的实例是不可变的，可被多个线程并发使用。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public final class CompiledPathMatcher {
+
+	private static final String SEPARATOR = "/";
+	private static final String DOUBLE_WILDCARD = "**";
+
+	private final String[] patterns;
+	private final Node absoluteRoot = new Node();
+	private final Node relativeRoot = new Node();
+
+	private CompiledPathMatcher(Collection<String> patterns) {
+		this.patterns = patterns.toArray(new String[0]);
+		for (int i = 0; i < this.patterns.length; i++) {
+			add(this.patterns[i], i);
+		}
+	}
+
+	/**
+	 * Compiles the given patterns.
+	 * @param patterns the patterns in definition order
+	 * @return the compiled matcher
+	 * @throws IllegalArgumentException if a pattern is not {@link #isCompilable(String) compilable}
+	 */
+	public static CompiledPathMatcher compile(Collection<String> patterns) {
+		for (String pattern : patterns) {
+			if (!isCompilable(pattern)) {
+				throw new IllegalArgumentException("Pattern [" + pattern + "] can not be compiled.");
+			}
+		}
+		return new CompiledPathMatcher(patterns);
+	}
+
+	/**
+	 * @param pattern the pattern to check
+	 * @return true if the pattern uses only the Ant syntax supported by this matcher
+	 */
+	public static boolean isCompilable(String pattern) {
+		return pattern != null && pattern.indexOf('{') < 0;
+	}
+
+	/**
+	 * @param patterns the patterns to check
+	 * @return true if every pattern is {@link #isCompilable(String) compilable}
+	 */
+	public static boolean isCompilable(Collection<String> patterns) {
+		for (String pattern : patterns) {
+			if (!isCompilable(pattern)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void add(String pattern, int index) {
+		Node node = pattern.startsWith(SEPARATOR) ? absoluteRoot : relativeRoot;
+		String[] segments = tokenize(pattern);
+		boolean hasDoubleWildcard = false;
+		for (String segment : segments) {
+			if (DOUBLE_WILDCARD.equals(segment)) {
+				hasDoubleWildcard = true;
+				if (node.doubleWildcard == null) {
+					node.doubleWildcard = new Node();
+					node.doubleWildcard.isDoubleWildcard = true;
+				}
+				node = node.doubleWildcard;
+			} else if (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0) {
+				Node child = null;
+				for (int i = 0; i < node.wildcardSegments.size(); i++) {
+					if (node.wildcardSegments.get(i).equals(segment)) {
+						child = node.wildcardChildren.get(i);
+					}
+				}
+				if (child == null) {
+					child = new Node();
+					node.wildcardSegments.add(segment);
+					node.wildcardChildren.add(child);
+				}
+				node = child;
+			} else {
+				if (node.literals == null) {
+					node.literals = new HashMap<String, Node>();
+				}
+				Node child = node.literals.get(segment);
+				if (child == null) {
+					child = new Node();
+					node.literals.put(segment, child);
+				}
+				node = child;
+			}
+		}
+		// 无 ** 的规则需要比较结尾的分隔符
+		int flags = hasDoubleWildcard ? Node.ANY_TRAILING : pattern.endsWith(SEPARATOR) ? Node.TRAILING : Node.NO_TRAILING;
+		node.addTerminal(index, flags);
+	}
+
+	/**
+	 * Returns every pattern matching the given path, in definition order.
+	 * @param path the path to match, e.g. the request path within the application
+	 * @return the matching patterns, empty if none
+	 */
+	public List<String> matchAll(String path) {
+		boolean[] matched = match(path);
+		if (matched == null) {
+			return Collections.emptyList();
+		}
+		List<String> result = new ArrayList<String>(2);
+		for (int i = 0; i < matched.length; i++) {
+			if (matched[i]) {
+				result.add(patterns[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the first pattern, in definition order, matching the given path.
+	 * @param path the path to match
+	 * @return the first matching pattern, or null if none
+	 */
+	public String matchFirst(String path) {
+		boolean[] matched = match(path);
+		if (matched != null) {
+			for (int i = 0; i < matched.length; i++) {
+				if (matched[i]) {
+					return patterns[i];
+				}
+			}
+		}
+		return null;
+	}
+
+	private boolean[] match(String path) {
+		if (path == null || patterns.length == 0) {
+			return null;
+		}
+		Node root = path.startsWith(SEPARATOR) ? absoluteRoot : relativeRoot;
+		String[] segments = tokenize(path);
+		boolean trailing = path.endsWith(SEPARATOR);
+		boolean[] matched = new boolean[patterns.length];
+		boolean any = false;
+		// 当前位置的活动节点集合（NFA），进入 ** 节点是一次空转移
+		List<Node> current = new ArrayList<Node>();
+		addState(current, root);
+		for (String segment : segments) {
+			List<Node> next = new ArrayList<Node>();
+			for (int n = 0; n < current.size(); n++) {
+				Node node = current.get(n);
+				if (node.isDoubleWildcard) {
+					// ** 继续吞掉当前路径段
+					addState(next, node);
+				}
+				if (node.literals != null) {
+					Node child = node.literals.get(segment);
+					if (child != null) {
+						addState(next, child);
+					}
+				}
+				for (int i = 0; i < node.wildcardSegments.size(); i++) {
+					if (matchSegment(node.wildcardSegments.get(i), segment)) {
+						addState(next, node.wildcardChildren.get(i));
+					}
+				}
+			}
+			if (next.isEmpty()) {
+				return null;
+			}
+			current = next;
+		}
+		for (int n = 0; n < current.size(); n++) {
+			Node node = current.get(n);
+			any |= node.accept(matched, trailing);
+			// 路径以分隔符结尾时，末尾的单个 * 可以匹配空段
+			if (trailing && !node.isDoubleWildcard) {
+				for (int i = 0; i < node.wildcardSegments.size(); i++) {
+					if ("*".equals(node.wildcardSegments.get(i))) {
+						any |= node.wildcardChildren.get(i).acceptEmptySegment(matched);
+					}
+				}
+			}
+		}
+		return any ? matched : null;
+	}
+
+	private static void addState(List<Node> states, Node node) {
+		for (Node state : states) {
+			if (state == node) {
+				return;
+			}
+		}
+		states.add(node);
+		if (node.doubleWildcard != null) {
+			addState(states, node.doubleWildcard);
+		}
+	}
+
+	private static String[] tokenize(String path) {
+		List<String> tokens = new ArrayList<String>();
+		int start = 0;
+		int length = path.length();
+		while (start <= length) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = length;
+			}
+			String token = path.substring(start, end);
+			if (!token.isEmpty()) {
+				tokens.add(token);
+			}
+			start = end + 1;
+		}
+		return tokens.toArray(new String[0]);
+	}
+
+	/**
+	 * Matches a single path segment against a segment pattern with <code>*</code> (zero or more characters) and <code>?</code> (one character).
+	 */
+	static boolean matchSegment(String pattern, String str) {
+		int p = 0;
+		int s = 0;
+		int starP = -1;
+		int starS = 0;
+		while (s < str.length()) {
+			if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == str.charAt(s))) {
+				p++;
+				s++;
+			} else if (p < pattern.length() && pattern.charAt(p) == '*') {
+				starP = p++;
+				starS = s;
+			} else if (starP >= 0) {
+				p = starP + 1;
+				s = ++starS;
+			} else {
+				return false;
+			}
+		}
+		while (p < pattern.length() && pattern.charAt(p) == '*') {
+			p++;
+		}
+		return p == pattern.length();
+	}
+
+	/**
+	 * @return the compiled patterns in definition order
+	 */
+	public List<String> getPatterns() {
+		return Collections.unmodifiableList(Arrays.asList(patterns));
+	}
+
+	public int size() {
+		return patterns.length;
+	}
+
+	public boolean isEmpty() {
+		return patterns.length == 0;
+	}
+
+	private static final class Node {
+
+		static final int NO_TRAILING = 0;
+		static final int TRAILING = 1;
+		static final int ANY_TRAILING = 2;
+
+		Map<String, Node> literals;
+		final List<String> wildcardSegments = new ArrayList<String>(0);
+		final List<Node> wildcardChildren = new ArrayList<Node>(0);
+		Node doubleWildcard;
+		boolean isDoubleWildcard;
+		int[] terminals = new int[0];
+		int[] terminalFlags = new int[0];
+
+		void addTerminal(int index, int flags) {
+			terminals = Arrays.copyOf(terminals, terminals.length + 1);
+			terminalFlags = Arrays.copyOf(terminalFlags, terminalFlags.length + 1);
+			terminals[terminals.length - 1] = index;
+			terminalFlags[terminalFlags.length - 1] = flags;
+		}
+
+		boolean accept(boolean[] matched, boolean trailing) {
+			boolean any = false;
+			for (int i = 0; i < terminals.length; i++) {
+				int flags = terminalFlags[i];
+				if (flags == ANY_TRAILING || (flags == TRAILING) == trailing) {
+					matched[terminals[i]] = true;
+					any = true;
+				}
+			}
+			return any;
+		}
+
+		boolean acceptEmptySegment(boolean[] matched) {
+			boolean any = false;
+			for (int i = 0; i < terminals.length; i++) {
+				if (terminalFlags[i] != ANY_TRAILING) {
+					matched[terminals[i]] = true;
+					any = true;
+				}
+			}
+			return any;
+		}
+
+	}
+
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.utils;
+
+import java.net.InetAddress;
+import java.util.Comparator;
+
+import com.google.common.net.InetAddresses;
+
+/**
+ * IPv4/IPv6 前缀树（按位的 radix trie），支持 CIDR 规则的最长前缀匹配，或按给定顺序在所有包含该地址的规则中取第一个：
+ * 查找代价只与地址位数（32/128）有关，与规则数量无关；查找过程不分配对象。
+ * 规则由 {@link InetAddresses#forString(String)} 解析（只接受字面量，不做 DNS 解析）；
+ * 查找时的地址解析是手写的无分配实现，语义与前者一致，非法地址不匹配任何规则。
+ * IPv4 映射的 IPv6 地址（::ffff:a.b.c.d）按 IPv4 匹配，前缀不短于 96 位的此类规则同样转换为 IPv4 规则。
+ * <p>写入不是线程安全的，应在构建完成后以不可变方式发布给查找线程。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public final class IpPrefixTrie<V> {
+
+	private static final ThreadLocal<int[]> GROUPS = ThreadLocal.withInitial(() -> new int[8]);
+
+	private final Node<V> v4 = new Node<V>();
+	private final Node<V> v6 = new Node<V>();
+	private int size;
+
+	/**
+	 * Adds a rule; a later rule with the same prefix replaces the earlier one.
+	 * @param cidr an address (<code>10.1.2.3</code>, <code>::1</code>) or a CIDR block (<code>10.0.0.0/8</code>, <code>2001:db8::/32</code>)
+	 * @param value the value returned for addresses within the block
+	 * @throws IllegalArgumentException if the rule is not a valid address or CIDR block
+	 */
+	public void put(String cidr, V value) {
+		String text = cidr.trim();
+		int slash = text.indexOf('/');
+		String literal = slash < 0 ? text : text.substring(0, slash);
+		InetAddress address;
+		try {
+			address = InetAddresses.forString(literal);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid IP rule [" + cidr + "]", e);
+		}
+		byte[] bytes = address.getAddress();
+		// ::ffff:a.b.c.d 被解析为 IPv4 地址，前缀长度仍按 IPv6 书写
+		boolean mapped = bytes.length == 4 && literal.indexOf(':') >= 0;
+		int maxBits = mapped ? 128 : bytes.length * 8;
+		int bits = maxBits;
+		if (slash >= 0) {
+			try {
+				bits = Integer.parseInt(text.substring(slash + 1).trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid IP rule [" + cidr + "]", e);
+			}
+			if (bits < 0 || bits > maxBits) {
+				throw new IllegalArgumentException("Invalid prefix length in IP rule [" + cidr + "]");
+			}
+		}
+		if (mapped) {
+			if (bits >= 96) {
+				bits -= 96;
+			} else {
+				byte[] v6Bytes = new byte[16];
+				v6Bytes[10] = (byte) 0xFF;
+				v6Bytes[11] = (byte) 0xFF;
+				System.arraycopy(bytes, 0, v6Bytes, 12, 4);
+				bytes = v6Bytes;
+			}
+		}
+		Node<V> node = bytes.length == 4 ? v4 : v6;
+		for (int i = 0; i < bits; i++) {
+			int bit = (bytes[i >>> 3] >>> (7 - (i & 7))) & 1;
+			Node<V> next = bit == 0 ? node.zero : node.one;
+			if (next == null) {
+				next = new Node<V>();
+				if (bit == 0) {
+					node.zero = next;
+				} else {
+					node.one = next;
+				}
+			}
+			node = next;
+		}
+		if (!node.terminal) {
+			size++;
+		}
+		node.terminal = true;
+		node.value = value;
+	}
+
+	/**
+	 * Returns the value of the most specific rule containing the given address.
+	 * @param address the textual IPv4 or IPv6 address, as returned by {@link javax.servlet.ServletRequest#getRemoteAddr()}
+	 * @return the value of the longest matching prefix, or null if no rule matches or the address is invalid
+	 */
+	public V lookup(String address) {
+		return lookup(address, null);
+	}
+
+	/**
+	 * Returns the first value in the given order among all rules containing the given address, e.g. the rule defined first.
+	 * @param address the textual IPv4 or IPv6 address
+	 * @param order the order of the values, {@code null} to return the longest matching prefix
+	 * @return the first matching value, or null if no rule matches or the address is invalid
+	 */
+	public V lookup(String address, Comparator<? super V> order) {
+		if (address == null || address.isEmpty()) {
+			return null;
+		}
+		long ipv4 = parseIPv4(address, 0, address.length());
+		if (ipv4 >= 0) {
+			return lookupIPv4(ipv4, order);
+		}
+		int[] groups = GROUPS.get();
+		if (!parseGroups(address, groups)) {
+			return null;
+		}
+		long hi = high(groups);
+		long lo = low(groups);
+		if (hi == 0 && (lo >>> 32) == 0xFFFFL) {
+			return lookupIPv4(lo & 0xFFFFFFFFL, order);
+		}
+		Node<V> node = v6;
+		V match = node.terminal ? node.value : null;
+		for (int i = 0; i < 128 && node != null; i++) {
+			node = bit(hi, lo, i) == 0 ? node.zero : node.one;
+			if (node != null && node.terminal) {
+				match = choose(match, node.value, order);
+			}
+		}
+		return match;
+	}
+
+	private V lookupIPv4(long ipv4, Comparator<? super V> order) {
+		Node<V> node = v4;
+		V match = node.terminal ? node.value : null;
+		for (int i = 0; i < 32 && node != null; i++) {
+			node = ((ipv4 >>> (31 - i)) & 1) == 0 ? node.zero : node.one;
+			if (node != null && node.terminal) {
+				match = choose(match, node.value, order);
+			}
+		}
+		return match;
+	}
+
+	/**
+	 * Picks between a shorter and a longer matching prefix.
+	 */
+	private static <V> V choose(V shorter, V longer, Comparator<? super V> order) {
+		if (order == null || shorter == null) {
+			return longer;
+		}
+		return order.compare(longer, shorter) < 0 ? longer : shorter;
+	}
+
+	/**
+	 * @return the number of distinct rules
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private static int bit(long hi, long lo, int i) {
+		return i < 64 ? (int) (hi >>> (63 - i)) & 1 : (int) (lo >>> (127 - i)) & 1;
+	}
+
+	/**
+	 * Parses a dotted IPv4 address.
+	 * @return the address as an unsigned 32 bit value, or -1 if invalid
+	 */
+	static long parseIPv4(CharSequence s, int from, int to) {
+		int octets = 0;
+		int current = -1;
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9') {
+				// 与 InetAddresses 一致，拒绝可能被理解为八进制的前导零
+				if (current == 0) {
+					return -1;
+				}
+				current = (current < 0 ? 0 : current * 10) + (c - '0');
+				if (current > 255) {
+					return -1;
+				}
+			} else if (c == '.') {
+				if (current < 0 || octets == 3) {
+					return -1;
+				}
+				value = (value << 8) | current;
+				octets++;
+				current = -1;
+			} else {
+				return -1;
+			}
+		}
+		if (current < 0 || octets != 3) {
+			return -1;
+		}
+		return (value << 8) | current;
+	}
+
+	private static long high(int[] groups) {
+		return ((long) groups[0] << 48) | ((long) groups[1] << 32) | ((long) groups[2] << 16) | groups[3];
+	}
+
+	private static long low(int[] groups) {
+		return ((long) groups[4] << 48) | ((long) groups[5] << 32) | ((long) groups[6] << 16) | groups[7];
+	}
+
+	/**
+	 * Parses an IPv6 address into 8 groups of 16 bits, supporting <code>::</code>, zone ids and an embedded IPv4 tail.
+	 */
+	private static boolean parseGroups(String s, int[] groups) {
+		int len = s.indexOf('%');
+		if (len < 0) {
+			len = s.length();
+		}
+		if (len < 2) {
+			return false;
+		}
+		int n = 0;
+		int doubleColon = -1;
+		int i = 0;
+		if (s.charAt(0) == ':') {
+			if (s.charAt(1) != ':') {
+				return false;
+			}
+			doubleColon = 0;
+			i = 2;
+		}
+		while (i < len) {
+			if (n == 8) {
+				return false;
+			}
+			int start = i;
+			int value = 0;
+			int digits = 0;
+			int h;
+			while (i < len && (h = Character.digit(s.charAt(i), 16)) >= 0) {
+				value = (value << 4) | h;
+				digits++;
+				i++;
+				if (digits > 4) {
+					break;
+				}
+			}
+			if (i < len && s.charAt(i) == '.') {
+				// 嵌入的 IPv4 地址，占两个分组
+				long ipv4 = parseIPv4(s, start, len);
+				if (ipv4 < 0 || n > 6) {
+					return false;
+				}
+				groups[n++] = (int) (ipv4 >>> 16);
+				groups[n++] = (int) (ipv4 & 0xFFFF);
+				i = len;
+				break;
+			}
+			if (digits == 0 || digits > 4) {
+				return false;
+			}
+			groups[n++] = value;
+			if (i == len) {
+				break;
+			}
+			if (s.charAt(i) != ':') {
+				return false;
+			}
+			i++;
+			if (i < len && s.charAt(i) == ':') {
+				if (doubleColon >= 0) {
+					return false;
+				}
+				doubleColon = n;
+				i++;
+			} else if (i == len) {
+				return false;
+			}
+		}
+		if (doubleColon < 0) {
+			return n == 8;
+		}
+		if (n > 7) {
+			return false;
+		}
+		int shift = 8 - n;
+		for (int j = n - 1; j >= doubleColon; j--) {
+			groups[j + shift] = groups[j];
+		}
+		for (int j = doubleColon; j < doubleColon + shift; j++) {
+			groups[j] = 0;
+		}
+		return true;
+	}
+
+	private static final class Node<V> {
+
+		Node<V> zero;
+		Node<V> one;
+		V value;
+		boolean terminal;
+
+	}
+
+}
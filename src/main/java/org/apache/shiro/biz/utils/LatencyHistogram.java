@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的纳秒级延迟直方图：按 2 的幂划分 64 个桶，第 i 个桶统计 [2<sup>i-1</sup>, 2<sup>i</sup>) 纳秒的样本，
+ * 记录一次样本只有一次桶计数的原子自增和两次 {@link LongAdder} 累加，不分配对象。
+ * <p>百分位数返回所在桶的上界，误差不超过一倍，用于容量评估和定位慢操作已经足够。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+	/**
+	 * Records a sample.
+	 * @param nanos the elapsed time in nanoseconds, negative values are ignored
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			return;
+		}
+		buckets.incrementAndGet(bucketOf(nanos));
+		count.increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	private static int bucketOf(long nanos) {
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalNanos() {
+		return total.sum();
+	}
+
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	public double getMeanNanos() {
+		long n = count.sum();
+		return n == 0 ? 0d : (double) total.sum() / n;
+	}
+
+	/**
+	 * Returns the upper bound of the bucket containing the given percentile.
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the approximate latency in nanoseconds
+	 */
+	public long getPercentileNanos(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			n += snapshot[i];
+		}
+		if (n == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(n * Math.max(0d, Math.min(100d, percentile)) / 100d);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank && snapshot[i] > 0) {
+				return Math.min(i == 0 ? 0 : (1L << i) - 1, getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	/**
+	 * Returns a copy of the bucket counts, index <code>i</code> covers <code>[2^(i-1), 2^i)</code> nanoseconds.
+	 * @return the bucket counts
+	 */
+	public long[] getBuckets() {
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+		}
+		return snapshot;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		total.reset();
+		max.reset();
+	}
+
+}
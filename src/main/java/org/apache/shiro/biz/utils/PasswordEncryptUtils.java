@@ -32,14 +32,33 @@ public class PasswordEncryptUtils {
     private static int hashIterations = 2;
 
     public static void encryptPassword(ShiroPrincipal user) {
+        encryptPassword(user, algorithmName, hashIterations);
+    }
+
+    /**
+     * 使用指定的算法和迭代次数加密密码，并生成新的盐；加密失败时用户的盐和密码保持不变。
+     * 原有的盐被替换，因此 password 必须是明文，不能是已存储的密文
+     * @param user 用户信息，password 为待加密的密码明文
+     * @param algorithmName 哈希算法，如 SHA-256
+     * @param hashIterations 迭代次数
+     */
+    public static void encryptPassword(ShiroPrincipal user, String algorithmName, int hashIterations) {
 
+        String oldSalt = user.getSalt();
         user.setSalt(randomNumberGenerator.nextBytes().toHex());
 
-        String newPassword = new SimpleHash(
-                algorithmName,
-                user.getPassword(),
-                ByteSource.Util.bytes(user.getCredentialsSalt()),
-                hashIterations).toHex();
+        String newPassword;
+        try {
+            newPassword = new SimpleHash(
+                    algorithmName,
+                    user.getPassword(),
+                    ByteSource.Util.bytes(user.getCredentialsSalt()),
+                    hashIterations).toHex();
+        } catch (RuntimeException e) {
+            // 盐参与 getCredentialsSalt() 的计算，失败时还原
+            user.setSalt(oldSalt);
+            throw e;
+        }
 
         user.setPassword(newPassword);
     }
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.apache.shiro.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 批量密码（重新）加密工具：从迭代器流式读取用户，按批次提交到 Fork/Join 线程池并行加密，
+ * 在途批次数量受 {@link #getQueueCapacity()} 限制，加密完成的批次交给 sink 持久化。
+ * <p>
+ * 每个用户通过 {@link PasswordEncryptUtils#encryptPassword(ShiroPrincipal, String, int)} 加密，
+ * 其 password 字段必须是密码明文（例如在用户登录成功时收集，或由迁移流程提供）。
+ * 加密会生成新的盐并覆盖原有的盐，不能把已存储的旧密文当作输入：旧密文所用的盐随之丢失，
+ * 本模块也没有能校验"密文的密文"的 CredentialsMatcher，这样处理后的账号将无法再登录。
+ * 批次完成的顺序与读取顺序无关，sink 的调用是串行的；加密失败的用户不会交给 sink。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class PasswordRehasher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PasswordRehasher.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 500;
+	/**
+	 * Principals per task below which a batch is hashed without further splitting.
+	 */
+	private static final int SPLIT_THRESHOLD = 16;
+
+	private String algorithmName = "SHA-256";
+	private int hashIterations = 1024;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int queueCapacity = 2 * Runtime.getRuntime().availableProcessors();
+
+	private final LongAdder read = new LongAdder();
+	private final LongAdder processed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private volatile long startNanos;
+	private volatile long endNanos;
+
+	/**
+	 * Re-hashes every principal of the source and emits them in batches to the sink; blocks until all batches are emitted.
+	 * @param source the principals to hash, read from the calling thread only
+	 * @param sink receives successfully hashed principals in batches, never called concurrently
+	 * @throws IllegalStateException if the sink fails or the caller is interrupted; remaining principals are not read
+	 */
+	public void rehash(Iterator<? extends ShiroPrincipal> source, Consumer<List<ShiroPrincipal>> sink) {
+		Assert.notNull(source, "source must not be null");
+		Assert.notNull(sink, "sink must not be null");
+		reset();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		Semaphore inFlight = new Semaphore(queueCapacity);
+		AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+		Object sinkLock = new Object();
+		try {
+			while (source.hasNext() && failure.get() == null) {
+				List<ShiroPrincipal> batch = new ArrayList<ShiroPrincipal>(batchSize);
+				while (batch.size() < batchSize && source.hasNext()) {
+					batch.add(source.next());
+				}
+				read.add(batch.size());
+				// 在途批次已满时阻塞读取，避免把整个数据源读入内存
+				inFlight.acquire();
+				pool.execute(() -> {
+					try {
+						boolean[] hashed = new boolean[batch.size()];
+						new HashTask(batch, hashed, 0, batch.size()).invoke();
+						List<ShiroPrincipal> succeeded = succeeded(batch, hashed);
+						if (succeeded.isEmpty()) {
+							return;
+						}
+						synchronized (sinkLock) {
+							if (failure.get() == null) {
+								sink.accept(succeeded);
+								batches.increment();
+							}
+						}
+					} catch (RuntimeException e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+			inFlight.acquire(queueCapacity);
+			inFlight.release(queueCapacity);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure.compareAndSet(null, new IllegalStateException("Interrupted while rehashing passwords.", e));
+		} finally {
+			pool.shutdown();
+			try {
+				pool.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			endNanos = System.nanoTime();
+		}
+		if (failure.get() != null) {
+			throw new IllegalStateException("Rehash aborted after " + processed.sum() + " principals.", failure.get());
+		}
+		LOG.info("Rehashed {} principals in {} batches ({} failed), {} per second.", processed.sum(), batches.sum(),
+				failed.sum(), String.format("%.1f", getThroughput()));
+	}
+
+	protected void reset() {
+		read.reset();
+		processed.reset();
+		failed.reset();
+		batches.reset();
+		startNanos = System.nanoTime();
+		endNanos = 0;
+	}
+
+	private static List<ShiroPrincipal> succeeded(List<ShiroPrincipal> batch, boolean[] hashed) {
+		List<ShiroPrincipal> succeeded = new ArrayList<ShiroPrincipal>(batch.size());
+		for (int i = 0; i < hashed.length; i++) {
+			if (hashed[i]) {
+				succeeded.add(batch.get(i));
+			}
+		}
+		return succeeded;
+	}
+
+	/**
+	 * Hashes one principal; the default uses {@link PasswordEncryptUtils#encryptPassword(ShiroPrincipal, String, int)}.
+	 * @param principal the principal to hash in place
+	 */
+	protected void hash(ShiroPrincipal principal) {
+		PasswordEncryptUtils.encryptPassword(principal, algorithmName, hashIterations);
+	}
+
+	private final class HashTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<ShiroPrincipal> batch;
+		/**
+		 * Per principal success flags, each index is written by exactly one task.
+		 */
+		private final boolean[] hashed;
+		private final int from;
+		private final int to;
+
+		HashTask(List<ShiroPrincipal> batch, boolean[] hashed, int from, int to) {
+			this.batch = batch;
+			this.hashed = hashed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SPLIT_THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					ShiroPrincipal principal = batch.get(i);
+					try {
+						hash(principal);
+						hashed[i] = true;
+						processed.increment();
+					} catch (RuntimeException e) {
+						failed.increment();
+						LOG.warn("Unable to hash password of [{}].", principal.getUsername(), e);
+					}
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new HashTask(batch, hashed, from, mid), new HashTask(batch, hashed, mid, to));
+		}
+
+	}
+
+	/**
+	 * @return the principals read from the source
+	 */
+	public long getReadCount() {
+		return read.sum();
+	}
+
+	/**
+	 * @return the principals hashed successfully
+	 */
+	public long getProcessedCount() {
+		return processed.sum();
+	}
+
+	/**
+	 * @return the principals whose hashing failed, they are left unchanged and not emitted
+	 */
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	/**
+	 * @return the batches emitted to the sink
+	 */
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	/**
+	 * @return the principals hashed per second since the current or last run started
+	 */
+	public double getThroughput() {
+		long start = startNanos;
+		if (start == 0) {
+			return 0d;
+		}
+		long end = endNanos != 0 ? endNanos : System.nanoTime();
+		double seconds = (end - start) / 1e9d;
+		return seconds > 0 ? processed.sum() / seconds : 0d;
+	}
+
+	public String getAlgorithmName() {
+		return algorithmName;
+	}
+
+	public void setAlgorithmName(String algorithmName) {
+		Assert.hasText(algorithmName, "algorithmName must not be empty");
+		this.algorithmName = algorithmName;
+	}
+
+	public int getHashIterations() {
+		return hashIterations;
+	}
+
+	public void setHashIterations(int hashIterations) {
+		Assert.isTrue(hashIterations > 0, "hashIterations must be positive");
+		this.hashIterations = hashIterations;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		Assert.isTrue(parallelism > 0, "parallelism must be positive");
+		this.parallelism = parallelism;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "batchSize must be positive");
+		this.batchSize = batchSize;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		Assert.isTrue(queueCapacity > 0, "queueCapacity must be positive");
+		this.queueCapacity = queueCapacity;
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.ServletRequest;
+
+import org.apache.shiro.util.StringUtils;
+
+/**
+ * 客户端IP解析：默认只使用连接的对端地址 {@link ServletRequest#getRemoteAddr()}，不信任客户端可伪造的转发请求头；
+ * 仅当对端地址属于 {@link #getTrustedProxies()} 时才读取 {@link #getForwardedHeader()}，
+ * 并从右向左跳过受信任的代理，第一个不受信任的地址即为客户端IP。
+ * 与 {@link WebUtils#getRemoteAddr(ServletRequest)} 不同，该解析结果可用于限流、失败计数等安全相关的场景。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class RemoteAddrResolver {
+
+	public static final String DEFAULT_FORWARDED_HEADER = "X-Forwarded-For";
+
+	private volatile Set<String> trustedProxies = Collections.emptySet();
+	private String forwardedHeader = DEFAULT_FORWARDED_HEADER;
+
+	/**
+	 * @param request the current request
+	 * @return the client IP
+	 */
+	public String resolve(ServletRequest request) {
+		String remoteAddr = request.getRemoteAddr();
+		Set<String> proxies = this.trustedProxies;
+		if (proxies.isEmpty() || !proxies.contains(remoteAddr)) {
+			return remoteAddr;
+		}
+		String forwarded = WebUtils.toHttp(request).getHeader(getForwardedHeader());
+		if (!StringUtils.hasText(forwarded)) {
+			return remoteAddr;
+		}
+		String[] hops = forwarded.split(",");
+		for (int i = hops.length - 1; i >= 0; i--) {
+			String hop = hops[i].trim();
+			if (hop.length() > 0 && !proxies.contains(hop)) {
+				return hop;
+			}
+		}
+		return remoteAddr;
+	}
+
+	public Set<String> getTrustedProxies() {
+		return trustedProxies;
+	}
+
+	/**
+	 * Sets the addresses of the reverse proxies allowed to report the client IP, matched exactly.
+	 * @param trustedProxies the proxy addresses
+	 */
+	public void setTrustedProxies(Collection<String> trustedProxies) {
+		this.trustedProxies = trustedProxies == null ? Collections.<String>emptySet()
+				: Collections.unmodifiableSet(new HashSet<String>(trustedProxies));
+	}
+
+	public String getForwardedHeader() {
+		return forwardedHeader;
+	}
+
+	public void setForwardedHeader(String forwardedHeader) {
+		this.forwardedHeader = forwardedHeader;
+	}
+
+}
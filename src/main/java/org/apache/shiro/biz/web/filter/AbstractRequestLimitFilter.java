@@ -0,0 +1,234 @@
+package org.apache.shiro.biz.web.filter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.commons.collections.MapUtils;
+import org.apache.shiro.biz.authc.AuthcResponse;
+import org.apache.shiro.biz.ratelimit.ClientRateLimiters;
+import org.apache.shiro.biz.ratelimit.GcraRateLimiter;
+import org.apache.shiro.biz.ratelimit.RateLimitKeyResolver;
+import org.apache.shiro.biz.utils.RemoteAddrResolver;
+import org.apache.shiro.biz.utils.WebUtils;
+import org.apache.shiro.biz.web.servlet.http.HttpStatus;
+import org.apache.shiro.util.AntPathMatcher;
+import org.apache.shiro.web.filter.AccessControlFilter;
+import org.springframework.http.MediaType;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 按规则限流的访问请求过滤器基类：子类负责查找与请求匹配的规则，
+ * 规则下每个客户端（默认按IP，可按身份或请求头区分）使用独立的 GCRA 令牌桶，空闲的令牌桶按 {@link #getIdleTimeout()} 清理。
+ * <p>客户端IP默认与旧版本一致由 {@link WebUtils#getRemoteAddr(ServletRequest)} 获取，该方式信任 X-Forwarded-For 等请求头，
+ * 客户端可伪造请求头绕过按IP的规则与限速；设置 {@link #setRemoteAddrResolver(RemoteAddrResolver)} 后改为由其解析，
+ * 只信任配置的代理转发的请求头。
+ * @author 		： <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public abstract class AbstractRequestLimitFilter extends AccessControlFilter {
+	
+	/** 路径规则匹配工具 */
+	protected AntPathMatcher pathMatcher = new AntPathMatcher();
+	/** 不同规则的限速  */
+	protected Map<String /* Pattern */, String /* Permits Per Second */> limiterDefinitionMap = new LinkedHashMap<String, String>();
+	/** 每个规则下按客户端区分的令牌桶 */
+	protected volatile Map<String /* Pattern */, ClientRateLimiters> limiters;
+	/** 客户端IP解析，为 null 时使用 {@link WebUtils#getRemoteAddr(ServletRequest)} */
+	protected RemoteAddrResolver remoteAddrResolver;
+	/** 客户端标识解析，默认按 {@link #getRemoteAddr(ServletRequest)} 获取的IP */
+	protected RateLimitKeyResolver keyResolver = request -> getRemoteAddr(request);
+	/** 是否等待请求完成 */
+	protected boolean requestWaitCompleted = false;
+	/** the maximum number of client buckets per rule. */
+	protected long maximumSize = ClientRateLimiters.DEFAULT_MAX_CLIENTS;
+	/** 空闲令牌桶的清理时间（毫秒） */
+	protected long idleTimeout = ClientRateLimiters.DEFAULT_IDLE_TIMEOUT;
+	/** 允许的突发请求量，以秒为单位的速率倍数 */
+	protected double burstSeconds = 1d;
+	
+	@Override
+	protected void onFilterConfigSet() throws Exception {
+		super.onFilterConfigSet();
+		resetLimiters();
+	}
+	
+	@Override
+	public void destroy() {
+		resetLimiters();
+		super.destroy();
+	}
+	
+	/**
+	 * 获取客户端IP
+	 * @param request 当前请求
+	 * @return 由 {@link #getRemoteAddrResolver()} 解析的IP，未设置时为 {@link WebUtils#getRemoteAddr(ServletRequest)}
+	 */
+	protected String getRemoteAddr(ServletRequest request) {
+		RemoteAddrResolver resolver = getRemoteAddrResolver();
+		return resolver != null ? resolver.resolve(request) : WebUtils.getRemoteAddr(request);
+	}
+	
+	@Override
+	protected boolean isAccessAllowed(ServletRequest request, ServletResponse response, Object mappedValue)
+			throws Exception {
+		return true;
+	}
+	
+	@Override
+	protected boolean onAccessDenied(ServletRequest request, ServletResponse response) throws Exception {
+		return true;
+	}
+	
+	@Override
+	public void doFilterInternal(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		
+		ClientRateLimiters clientLimiters = MapUtils.isNotEmpty(getLimiterDefinitionMap()) ? getMatchedLimiters(request) : null;
+		if (clientLimiters == null) {
+			// 未配置限速规则的请求直接放行
+			super.doFilterInternal(request, response, chain);
+			return;
+		}
+		GcraRateLimiter ret = clientLimiters.get(getKeyResolver().resolve(request));
+		if(isRequestWaitCompleted()) { 
+			ret.acquire(); // 获取一个许可，该方法会被阻塞直到获取到请求
+			super.doFilterInternal(request, response, chain);
+		} else if(ret.tryAcquire()){
+			super.doFilterInternal(request, response, chain);
+		} else {
+			onLimitExceeded(request, response, clientLimiters);
+		}
+	}
+
+	/**
+	 * 查找与请求匹配的规则的令牌桶
+	 * @param request 当前请求
+	 * @return 匹配规则的客户端令牌桶，未匹配时返回 null
+	 */
+	protected abstract ClientRateLimiters getMatchedLimiters(ServletRequest request);
+	
+	/**
+	 * 请求超出限速时的响应：Ajax 请求返回 JSON，否则返回 403
+	 * @param request 当前请求
+	 * @param response 当前响应
+	 * @param clientLimiters 匹配规则的客户端令牌桶
+	 * @throws IOException 写入响应失败
+	 */
+	protected void onLimitExceeded(ServletRequest request, ServletResponse response, ClientRateLimiters clientLimiters) throws IOException {
+		String mString = String.format("Request Forbidden! Requests per second exceeds %s limit.", clientLimiters.getPermitsPerSecond());
+		if (WebUtils.isAjaxResponse(request)) {
+    		WebUtils.toHttp(response).setStatus(HttpStatus.SC_FORBIDDEN);
+    		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+    		JSONObject.writeJSONString(response.getWriter(), AuthcResponse.error(mString));
+		} else {
+			WebUtils.toHttp(response).sendError(HttpStatus.SC_FORBIDDEN, mString);
+		}
+	}
+	
+	/**
+	 * 每个规则下的客户端令牌桶，首次使用时按规则创建
+	 * @return 规则 -&gt; 客户端令牌桶
+	 */
+	protected Map<String, ClientRateLimiters> getLimiters() {
+		Map<String, ClientRateLimiters> current = this.limiters;
+		if (current == null) {
+			current = new HashMap<String, ClientRateLimiters>();
+			for (Map.Entry<String, String> entry : getLimiterDefinitionMap().entrySet()) {
+				double permitsPerSecond = Double.parseDouble(entry.getValue().trim());
+				int burst = (int) Math.max(1, Math.ceil(permitsPerSecond * getBurstSeconds()));
+				current.put(entry.getKey(), new ClientRateLimiters(permitsPerSecond, burst, getIdleTimeout(), (int) Math.min(Integer.MAX_VALUE, getMaximumSize())));
+			}
+			this.limiters = current;
+		}
+		return current;
+	}
+
+	/**
+	 * 丢弃现有的令牌桶并停止其后台清理，下次使用时按当前配置重建
+	 */
+	protected void resetLimiters() {
+		Map<String, ClientRateLimiters> current = this.limiters;
+		this.limiters = null;
+		if (current != null) {
+			for (ClientRateLimiters clientLimiters : current.values()) {
+				clientLimiters.close();
+			}
+		}
+	}
+
+	public Map<String, String> getLimiterDefinitionMap() {
+		return limiterDefinitionMap;
+	}
+
+	public void setLimiterDefinitionMap(Map<String, String> limiterDefinitionMap) {
+		this.limiterDefinitionMap = limiterDefinitionMap;
+		resetLimiters();
+	}
+
+	public AntPathMatcher getPathMatcher() {
+		return pathMatcher;
+	}
+
+	public void setPathMatcher(AntPathMatcher pathMatcher) {
+		this.pathMatcher = pathMatcher;
+	}
+
+	public boolean isRequestWaitCompleted() {
+		return requestWaitCompleted;
+	}
+
+	public void setRequestWaitCompleted(boolean requestWaitCompleted) {
+		this.requestWaitCompleted = requestWaitCompleted;
+	}
+
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+
+	public void setMaximumSize(long maximumSize) {
+		this.maximumSize = maximumSize;
+		resetLimiters();
+	}
+
+	public RemoteAddrResolver getRemoteAddrResolver() {
+		return remoteAddrResolver;
+	}
+
+	public void setRemoteAddrResolver(RemoteAddrResolver remoteAddrResolver) {
+		this.remoteAddrResolver = remoteAddrResolver;
+	}
+
+	public RateLimitKeyResolver getKeyResolver() {
+		return keyResolver;
+	}
+
+	public void setKeyResolver(RateLimitKeyResolver keyResolver) {
+		this.keyResolver = keyResolver;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+		resetLimiters();
+	}
+
+	public double getBurstSeconds() {
+		return burstSeconds;
+	}
+
+	public void setBurstSeconds(double burstSeconds) {
+		this.burstSeconds = burstSeconds;
+		resetLimiters();
+	}
+	
+}
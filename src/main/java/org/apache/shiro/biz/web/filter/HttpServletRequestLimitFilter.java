@@ -8,8 +8,12 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 
 import org.apache.shiro.biz.authc.AuthcResponse;
+import org.apache.shiro.biz.ratelimit.CachePermitStore;
+import org.apache.shiro.biz.ratelimit.DistributedRateLimiter;
+import org.apache.shiro.biz.ratelimit.PermitStore;
 import org.apache.shiro.biz.utils.WebUtils;
 import org.apache.shiro.biz.web.servlet.http.HttpStatus;
+import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.web.filter.AccessControlFilter;
 import org.springframework.http.MediaType;
 
@@ -18,6 +22,8 @@ import com.google.common.util.concurrent.RateLimiter;
 
 /**
  * 基于Guava提供的限流工具类RateLimiter实现的访问请求限流过滤器
+ * <p>配置 {@link #setPermitStore(PermitStore)} 或 {@link #setCacheManager(CacheManager)} 后切换为集群模式，
+ * {@link #getPermitsPerSecond()} 为整个集群的限额，各节点通过 {@link DistributedRateLimiter} 批量租用许可。
  * @author 		： <a href="https://github.com/hiwepy">hiwepy</a>
  */
 public class HttpServletRequestLimitFilter extends AccessControlFilter {
@@ -28,11 +34,32 @@ public class HttpServletRequestLimitFilter extends AccessControlFilter {
 	protected boolean requestWaitCompleted = false;
 	/** rate of the returned {@code RateLimiter}, measured in how many permits become available per second. */
 	protected double permitsPerSecond = 500;
+	/** 集群限流器，集群模式下使用 */
+	protected DistributedRateLimiter distributedRateLimiter;
+	/** 集群共享的许可存储 */
+	protected PermitStore permitStore;
+	/** 未指定许可存储时，用于创建 {@link CachePermitStore} 的缓存管理器 */
+	protected CacheManager cacheManager;
+	/** 许可计数的缓存名称，同时作为集群限流的 key */
+	protected String permitCacheName = DEFAULT_PERMIT_CACHE_NAME;
+	
+	public static final String DEFAULT_PERMIT_CACHE_NAME = "shiro-requestLimitPermits";
 	
 	@Override
 	protected void onFilterConfigSet() throws Exception {
 		super.onFilterConfigSet();
-		if(this.rateLimiter != null) {
+		initLimiter();
+	}
+	
+	protected synchronized void initLimiter() {
+		if (this.permitStore == null && this.cacheManager != null) {
+			this.permitStore = new CachePermitStore(cacheManager.<String, String>getCache(getPermitCacheName()));
+		}
+		if (this.permitStore != null) {
+			if (this.distributedRateLimiter == null) {
+				this.distributedRateLimiter = new DistributedRateLimiter(permitStore, getPermitCacheName(), permitsPerSecond);
+			}
+		} else if(this.rateLimiter == null) {
 			this.rateLimiter = RateLimiter.create(permitsPerSecond);
 		}
 	}
@@ -52,10 +79,17 @@ public class HttpServletRequestLimitFilter extends AccessControlFilter {
 	public void doFilterInternal(ServletRequest request, ServletResponse response, FilterChain chain)
 			throws ServletException, IOException {
 		
+		if (this.rateLimiter == null && this.distributedRateLimiter == null) {
+			initLimiter();
+		}
 		if(isRequestWaitCompleted()) { 
-			this.rateLimiter.acquire();
+			if (this.distributedRateLimiter != null) {
+				this.distributedRateLimiter.acquire();
+			} else {
+				this.rateLimiter.acquire();
+			}
 			super.doFilterInternal(request, response, chain);
-		} else if(this.rateLimiter.tryAcquire()){
+		} else if(this.distributedRateLimiter != null ? this.distributedRateLimiter.tryAcquire() : this.rateLimiter.tryAcquire()){
 			super.doFilterInternal(request, response, chain);
 		} else {
 			String mString = String.format("Request Forbidden! Requests per second exceeds %s limit.", permitsPerSecond);
@@ -80,6 +114,38 @@ public class HttpServletRequestLimitFilter extends AccessControlFilter {
 		this.rateLimiter = rateLimiter;
 	}
 
+	public DistributedRateLimiter getDistributedRateLimiter() {
+		return distributedRateLimiter;
+	}
+
+	public void setDistributedRateLimiter(DistributedRateLimiter distributedRateLimiter) {
+		this.distributedRateLimiter = distributedRateLimiter;
+	}
+
+	public PermitStore getPermitStore() {
+		return permitStore;
+	}
+
+	public void setPermitStore(PermitStore permitStore) {
+		this.permitStore = permitStore;
+	}
+
+	public CacheManager getCacheManager() {
+		return cacheManager;
+	}
+
+	public void setCacheManager(CacheManager cacheManager) {
+		this.cacheManager = cacheManager;
+	}
+
+	public String getPermitCacheName() {
+		return permitCacheName;
+	}
+
+	public void setPermitCacheName(String permitCacheName) {
+		this.permitCacheName = permitCacheName;
+	}
+
 	public boolean isRequestWaitCompleted() {
 		return requestWaitCompleted;
 	}
@@ -1,147 +1,152 @@
 package org.apache.shiro.biz.web.filter;
 
-import java.io.IOException;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
-import javax.servlet.FilterChain;
-import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
-import javax.servlet.ServletResponse;
 
-import org.apache.commons.collections.MapUtils;
-import org.apache.shiro.biz.authc.AuthcResponse;
-import org.apache.shiro.biz.utils.WebUtils;
-import org.apache.shiro.biz.web.servlet.http.HttpStatus;
-import org.apache.shiro.util.AntPathMatcher;
-import org.apache.shiro.web.filter.AccessControlFilter;
-import org.springframework.http.MediaType;
-
-import com.alibaba.fastjson.JSONObject;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.RateLimiter;
+import org.apache.shiro.biz.ratelimit.ClientRateLimiters;
+import org.apache.shiro.biz.utils.IpPrefixTrie;
 
 /**
- * 基于Guava提供的限流工具类RateLimiter实现的访问请求限流过滤器
+ * 基于IP规则的访问请求限流过滤器，规则下每个客户端（默认按IP，可按身份或请求头区分）使用独立的 GCRA 令牌桶，
+ * 空闲的令牌桶按 {@link #getIdleTimeout()} 清理。
+ * <p>IP 规则支持单个地址、CIDR（如 10.0.0.0/8、2001:db8::/32）以及按段通配（如 192.168.*、*），
+ * 这些规则编译为 {@link IpPrefixTrie}，其余规则按 Ant 风格匹配。
+ * <p>多条规则包含同一IP时，默认按定义顺序取第一条（与 Ant 规则逐条匹配时的优先级一致）；
+ * 开启 {@link #setLongestPrefixMatch(boolean)} 后改为前缀树中的最长前缀优先，Ant 风格规则仅在前缀树未命中时按顺序匹配。
  * @author 		： <a href="https://github.com/hiwepy">hiwepy</a>
  */
-public class HttpServletRequestLimitWithIPFilter extends AccessControlFilter {
+public class HttpServletRequestLimitWithIPFilter extends AbstractRequestLimitFilter {
+	
+	/** 编译后的IP规则 */
+	protected volatile CompiledRules compiledRules = CompiledRules.EMPTY;
+	
+	/** 可转换为CIDR的按段通配规则，如 192.168.* 或 10.1.*.* */
+	private static final Pattern OCTET_WILDCARD = Pattern.compile("^(\\d{1,3}\\.){1,3}\\*(\\.\\*)*$");
 	
-	/** 路径规则匹配工具 */
-	protected AntPathMatcher pathMatcher = new AntPathMatcher();
-	/** 不同的请求路径限速  */
-	protected Map<String /* IP Pattern */, String /* Permits Per Second */> limiterDefinitionMap = new LinkedHashMap<String, String>();
-	/** 根据IP分不同的令牌桶, 每天自动清理缓存 */
-	protected LoadingCache<String, RateLimiter> limiterCaches;
-	/** 是否等待请求完成 */
-	protected boolean requestWaitCompleted = false;
-	/** the maximum number of entries the cache may contain. */
-	protected long maximumSize = 1000;
+	/** 多条规则匹配同一IP时是否按最长前缀优先，默认 false：按定义顺序 */
+	private boolean longestPrefixMatch = false;
 	
 	@Override
 	protected void onFilterConfigSet() throws Exception {
 		super.onFilterConfigSet();
-		this.limiterCaches = CacheBuilder.newBuilder()
-				.maximumSize(maximumSize)
-				.expireAfterWrite(1, TimeUnit.DAYS)
-				.build(new CacheLoader<String, RateLimiter>() {
-					@Override
-					public RateLimiter load(String ip) throws Exception {
-						return RateLimiter.create(Double.parseDouble(getLimiterDefinitionMap().get(ip)));
-					}
-				});
+		this.compiledRules = compileRules(getLimiterDefinitionMap());
 	}
 	
 	@Override
-	protected boolean isAccessAllowed(ServletRequest request, ServletResponse response, Object mappedValue)
-			throws Exception {
-		return true;
+	protected ClientRateLimiters getMatchedLimiters(ServletRequest request) {
+		String pattern = getMatchedPattern(getRemoteAddr(request));
+		return pattern == null ? null : getLimiters().get(pattern);
 	}
-	
-	@Override
-	protected boolean onAccessDenied(ServletRequest request, ServletResponse response) throws Exception {
-		return true;
+
+	/**
+	 * 查找与IP匹配的规则：默认取定义顺序中第一条匹配的规则；开启最长前缀匹配时先查前缀树，未命中时按顺序匹配 Ant 风格规则
+	 * @param lookupIP 客户端IP
+	 * @return 匹配的规则，未匹配时返回 null
+	 */
+	protected String getMatchedPattern(String lookupIP) {
+		CompiledRules rules = this.compiledRules;
+		Rule matched = rules.trie.lookup(lookupIP, isLongestPrefixMatch() ? null : Rule.DEFINITION_ORDER);
+		for (Rule antRule : rules.antRules) {
+			if (matched != null && (isLongestPrefixMatch() || matched.order < antRule.order)) {
+				break;
+			}
+			if (getPathMatcher().match(antRule.pattern, lookupIP)) {
+				matched = antRule;
+			}
+		}
+		return matched == null ? null : matched.pattern;
 	}
 	
-	@Override
-	public void doFilterInternal(ServletRequest request, ServletResponse response, FilterChain chain)
-			throws ServletException, IOException {
-		
-		if (MapUtils.isNotEmpty(getLimiterDefinitionMap())) {
-			
-			String lookupIP = WebUtils.getRemoteAddr(request);
-			Iterator<Entry<String, String>> ite = getLimiterDefinitionMap().entrySet().iterator();
-			while(ite.hasNext()) {
-				
-				Entry<String, String> entry = ite.next();
-				if (getPathMatcher().match(entry.getKey(), lookupIP)) {
-					
-					try {
-						
-						RateLimiter ret = limiterCaches.get(entry.getKey());
-						
-						if(isRequestWaitCompleted()) { 
-							ret.acquire(); // 从RateLimiter获取一个许可，该方法会被阻塞直到获取到请求
-							super.doFilterInternal(request, response, chain);
-						} else if(ret.tryAcquire()){
-							super.doFilterInternal(request, response, chain);
-						} else {
-							String mString = String.format("Request Forbidden! Requests per second exceeds %s limit.", entry.getValue());
-					    	if (WebUtils.isAjaxResponse(request)) {
-					    		WebUtils.toHttp(response).setStatus(HttpStatus.SC_FORBIDDEN);
-					    		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
-					    		JSONObject.writeJSONString(response.getWriter(), AuthcResponse.error(mString));
-							} else {
-								WebUtils.toHttp(response).sendError(HttpStatus.SC_FORBIDDEN, mString);
-							}
+	protected CompiledRules compileRules(Map<String, String> definitions) {
+		IpPrefixTrie<Rule> trie = new IpPrefixTrie<Rule>();
+		List<Rule> antRules = new ArrayList<Rule>();
+		if (definitions != null) {
+			int order = 0;
+			for (String pattern : definitions.keySet()) {
+				Rule compiled = new Rule(order++, pattern);
+				String rule = pattern.trim();
+				try {
+					if ("*".equals(rule) || "**".equals(rule)) {
+						trie.put("0.0.0.0/0", compiled);
+						trie.put("::/0", compiled);
+					} else if (OCTET_WILDCARD.matcher(rule).matches()) {
+						String[] parts = rule.split("\\.");
+						StringBuilder cidr = new StringBuilder();
+						int octets = 0;
+						for (int i = 0; i < 4; i++) {
+							boolean fixed = i < parts.length && !"*".equals(parts[i]);
+							cidr.append(i > 0 ? "." : "").append(fixed ? parts[i] : "0");
+							octets += fixed ? 1 : 0;
 						}
-						
-					} catch (ExecutionException e) {
+						trie.put(cidr.append('/').append(octets * 8).toString(), compiled);
+					} else {
+						trie.put(rule, compiled);
 					}
+				} catch (IllegalArgumentException e) {
+					// 无法转换为前缀的规则按 Ant 风格匹配
+					antRules.add(compiled);
 				}
 			}
-			
-		} else {
-			super.doFilterInternal(request, response, chain);
 		}
+		return new CompiledRules(trie, antRules);
 	}
 
-	public Map<String, String> getLimiterDefinitionMap() {
-		return limiterDefinitionMap;
-	}
-
-	public void setLimiterDefinitionMap(Map<String, String> limiterDefinitionMap) {
-		this.limiterDefinitionMap = limiterDefinitionMap;
-	}
-
-	public AntPathMatcher getPathMatcher() {
-		return pathMatcher;
+	public boolean isLongestPrefixMatch() {
+		return longestPrefixMatch;
 	}
 
-	public void setPathMatcher(AntPathMatcher pathMatcher) {
-		this.pathMatcher = pathMatcher;
+	public void setLongestPrefixMatch(boolean longestPrefixMatch) {
+		this.longestPrefixMatch = longestPrefixMatch;
 	}
 
-	public boolean isRequestWaitCompleted() {
-		return requestWaitCompleted;
-	}
-
-	public void setRequestWaitCompleted(boolean requestWaitCompleted) {
-		this.requestWaitCompleted = requestWaitCompleted;
+	@Override
+	public void setLimiterDefinitionMap(Map<String, String> limiterDefinitionMap) {
+		super.setLimiterDefinitionMap(limiterDefinitionMap);
+		this.compiledRules = compileRules(limiterDefinitionMap);
 	}
 
-	public long getMaximumSize() {
-		return maximumSize;
+	/**
+	 * 编译后的IP规则快照
+	 */
+	protected static final class CompiledRules {
+		
+		static final CompiledRules EMPTY = new CompiledRules(new IpPrefixTrie<Rule>(), new ArrayList<Rule>());
+		
+		final IpPrefixTrie<Rule> trie;
+		final List<Rule> antRules;
+		
+		CompiledRules(IpPrefixTrie<Rule> trie, List<Rule> antRules) {
+			this.trie = trie;
+			this.antRules = antRules;
+		}
+		
 	}
-
-	public void setMaximumSize(long maximumSize) {
-		this.maximumSize = maximumSize;
+	
+	/**
+	 * 规则及其定义顺序
+	 */
+	protected static final class Rule {
+		
+		static final Comparator<Rule> DEFINITION_ORDER = new Comparator<Rule>() {
+			@Override
+			public int compare(Rule o1, Rule o2) {
+				return Integer.compare(o1.order, o2.order);
+			}
+		};
+		
+		final int order;
+		final String pattern;
+		
+		Rule(int order, String pattern) {
+			this.order = order;
+			this.pattern = pattern;
+		}
+		
 	}
 	
 }
@@ -1,143 +1,79 @@
 package org.apache.shiro.biz.web.filter;
 
-import java.io.IOException;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
-import javax.servlet.FilterChain;
-import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
-import javax.servlet.ServletResponse;
 
-import org.apache.commons.collections.MapUtils;
-import org.apache.shiro.biz.authc.AuthcResponse;
+import org.apache.shiro.biz.ratelimit.ClientRateLimiters;
+import org.apache.shiro.biz.utils.CompiledPathMatcher;
 import org.apache.shiro.biz.utils.WebUtils;
-import org.apache.shiro.biz.web.servlet.http.HttpStatus;
 import org.apache.shiro.util.AntPathMatcher;
-import org.apache.shiro.web.filter.AccessControlFilter;
-import org.springframework.http.MediaType;
-
-import com.alibaba.fastjson.JSONObject;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.RateLimiter;
 
 /**
- * 基于Guava提供的限流工具类RateLimiter实现的访问请求限流过滤器
+ * 基于请求路径规则的访问请求限流过滤器，规则下每个客户端（默认按IP，可按身份或请求头区分）使用独立的 GCRA 令牌桶，
+ * 空闲的令牌桶按 {@link #getIdleTimeout()} 清理；多个规则匹配时只使用第一个匹配的规则。
  * @author 		： <a href="https://github.com/hiwepy">hiwepy</a>
  */
-public class HttpServletRequestLimitWithPathFilter extends AccessControlFilter {
-	
-	/** 路径规则匹配工具 */
-	protected AntPathMatcher pathMatcher = new AntPathMatcher();
-	/** 不同的请求路径限速  */
-	protected Map<String /* Pattern */, String /* Permits Per Second */> limiterDefinitionMap = new LinkedHashMap<String, String>();
-	/** 根据请求地址按规则分不同的令牌桶, 每天自动清理缓存 */
-	protected LoadingCache<String, RateLimiter> limiterCaches;
-	/** 是否等待请求完成 */
-	protected boolean requestWaitCompleted = false;
-	/** the maximum number of entries the cache may contain. */
-	protected long maximumSize = 1000;
+public class HttpServletRequestLimitWithPathFilter extends AbstractRequestLimitFilter {
 	
+	/** 编译后的路径规则，规则或匹配工具变更时重建 */
+	protected volatile CompiledPathMatcher compiledPatterns;
+
 	@Override
 	protected void onFilterConfigSet() throws Exception {
 		super.onFilterConfigSet();
-		this.limiterCaches = CacheBuilder.newBuilder()
-				.maximumSize(maximumSize)
-				.expireAfterWrite(1, TimeUnit.DAYS)
-				.build(new CacheLoader<String, RateLimiter>() {
-					@Override
-					public RateLimiter load(String pattern) throws Exception {
-						return RateLimiter.create(Double.parseDouble(getLimiterDefinitionMap().get(pattern)));
-					}
-				});
+		this.compiledPatterns = null;
 	}
 	
 	@Override
-	protected boolean isAccessAllowed(ServletRequest request, ServletResponse response, Object mappedValue)
-			throws Exception {
-		return true;
+	protected ClientRateLimiters getMatchedLimiters(ServletRequest request) {
+		return getMatchedLimiters(WebUtils.getPathWithinApplication(WebUtils.toHttp(request)));
 	}
-	
-	@Override
-	protected boolean onAccessDenied(ServletRequest request, ServletResponse response) throws Exception {
-		return true;
-	}
-	
-	@Override
-	public void doFilterInternal(ServletRequest request, ServletResponse response, FilterChain chain)
-			throws ServletException, IOException {
-		
-		if (MapUtils.isNotEmpty(getLimiterDefinitionMap())) {
-			
-			String requestURI = WebUtils.getPathWithinApplication(WebUtils.toHttp(request));
-			Iterator<Entry<String, String>> ite = getLimiterDefinitionMap().entrySet().iterator();
-			
-			while(ite.hasNext()) {
-				
-				Entry<String, String> entry = ite.next();
-				if (getPathMatcher().match(entry.getKey(), requestURI)) {
-					try {
-						RateLimiter ret = limiterCaches.get(entry.getKey());
-						if(isRequestWaitCompleted()) { 
-							ret.acquire();
-							super.doFilterInternal(request, response, chain);
-						} else if(ret.tryAcquire()){
-							super.doFilterInternal(request, response, chain);
-						} else {
-							String mString = String.format("Request Forbidden! Requests per second exceeds %s limit.", entry.getValue());
-							if (WebUtils.isAjaxResponse(request)) {
-					    		WebUtils.toHttp(response).setStatus(HttpStatus.SC_FORBIDDEN);
-					    		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
-					    		JSONObject.writeJSONString(response.getWriter(), AuthcResponse.error(mString));
-							} else {
-								WebUtils.toHttp(response).sendError(HttpStatus.SC_FORBIDDEN, mString);
-							}
-						}
-					} catch (ExecutionException e) {
-					}
-				}
+
+	/**
+	 * 查找第一个与请求路径匹配的规则的令牌桶
+	 * @param requestURI 请求路径
+	 * @return 匹配规则的客户端令牌桶，未匹配时返回 null
+	 */
+	protected ClientRateLimiters getMatchedLimiters(String requestURI) {
+		CompiledPathMatcher matcher = getCompiledPatterns();
+		if (matcher != null) {
+			String pattern = matcher.matchFirst(requestURI);
+			return pattern == null ? null : getLimiters().get(pattern);
+		}
+		for (Entry<String, String> entry : getLimiterDefinitionMap().entrySet()) {
+			if (getPathMatcher().match(entry.getKey(), requestURI)) {
+				return getLimiters().get(entry.getKey());
 			}
-		} else {
-			super.doFilterInternal(request, response, chain);
 		}
+		return null;
 	}
-
-	public Map<String, String> getLimiterDefinitionMap() {
-		return limiterDefinitionMap;
+	
+	/**
+	 * 将规则编译为 {@link CompiledPathMatcher}，仅在使用默认 {@link AntPathMatcher} 且规则不含 <code>{var}</code> 时可用
+	 * @return 编译后的路径规则，不可编译时返回 null
+	 */
+	protected CompiledPathMatcher getCompiledPatterns() {
+		CompiledPathMatcher current = this.compiledPatterns;
+		if (current == null && getPathMatcher().getClass() == AntPathMatcher.class
+				&& CompiledPathMatcher.isCompilable(getLimiterDefinitionMap().keySet())) {
+			current = CompiledPathMatcher.compile(getLimiterDefinitionMap().keySet());
+			this.compiledPatterns = current;
+		}
+		return current;
 	}
-
+	
+	@Override
 	public void setLimiterDefinitionMap(Map<String, String> limiterDefinitionMap) {
-		this.limiterDefinitionMap = limiterDefinitionMap;
-	}
-
-	public AntPathMatcher getPathMatcher() {
-		return pathMatcher;
+		super.setLimiterDefinitionMap(limiterDefinitionMap);
+		this.compiledPatterns = null;
 	}
 
+	@Override
 	public void setPathMatcher(AntPathMatcher pathMatcher) {
-		this.pathMatcher = pathMatcher;
-	}
-
-	public boolean isRequestWaitCompleted() {
-		return requestWaitCompleted;
-	}
-
-	public void setRequestWaitCompleted(boolean requestWaitCompleted) {
-		this.requestWaitCompleted = requestWaitCompleted;
-	}
-
-	public long getMaximumSize() {
-		return maximumSize;
-	}
-
-	public void setMaximumSize(long maximumSize) {
-		this.maximumSize = maximumSize;
+		super.setPathMatcher(pathMatcher);
+		this.compiledPatterns = null;
 	}
 	
 }
@@ -1,6 +1,9 @@
 package org.apache.shiro.biz.web.filter;
 
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -10,6 +13,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.collections.MapUtils;
 import org.apache.shiro.biz.authc.AuthcResponse;
+import org.apache.shiro.biz.utils.CompiledPathMatcher;
 import org.apache.shiro.biz.utils.WebUtils;
 import org.apache.shiro.biz.web.servlet.http.HttpStatus;
 import org.apache.shiro.web.filter.AccessControlFilter;
@@ -28,6 +32,8 @@ public class HttpServletRequestReferrerFilter extends AccessControlFilter {
 	protected Logger LOG = LoggerFactory.getLogger(getClass());
 	protected PathMatcher matcher = new AntPathMatcher();
 	private final HttpServletReferrerProperties properties;
+	/** 编译后的请求路径规则，规则集合变更时重建 */
+	private volatile CompiledRules compiledRules;
 	
 	public HttpServletRequestReferrerFilter(HttpServletReferrerProperties properties) {
 		this.properties = properties;
@@ -49,7 +55,16 @@ public class HttpServletRequestReferrerFilter extends AccessControlFilter {
 			return false;
 		}
 		
-		if ( MapUtils.isNotEmpty(properties.getAllowedRefererPatterns())) {
+		CompiledRules rules = getCompiledRules();
+		if (rules != null) {
+			for (String pattern : rules.matcher.matchAll(httpRequest.getRequestURI())) {
+				for (String allowedReferer : rules.allowedReferers.get(pattern)) {
+		    		if(matcher.match(allowedReferer, referer)) {
+						return true;
+					}
+				}
+			}
+		} else if ( MapUtils.isNotEmpty(properties.getAllowedRefererPatterns())) {
 			Iterator<Entry<String, String>> ite = properties.getAllowedRefererPatterns().entrySet().iterator();
 			while (ite.hasNext()) {
 				Entry<String, String> entry = ite.next();
@@ -71,6 +86,44 @@ public class HttpServletRequestReferrerFilter extends AccessControlFilter {
 		return false;
 	}
 	
+	/**
+	 * 将请求路径规则编译为 {@link CompiledPathMatcher}，仅在使用 {@link AntPathMatcher} 且规则不含 <code>{var}</code> 时可用
+	 * @return 编译后的规则，不可编译时返回 null
+	 */
+	protected CompiledRules getCompiledRules() {
+		Map<String, String> patterns = properties.getAllowedRefererPatterns();
+		if (MapUtils.isEmpty(patterns) || matcher.getClass() != AntPathMatcher.class) {
+			return null;
+		}
+		CompiledRules current = this.compiledRules;
+		// 按内容比较，原地修改规则同样会触发重建
+		if (current == null || !current.source.equals(patterns)) {
+			if (!CompiledPathMatcher.isCompilable(patterns.keySet())) {
+				return null;
+			}
+			current = new CompiledRules(patterns);
+			this.compiledRules = current;
+		}
+		return current;
+	}
+	
+	protected static final class CompiledRules {
+		
+		/** 编译时规则的副本 */
+		private final Map<String, String> source;
+		private final CompiledPathMatcher matcher;
+		private final Map<String, Set<String>> allowedReferers = new HashMap<String, Set<String>>();
+		
+		CompiledRules(Map<String, String> patterns) {
+			this.source = new LinkedHashMap<String, String>(patterns);
+			this.matcher = CompiledPathMatcher.compile(source.keySet());
+			for (Entry<String, String> entry : source.entrySet()) {
+				allowedReferers.put(entry.getKey(), StringUtils.commaDelimitedListToSet(entry.getValue()));
+			}
+		}
+		
+	}
+	
 	@Override
 	protected boolean onAccessDenied(ServletRequest request, ServletResponse response) throws Exception {
 		String mString = String.format("Request Denied! Request Referer {%s} is Not Allowed.", WebUtils.toHttp(request).getHeader(properties.getRefererHeaderName()));
@@ -1,9 +1,53 @@
 package org.apache.shiro.biz.web.filter;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.shiro.biz.cache.http.SessionCache;
+import org.apache.shiro.biz.utils.CompiledPathMatcher;
+import org.apache.shiro.biz.web.filter.mgt.CustomPathMatchingFilterChainResolver;
+import org.apache.shiro.util.AntPathMatcher;
+import org.apache.shiro.util.CollectionUtils;
+import org.apache.shiro.web.filter.InvalidRequestFilter;
+import org.apache.shiro.web.filter.authc.AnonymousFilter;
+import org.apache.shiro.web.filter.mgt.DefaultFilterChainManager;
+import org.apache.shiro.web.filter.mgt.FilterChainManager;
+import org.apache.shiro.web.filter.mgt.FilterChainResolver;
+import org.apache.shiro.web.filter.mgt.NamedFilterList;
+import org.apache.shiro.web.filter.mgt.PathMatchingFilterChainResolver;
 import org.apache.shiro.web.servlet.AbstractShiroFilter;
+import org.apache.shiro.web.util.WebUtils;
 
+/**
+ * Shiro 入口过滤器；匹配 {@link #setBypassPatterns(Collection)} 或匿名过滤器链的请求（静态资源、健康检查等）
+ * 在创建 Subject 之前直接交给原始过滤器链处理，不绑定 ThreadContext，也不读取 Session。
+ * <p>匿名过滤器链指只包含 {@link AnonymousFilter}（以及 Shiro 默认的全局过滤器 {@link InvalidRequestFilter}）的过滤器链，
+ * 与定义中的写法（<code>anon</code>、别名或多余空白）无关；匿名链随 {@link FilterChainManager} 中当前生效的过滤器链重建，
+ * 过滤器链在运行时重新加载后立即生效。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
 public class HttpServletShiroFilter extends AbstractShiroFilter {
 	
+	/** 直接放行的路径规则 */
+	private volatile PathRules bypassPatterns;
+	/** 是否放行匹配匿名过滤器链的请求 */
+	private volatile boolean bypassAnonymousChains;
+	/** 由当前生效的过滤器链得出的匿名链，过滤器链变化时重建 */
+	private volatile AnonymousChains anonymousChains;
+	
 	/*@Override
 	protected WebSubject createSubject(ServletRequest request, ServletResponse response) {
 		Subject subject = super.createSubject(request, response);
@@ -13,4 +57,229 @@ public class HttpServletShiroFilter extends AbstractShiroFilter {
         return (WebSubject) subject;
 	}*/
 	
+	@Override
+	protected void doFilterInternal(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+			throws ServletException, IOException {
+		if (isBypassed(servletRequest)) {
+			chain.doFilter(servletRequest, servletResponse);
+			return;
+		}
+		super.doFilterInternal(servletRequest, servletResponse, chain);
+	}
+	
+	/**
+	 * 请求是否跳过 Shiro 处理：路径匹配任一放行规则，或请求匹配的过滤器链均为匿名链。
+	 * @param request the incoming request
+	 * @return true if the request is passed to the original chain without a Subject
+	 */
+	protected boolean isBypassed(ServletRequest request) {
+		PathRules patterns = this.bypassPatterns;
+		if (patterns == null && !bypassAnonymousChains) {
+			return false;
+		}
+		if (patterns != null && patterns.matchFirst(WebUtils.getPathWithinApplication(WebUtils.toHttp(request))) >= 0) {
+			return true;
+		}
+		return bypassAnonymousChains && isAnonymousChain(request);
+	}
+	
+	/**
+	 * 请求匹配的过滤器链是否为匿名链：{@link CustomPathMatchingFilterChainResolver} 合并所有匹配的过滤器链，
+	 * 要求匹配的链全部为匿名链；其他 {@link PathMatchingFilterChainResolver} 按其规则（首个匹配，忽略末尾的 /）判断首个匹配的链。
+	 * 匹配期间过滤器链发生变化时不放行，请求按正常流程处理。
+	 * @param request the incoming request
+	 * @return true if every chain the request is matched with is anonymous
+	 */
+	protected boolean isAnonymousChain(ServletRequest request) {
+		FilterChainResolver resolver = getFilterChainResolver();
+		if (!(resolver instanceof PathMatchingFilterChainResolver)) {
+			return false;
+		}
+		FilterChainManager manager = ((PathMatchingFilterChainResolver) resolver).getFilterChainManager();
+		AnonymousChains chains = getAnonymousChains(manager);
+		if (chains.names.isEmpty()) {
+			return false;
+		}
+		boolean anonymous;
+		if (resolver instanceof CustomPathMatchingFilterChainResolver) {
+			List<String> matched = ((CustomPathMatchingFilterChainResolver) resolver).getMatchingChainNames(request);
+			anonymous = !matched.isEmpty() && chains.names.containsAll(matched);
+		} else {
+			int index = chains.rules.matchFirst(WebUtils.getPathWithinApplication(WebUtils.toHttp(request)));
+			anonymous = index >= 0 && chains.rules.bypass[index];
+		}
+		return anonymous && getChainsSource(manager) == chains.source;
+	}
+	
+	/**
+	 * 返回当前生效的过滤器链对应的匿名链；过滤器链映射被替换时（如
+	 * {@link org.apache.shiro.biz.web.filter.mgt.CustomDefaultFilterChainManager} 的每次变更）重建。
+	 */
+	private AnonymousChains getAnonymousChains(FilterChainManager manager) {
+		Object source = getChainsSource(manager);
+		AnonymousChains current = this.anonymousChains;
+		if (current == null || current.source != source) {
+			current = new AnonymousChains(source, manager);
+			this.anonymousChains = current;
+		}
+		return current;
+	}
+	
+	/**
+	 * @return the object replaced whenever the chains of the manager are replaced
+	 */
+	private static Object getChainsSource(FilterChainManager manager) {
+		return manager instanceof DefaultFilterChainManager ? ((DefaultFilterChainManager) manager).getFilterChains() : manager.getChainNames();
+	}
+	
+	/**
+	 * @param chain the configured chain
+	 * @return true if the chain only consists of {@link AnonymousFilter}s, apart from the default global {@link InvalidRequestFilter}
+	 */
+	protected static boolean isAnonymous(NamedFilterList chain) {
+		boolean anonymous = false;
+		for (Filter filter : chain) {
+			if (filter instanceof AnonymousFilter) {
+				anonymous = true;
+			} else if (!(filter instanceof InvalidRequestFilter)) {
+				return false;
+			}
+		}
+		return anonymous;
+	}
+	
+	/**
+	 * 设置直接放行的路径规则，例如 <code>/static/**</code>、<code>/health</code>。
+	 * @param patterns Ant 风格的路径规则
+	 */
+	public void setBypassPatterns(Collection<String> patterns) {
+		if (CollectionUtils.isEmpty(patterns)) {
+			this.bypassPatterns = null;
+			return;
+		}
+		List<String> list = new ArrayList<String>(patterns);
+		boolean[] bypass = new boolean[list.size()];
+		Arrays.fill(bypass, true);
+		this.bypassPatterns = new PathRules(list, bypass);
+	}
+	
+	public boolean isBypassAnonymousChains() {
+		return bypassAnonymousChains;
+	}
+	
+	/**
+	 * 是否放行匹配匿名过滤器链的请求，放行的请求同时跳过全局过滤器（如 invalidRequest）。
+	 * @param bypassAnonymousChains true to pass requests of anonymous chains to the original chain without a Subject
+	 */
+	public void setBypassAnonymousChains(boolean bypassAnonymousChains) {
+		this.bypassAnonymousChains = bypassAnonymousChains;
+	}
+	
+	@Override
+	protected void executeChain(ServletRequest request, ServletResponse response, FilterChain origChain)
+			throws IOException, ServletException {
+		// SessionCache 的写操作延迟到请求结束时统一写回 Session
+		request.setAttribute(SessionCache.WRITE_BEHIND_ATTRIBUTE, Boolean.TRUE);
+		try {
+			super.executeChain(request, response, origChain);
+		} finally {
+			request.removeAttribute(SessionCache.WRITE_BEHIND_ATTRIBUTE);
+			SessionCache.flush(request);
+		}
+	}
+	
+	/**
+	 * 由一组过滤器链得出的匿名链
+	 */
+	private static final class AnonymousChains {
+		
+		private final Object source;
+		private final Set<String> names = new HashSet<String>();
+		private final PathRules rules;
+		
+		AnonymousChains(Object source, FilterChainManager manager) {
+			this.source = source;
+			List<String> list = new ArrayList<String>(manager.getChainNames());
+			boolean[] bypass = new boolean[list.size()];
+			for (int i = 0; i < list.size(); i++) {
+				NamedFilterList chain = manager.getChain(list.get(i));
+				bypass[i] = chain != null && isAnonymous(chain);
+				if (bypass[i]) {
+					names.add(list.get(i));
+				}
+			}
+			this.rules = names.isEmpty() ? null : new PathRules(list, bypass);
+		}
+		
+	}
+	
+	/**
+	 * 有序的路径规则，按 {@link org.apache.shiro.web.filter.mgt.PathMatchingFilterChainResolver} 的方式匹配：
+	 * 规则原样匹配请求路径，或去掉末尾 / 的规则匹配去掉末尾 / 的请求路径。
+	 */
+	private static final class PathRules {
+		
+		private final List<String> patterns;
+		private final boolean[] bypass;
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		private final Map<String, Integer> strippedIndexes = new HashMap<String, Integer>();
+		private final CompiledPathMatcher matcher;
+		private final CompiledPathMatcher strippedMatcher;
+		private final AntPathMatcher pathMatcher = new AntPathMatcher();
+		
+		PathRules(List<String> patterns, boolean[] bypass) {
+			this.patterns = patterns;
+			this.bypass = bypass;
+			List<String> unique = new ArrayList<String>(patterns.size());
+			List<String> stripped = new ArrayList<String>(patterns.size());
+			for (int i = 0; i < patterns.size(); i++) {
+				String pattern = patterns.get(i);
+				if (!indexes.containsKey(pattern)) {
+					indexes.put(pattern, i);
+					unique.add(pattern);
+				}
+				pattern = removeTrailingSlash(pattern);
+				if (!strippedIndexes.containsKey(pattern)) {
+					strippedIndexes.put(pattern, i);
+					stripped.add(pattern);
+				}
+			}
+			boolean compilable = CompiledPathMatcher.isCompilable(patterns);
+			this.matcher = compilable ? CompiledPathMatcher.compile(unique) : null;
+			this.strippedMatcher = compilable ? CompiledPathMatcher.compile(stripped) : null;
+		}
+		
+		/**
+		 * @return the index of the first matching rule, -1 if none
+		 */
+		int matchFirst(String requestURI) {
+			String strippedURI = removeTrailingSlash(requestURI);
+			if (matcher == null) {
+				for (int i = 0; i < patterns.size(); i++) {
+					String pattern = patterns.get(i);
+					if (pathMatcher.matches(pattern, requestURI) || pathMatcher.matches(removeTrailingSlash(pattern), strippedURI)) {
+						return i;
+					}
+				}
+				return -1;
+			}
+			String pattern = matcher.matchFirst(requestURI);
+			int index = pattern != null ? indexes.get(pattern) : -1;
+			String stripped = strippedMatcher.matchFirst(strippedURI);
+			if (stripped != null) {
+				int strippedIndex = strippedIndexes.get(stripped);
+				index = index < 0 ? strippedIndex : Math.min(index, strippedIndex);
+			}
+			return index;
+		}
+		
+		private static String removeTrailingSlash(String path) {
+			if (path != null && !"/".equals(path) && path.endsWith("/")) {
+				return path.substring(0, path.length() - 1);
+			}
+			return path;
+		}
+		
+	}
+	
 }
@@ -52,6 +52,10 @@ public abstract class AbstractTrustableAuthenticatingFilter extends AbstractAuth
 	private int retryTimesWhenAccessDenied = 3;
 	private CaptchaResolver captchaResolver;
 	private AuthenticatingFailureCounter failureCounter;
+	/**
+	 * Whether the failure counter is reset after a successful login, off by default.
+	 */
+	private boolean resetFailureCounterOnSuccess = false;
 	
 	public AbstractTrustableAuthenticatingFilter() {
 		super();
@@ -65,6 +69,10 @@ public abstract class AbstractTrustableAuthenticatingFilter extends AbstractAuth
 					+ "must be created in order to execute a login attempt.";
 			throw new AuthenticationException(msg);
 		}
+		// 失败计数按 IP + 用户名区分
+		if (token.getPrincipal() != null && getFailureCounter() instanceof AuthenticatingFailureCacheCounter) {
+			request.setAttribute(AuthenticatingFailureCacheCounter.USERNAME_ATTRIBUTE, token.getPrincipal());
+		}
 		try {
 			
 			if (token instanceof CaptchaAuthenticationToken  &&  isOverRetryTimes(request, response)) {
@@ -75,6 +83,9 @@ public abstract class AbstractTrustableAuthenticatingFilter extends AbstractAuth
 			}
 			Subject subject = getSubject(request, response);
 			subject.login(token);
+			if (isResetFailureCounterOnSuccess() && getFailureCounter() != null) {
+				getFailureCounter().reset(request, response, getRetryTimesKeyAttribute());
+			}
 			return onLoginSuccess(token, subject, request, response);
 		} catch (AuthenticationException e) {
 			return onLoginFailure(token, e, request, response);
@@ -246,6 +257,17 @@ public abstract class AbstractTrustableAuthenticatingFilter extends AbstractAuth
 		this.captchaResolver = captchaResolver;
 	}
 
+	public boolean isResetFailureCounterOnSuccess() {
+		return resetFailureCounterOnSuccess;
+	}
+
+	/**
+	 * @param resetFailureCounterOnSuccess whether {@link AuthenticatingFailureCounter#reset} is called after a successful login
+	 */
+	public void setResetFailureCounterOnSuccess(boolean resetFailureCounterOnSuccess) {
+		this.resetFailureCounterOnSuccess = resetFailureCounterOnSuccess;
+	}
+
 	public AuthenticatingFailureCounter getFailureCounter() {
 		return failureCounter;
 	}
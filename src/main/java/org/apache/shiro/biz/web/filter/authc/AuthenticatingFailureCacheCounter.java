@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.web.filter.authc;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.shiro.biz.authc.credential.retry.CacheCredentialRetryStore;
+import org.apache.shiro.biz.authc.credential.retry.CredentialRetryStore;
+import org.apache.shiro.biz.authc.credential.retry.MemoryCredentialRetryStore;
+import org.apache.shiro.biz.authc.credential.retry.RetryWindow;
+import org.apache.shiro.biz.utils.RemoteAddrResolver;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.util.Assert;
+
+/**
+ * 基于 {@link CredentialRetryStore} 的登录失败计数器，在滑动时间窗口内分别按 客户端IP + 用户名 和 用户名 原子计数，
+ * 返回两者中的较大值，分散在多个IP上针对同一用户名的尝试同样会被计入；不读取客户端提交的计数，也不创建会话。
+ * 客户端IP由 {@link RemoteAddrResolver} 解析，默认不信任转发请求头。
+ * 用户名取自请求属性 {@link #USERNAME_ATTRIBUTE}（由 {@link AbstractTrustableAuthenticatingFilter} 在登录前设置），
+ * 缺失时取请求参数 {@link #getUsernameParam()}。
+ * <p>注意：按用户名计数意味着任何知道用户名的人都能把该用户的计数推过限额，使其每次登录都需要验证码
+ * （或被业务据此锁定），即可被用来针对指定用户发起拒绝服务；不能接受时请关闭 {@link #setCountByUsername(boolean)}，
+ * 只按 IP + 用户名计数。</p>
+ * <p>登录成功后清零计数需在过滤器上开启
+ * {@link AbstractTrustableAuthenticatingFilter#setResetFailureCounterOnSuccess(boolean)}。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class AuthenticatingFailureCacheCounter implements AuthenticatingFailureCounter {
+
+	/**
+	 * The request attribute holding the username of the current login attempt.
+	 */
+	public static final String USERNAME_ATTRIBUTE = AuthenticatingFailureCacheCounter.class.getName() + ".USERNAME";
+	public static final String DEFAULT_USERNAME_PARAM = "username";
+
+	private final CredentialRetryStore store;
+	private String usernameParam = DEFAULT_USERNAME_PARAM;
+	private RemoteAddrResolver remoteAddrResolver = new RemoteAddrResolver();
+	/**
+	 * Whether failures are also counted per username across all clients.
+	 */
+	private boolean countByUsername = true;
+
+	/**
+	 * Creates an in-memory counter with the default window.
+	 */
+	public AuthenticatingFailureCacheCounter() {
+		this(new MemoryCredentialRetryStore());
+	}
+
+	/**
+	 * Creates a counter stored in the given cache, shared by all nodes using the same cache.
+	 * @param cache the cache of failure windows
+	 * @param window the sliding window in milliseconds
+	 */
+	public AuthenticatingFailureCacheCounter(Cache<Object, RetryWindow> cache, long window) {
+		this(new CacheCredentialRetryStore(cache, window));
+	}
+
+	public AuthenticatingFailureCacheCounter(CredentialRetryStore store) {
+		Assert.notNull(store, "store must not be null");
+		this.store = store;
+	}
+
+	@Override
+	public int get(ServletRequest request, ServletResponse response, String retryTimesKeyAttribute) {
+		int count = store.get(getKey(request, retryTimesKeyAttribute));
+		String usernameKey = getUsernameKey(request, retryTimesKeyAttribute);
+		return usernameKey != null ? Math.max(count, store.get(usernameKey)) : count;
+	}
+
+	@Override
+	public void increment(ServletRequest request, ServletResponse response, String retryTimesKeyAttribute) {
+		store.incrementAndGet(getKey(request, retryTimesKeyAttribute));
+		String usernameKey = getUsernameKey(request, retryTimesKeyAttribute);
+		if (usernameKey != null) {
+			store.incrementAndGet(usernameKey);
+		}
+	}
+
+	@Override
+	public void reset(ServletRequest request, ServletResponse response, String retryTimesKeyAttribute) {
+		store.reset(getKey(request, retryTimesKeyAttribute));
+		String usernameKey = getUsernameKey(request, retryTimesKeyAttribute);
+		if (usernameKey != null) {
+			store.reset(usernameKey);
+		}
+	}
+
+	protected String getKey(ServletRequest request, String retryTimesKeyAttribute) {
+		Object username = getUsername(request);
+		return retryTimesKeyAttribute + ":" + getRemoteAddrResolver().resolve(request) + ":" + (username == null ? "" : username);
+	}
+
+	/**
+	 * @param request the login request
+	 * @param retryTimesKeyAttribute the key prefix
+	 * @return the key counting failures of the username across all clients, null if not counted
+	 */
+	protected String getUsernameKey(ServletRequest request, String retryTimesKeyAttribute) {
+		Object username = isCountByUsername() ? getUsername(request) : null;
+		if (username == null || String.valueOf(username).isEmpty()) {
+			return null;
+		}
+		return retryTimesKeyAttribute + "::" + username;
+	}
+
+	protected Object getUsername(ServletRequest request) {
+		Object username = request.getAttribute(USERNAME_ATTRIBUTE);
+		return username != null ? username : request.getParameter(getUsernameParam());
+	}
+
+	public CredentialRetryStore getStore() {
+		return store;
+	}
+
+	public RemoteAddrResolver getRemoteAddrResolver() {
+		return remoteAddrResolver;
+	}
+
+	public void setRemoteAddrResolver(RemoteAddrResolver remoteAddrResolver) {
+		Assert.notNull(remoteAddrResolver, "remoteAddrResolver must not be null");
+		this.remoteAddrResolver = remoteAddrResolver;
+	}
+
+	public boolean isCountByUsername() {
+		return countByUsername;
+	}
+
+	public void setCountByUsername(boolean countByUsername) {
+		this.countByUsername = countByUsername;
+	}
+
+	public String getUsernameParam() {
+		return usernameParam;
+	}
+
+	public void setUsernameParam(String usernameParam) {
+		this.usernameParam = usernameParam;
+	}
+
+}
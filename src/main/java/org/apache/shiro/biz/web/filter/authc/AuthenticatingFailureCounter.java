@@ -23,5 +23,14 @@ public interface AuthenticatingFailureCounter {
 	int get(ServletRequest request, ServletResponse response, String retryTimesKeyAttribute);
 	
 	void increment(ServletRequest request, ServletResponse response, String retryTimesKeyAttribute);
+
+	/**
+	 * Clears the failures of the current attempt, called after a successful login; does nothing by default.
+	 * @param request the login request
+	 * @param response the login response
+	 * @param retryTimesKeyAttribute the retry times key
+	 */
+	default void reset(ServletRequest request, ServletResponse response, String retryTimesKeyAttribute) {
+	}
 	
 }
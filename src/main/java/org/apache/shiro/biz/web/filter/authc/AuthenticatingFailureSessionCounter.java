@@ -44,4 +44,12 @@ public class AuthenticatingFailureSessionCounter implements AuthenticatingFailur
 		}
 	}
 
+	@Override
+	public void reset(ServletRequest request, ServletResponse response, String retryTimesKeyAttribute) {
+		Session session = SubjectUtils.getSession(false);
+		if (session != null) {
+			session.removeAttribute(retryTimesKeyAttribute);
+		}
+	}
+
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.web.filter.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.biz.utils.LatencyHistogram;
+
+/**
+ * 单个过滤器（或过滤器链）的统计指标：自身耗时直方图（不含后续过滤器和目标资源的耗时）、
+ * 未继续执行后续链路的次数（即过滤器拦截了请求）以及异常次数，全部基于无锁计数。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class FilterMetrics implements FilterMetricsMBean {
+
+	private final String name;
+	private final LongAdder shortCircuits = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	public FilterMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Records one invocation.
+	 * @param nanos the time spent in the filter itself, excluding the rest of the chain
+	 * @param shortCircuited whether the filter did not continue the chain
+	 */
+	public void record(long nanos, boolean shortCircuited) {
+		if (shortCircuited) {
+			shortCircuits.increment();
+		}
+		latency.record(nanos);
+	}
+
+	public void recordError() {
+		errors.increment();
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getInvocations() {
+		return latency.getCount();
+	}
+
+	@Override
+	public long getShortCircuits() {
+		return shortCircuits.sum();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public double getMeanNanos() {
+		return latency.getMeanNanos();
+	}
+
+	@Override
+	public long getP50Nanos() {
+		return latency.getPercentileNanos(50);
+	}
+
+	@Override
+	public long getP99Nanos() {
+		return latency.getPercentileNanos(99);
+	}
+
+	@Override
+	public long getMaxNanos() {
+		return latency.getMaxNanos();
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	@Override
+	public void reset() {
+		shortCircuits.reset();
+		errors.reset();
+		latency.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "FilterMetrics [name=" + name + ", invocations=" + getInvocations() + ", shortCircuits=" + getShortCircuits()
+				+ ", errors=" + getErrors() + ", p50=" + getP50Nanos() + "ns, p99=" + getP99Nanos() + "ns]";
+	}
+
+}
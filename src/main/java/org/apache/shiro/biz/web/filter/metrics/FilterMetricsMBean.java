@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.web.filter.metrics;
+
+/**
+ * 过滤器（或过滤器链）执行统计指标的 JMX 管理接口
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public interface FilterMetricsMBean {
+
+	String getName();
+
+	long getInvocations();
+
+	long getShortCircuits();
+
+	long getErrors();
+
+	double getMeanNanos();
+
+	long getP50Nanos();
+
+	long getP99Nanos();
+
+	long getMaxNanos();
+
+	void reset();
+
+}
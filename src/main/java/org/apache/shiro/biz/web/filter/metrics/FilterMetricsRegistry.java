@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.web.filter.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.web.filter.mgt.NamedFilterList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 过滤器链执行统计：按过滤器名称和过滤器链名称分别汇总 {@link FilterMetrics}，可通过 {@link #getFilterMetrics()}、
+ * {@link #getChainMetrics()} 拉取，并注册到平台 MBeanServer
+ * （<code>org.apache.shiro.biz:type=Filter,name=过滤器名称</code> 和 <code>org.apache.shiro.biz:type=FilterChain,name=过滤器链名称</code>）。
+ * <p>过滤器链的耗时为链上所有过滤器的耗时之和，不含目标资源的耗时；请求匹配多个过滤器链时按各个链分别统计，
+ * 统计项与配置的过滤器链一一对应，不随匹配到的链的组合增加。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class FilterMetricsRegistry implements Destroyable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FilterMetricsRegistry.class);
+
+	public static final String DEFAULT_JMX_DOMAIN = "org.apache.shiro.biz";
+
+	private final ConcurrentMap<String, FilterMetrics> filterMetrics = new ConcurrentHashMap<String, FilterMetrics>();
+	private final ConcurrentMap<String, FilterMetrics> chainMetrics = new ConcurrentHashMap<String, FilterMetrics>();
+
+	private MBeanServer mBeanServer;
+	private String jmxDomain = DEFAULT_JMX_DOMAIN;
+	private boolean jmxEnabled = true;
+
+	/**
+	 * Wraps the filter so that its own time is recorded under the given name.
+	 * @param filterName the filter name
+	 * @param filter the filter to wrap
+	 * @return the instrumented filter
+	 */
+	public Filter instrument(String filterName, Filter filter) {
+		if (filter instanceof InstrumentedFilter) {
+			return filter;
+		}
+		return new InstrumentedFilter(filter, getMetrics(filterMetrics, "Filter", filterName));
+	}
+
+	/**
+	 * Proxies the original chain through the given filters, recording the time spent in the filters under the chain name.
+	 * @param original the original chain, the target resource
+	 * @param chain the filters to apply
+	 * @return the proxied chain
+	 */
+	public FilterChain proxy(FilterChain original, NamedFilterList chain) {
+		return new InstrumentedChain(original, chain, getMetrics(chainMetrics, "FilterChain", chain.getName()));
+	}
+
+	/**
+	 * Proxies the original chain through the given chains one after another, recording the time of each chain under its own name.
+	 * @param original the original chain, the target resource
+	 * @param chains the matched chains, in order
+	 * @return the proxied chain
+	 */
+	public FilterChain proxy(FilterChain original, List<NamedFilterList> chains) {
+		FilterChain proxied = original;
+		for (int i = chains.size() - 1; i >= 0; i--) {
+			proxied = proxy(proxied, chains.get(i));
+		}
+		return proxied;
+	}
+
+	protected FilterMetrics getMetrics(ConcurrentMap<String, FilterMetrics> metrics, String type, String name) {
+		FilterMetrics existing = metrics.get(name);
+		if (existing == null) {
+			FilterMetrics created = new FilterMetrics(name);
+			existing = metrics.putIfAbsent(name, created);
+			if (existing == null) {
+				existing = created;
+				register(type, created);
+			}
+		}
+		return existing;
+	}
+
+	protected void register(String type, FilterMetrics metrics) {
+		if (!jmxEnabled) {
+			return;
+		}
+		try {
+			ObjectName objectName = getObjectName(type, metrics.getName());
+			MBeanServer server = getMBeanServer();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(metrics, objectName);
+		} catch (JMException e) {
+			LOG.warn("Unable to register filter metrics MBean for [{}].", metrics.getName(), e);
+		}
+	}
+
+	protected void unregister(String type, String name) {
+		try {
+			ObjectName objectName = getObjectName(type, name);
+			if (getMBeanServer().isRegistered(objectName)) {
+				getMBeanServer().unregisterMBean(objectName);
+			}
+		} catch (JMException e) {
+			LOG.warn("Unable to unregister filter metrics MBean for [{}].", name, e);
+		}
+	}
+
+	protected ObjectName getObjectName(String type, String name) throws JMException {
+		return new ObjectName(jmxDomain + ":type=" + type + ",name=" + ObjectName.quote(name));
+	}
+
+	/**
+	 * Returns the metrics of all filters invoked so far, keyed by filter name.
+	 * @return an unmodifiable view of the filter metrics
+	 */
+	public Map<String, FilterMetrics> getFilterMetrics() {
+		return Collections.unmodifiableMap(filterMetrics);
+	}
+
+	/**
+	 * Returns the metrics of all chains invoked so far, keyed by chain name.
+	 * @return an unmodifiable view of the chain metrics
+	 */
+	public Map<String, FilterMetrics> getChainMetrics() {
+		return Collections.unmodifiableMap(chainMetrics);
+	}
+
+	public void reset() {
+		for (FilterMetrics metrics : filterMetrics.values()) {
+			metrics.reset();
+		}
+		for (FilterMetrics metrics : chainMetrics.values()) {
+			metrics.reset();
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (jmxEnabled) {
+			for (String name : filterMetrics.keySet()) {
+				unregister("Filter", name);
+			}
+			for (String name : chainMetrics.keySet()) {
+				unregister("FilterChain", name);
+			}
+		}
+		filterMetrics.clear();
+		chainMetrics.clear();
+	}
+
+	public MBeanServer getMBeanServer() {
+		if (mBeanServer == null) {
+			mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		}
+		return mBeanServer;
+	}
+
+	public void setMBeanServer(MBeanServer mBeanServer) {
+		this.mBeanServer = mBeanServer;
+	}
+
+	public String getJmxDomain() {
+		return jmxDomain;
+	}
+
+	public void setJmxDomain(String jmxDomain) {
+		this.jmxDomain = jmxDomain;
+	}
+
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+
+	private static final class InstrumentedChain implements FilterChain {
+
+		private final FilterChain original;
+		private final NamedFilterList chain;
+		private final FilterMetrics metrics;
+
+		InstrumentedChain(FilterChain original, NamedFilterList chain, FilterMetrics metrics) {
+			this.original = original;
+			this.chain = chain;
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+			TimedFilterChain target = new TimedFilterChain(original);
+			long start = System.nanoTime();
+			try {
+				chain.proxy(target).doFilter(request, response);
+			} catch (IOException | ServletException | RuntimeException e) {
+				metrics.recordError();
+				throw e;
+			} finally {
+				metrics.record(System.nanoTime() - start - target.getNanos(), !target.isInvoked());
+			}
+		}
+
+	}
+
+}
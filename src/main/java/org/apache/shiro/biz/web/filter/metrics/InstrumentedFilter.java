@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.web.filter.metrics;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * 记录耗时的过滤器包装：只统计过滤器自身的耗时，后续链路的耗时通过 {@link TimedFilterChain} 扣除；
+ * 过滤器没有调用 {@link FilterChain#doFilter(ServletRequest, ServletResponse)} 时记为一次拦截。
+ * <p>包装只存在于过滤器链中，不参与过滤器的 init/destroy 生命周期。</p>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class InstrumentedFilter implements Filter {
+
+	private final Filter delegate;
+	private final FilterMetrics metrics;
+
+	public InstrumentedFilter(Filter delegate, FilterMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		TimedFilterChain next = new TimedFilterChain(chain);
+		long start = System.nanoTime();
+		try {
+			delegate.doFilter(request, response, next);
+		} catch (IOException | ServletException | RuntimeException e) {
+			metrics.recordError();
+			throw e;
+		} finally {
+			metrics.record(System.nanoTime() - start - next.getNanos(), !next.isInvoked());
+		}
+	}
+
+	public Filter getDelegate() {
+		return delegate;
+	}
+
+	public FilterMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+
+}
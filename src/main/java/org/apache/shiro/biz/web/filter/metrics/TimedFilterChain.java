@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.web.filter.metrics;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * 记录后续链路耗时的 {@link FilterChain} 包装，用于从上层耗时中扣除；每次请求创建，非线程安全。
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public class TimedFilterChain implements FilterChain {
+
+	private final FilterChain delegate;
+	private boolean invoked;
+	private long nanos;
+
+	public TimedFilterChain(FilterChain delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+		invoked = true;
+		long start = System.nanoTime();
+		try {
+			delegate.doFilter(request, response);
+		} finally {
+			nanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * @return whether the chain was continued at least once
+	 */
+	public boolean isInvoked() {
+		return invoked;
+	}
+
+	/**
+	 * @return the time spent in the rest of the chain
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+}
@@ -1,40 +1,98 @@
 package org.apache.shiro.biz.web.filter.mgt;
 
+import org.apache.shiro.biz.web.filter.metrics.FilterMetricsRegistry;
+import org.apache.shiro.config.ConfigurationException;
 import org.apache.shiro.config.Ini;
 import org.apache.shiro.util.CollectionUtils;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.LifecycleUtils;
 import org.apache.shiro.util.Nameable;
 import org.apache.shiro.util.StringUtils;
 import org.apache.shiro.web.config.IniFilterChainResolverFactory;
 import org.apache.shiro.web.filter.AccessControlFilter;
+import org.apache.shiro.web.filter.PathMatchingFilter;
 import org.apache.shiro.web.filter.authc.AuthenticationFilter;
 import org.apache.shiro.web.filter.authz.AuthorizationFilter;
 import org.apache.shiro.web.filter.mgt.DefaultFilterChainManager;
 import org.apache.shiro.web.filter.mgt.NamedFilterList;
 import org.apache.shiro.web.filter.mgt.SimpleNamedFilterList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>User: Zhang Kaitao
  * <p>Date: 14-2-25
  * <p>Version: 1.0
  */
-public class CustomDefaultFilterChainManager extends DefaultFilterChainManager {
+public class CustomDefaultFilterChainManager extends DefaultFilterChainManager implements Destroyable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CustomDefaultFilterChainManager.class);
+
+    /**
+     * The maximum number of distinct matched-chain combinations whose merged filter list is kept.
+     */
+    public static final int DEFAULT_COMBINED_CACHE_SIZE = 1024;
 
     private Map<String, String> filterChainDefinitionMap = null;
 
     private String loginUrl;
     private String successUrl;
     private String unauthorizedUrl;
+    /**
+     * The active chains together with their path configuration, never modified once published.
+     * Every change builds a new snapshot and replaces this reference, so readers see either all or nothing of it.
+     */
+    private volatile ChainSnapshot snapshot = new ChainSnapshot(0, new LinkedHashMap<String, NamedFilterList>(),
+            new IdentityHashMap<Filter, Map<String, String>>());
+    /**
+     * The snapshot being built, {@code null} otherwise; only touched while holding the lock.
+     */
+    private ChainSnapshot building;
+    /**
+     * The definitions of the last successful reload, used to skip reloads that would not change anything.
+     */
+    private List<Map.Entry<String, String>> loadedDefinitions;
+    private FilterChainDefinitionSource filterChainDefinitionSource;
+    /**
+     * The interval in milliseconds at which {@link #getFilterChainDefinitionSource()} is polled, {@code 0} disables polling.
+     */
+    private long reloadInterval = 0;
+    private volatile ScheduledExecutorService reloadExecutor;
+    /**
+     * Records per-filter and per-chain latency when set, {@code null} disables instrumentation.
+     */
+    private FilterMetricsRegistry metricsRegistry;
+    /**
+     * Matched chain names -> merged filter list, only valid for {@link CombinedChains#version}.
+     */
+    private volatile CombinedChains combinedChains;
+    private int combinedCacheSize = DEFAULT_COMBINED_CACHE_SIZE;
 
     public CustomDefaultFilterChainManager() {
         setFilters(new LinkedHashMap<String, Filter>());
-        setFilterChains(new LinkedHashMap<String, NamedFilterList>());
         addDefaultFilters(false);
     }
 
@@ -106,27 +164,411 @@ public class CustomDefaultFilterChainManager extends DefaultFilterChainManager {
         }
 
         //build up the chains:
-        Map<String, String> chains = getFilterChainDefinitionMap();
+        final Map<String, String> chains = getFilterChainDefinitionMap();
         if (!CollectionUtils.isEmpty(chains)) {
-            for (Map.Entry<String, String> entry : chains.entrySet()) {
-                String url = entry.getKey();
-                String chainDefinition = entry.getValue();
-                createChain(url, chainDefinition);
+            modify(new Runnable() {
+                @Override
+                public void run() {
+                    for (Map.Entry<String, String> entry : chains.entrySet()) {
+                        String url = entry.getKey();
+                        String chainDefinition = entry.getValue();
+                        createChain(url, chainDefinition);
+                    }
+                }
+            });
+        }
+
+        if (getFilterChainDefinitionSource() != null) {
+            reload();
+            if (getReloadInterval() > 0) {
+                ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "shiro-filter-chain-reloader");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                service.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            reload();
+                        } catch (RuntimeException e) {
+                            LOG.warn("Unable to reload filter chain definitions, keeping the active chains.", e);
+                        }
+                    }
+                }, getReloadInterval(), getReloadInterval(), TimeUnit.MILLISECONDS);
+                this.reloadExecutor = service;
             }
         }
     }
 
+    @PreDestroy
+    @Override
+    public void destroy() throws Exception {
+        ScheduledExecutorService service = this.reloadExecutor;
+        this.reloadExecutor = null;
+        if (service != null) {
+            service.shutdownNow();
+        }
+        LifecycleUtils.destroy(metricsRegistry);
+    }
+
+    /**
+     * Reloads the chains from {@link #getFilterChainDefinitionSource()}.
+     * @return {@code true} if the definitions changed and new chains were published
+     * @throws ConfigurationException if the source fails, the active chains are kept
+     */
+    public boolean reload() {
+        FilterChainDefinitionSource source = getFilterChainDefinitionSource();
+        if (source == null) {
+            return reload(getFilterChainDefinitionMap());
+        }
+        Map<String, String> definitions;
+        try {
+            definitions = source.getFilterChainDefinitions();
+        } catch (Exception e) {
+            throw new ConfigurationException("Unable to load filter chain definitions from " + source, e);
+        }
+        return reload(definitions);
+    }
+
+    /**
+     * Builds a complete new set of chains from the given definitions aside from the active ones and publishes it
+     * with a single volatile write, so requests in flight are never blocked and always see either the old or the
+     * new chains. The per-path configuration of {@link PathMatchingFilter}s is built along with the snapshot and handed
+     * to the filters through {@link PathMatchingFilter#processPathConfig(String, String)} just before the snapshot is
+     * published, so a new chain never reaches a filter that does not know its path yet. The filters share their
+     * configuration across snapshots: requests in flight see changed configuration of existing paths immediately, and
+     * since a filter cannot forget a path, a path removed from a filter keeps its last configuration in that filter.
+     * @param definitions url pattern -&gt; chain definition, in matching order
+     * @return {@code true} if the definitions changed and new chains were published
+     * @throws IllegalArgumentException if a definition references an unknown filter, the active chains are kept
+     */
+    public synchronized boolean reload(Map<String, String> definitions) {
+        List<Map.Entry<String, String>> entries = new ArrayList<Map.Entry<String, String>>();
+        if (!CollectionUtils.isEmpty(definitions)) {
+            for (Map.Entry<String, String> entry : definitions.entrySet()) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<String, String>(entry));
+            }
+        }
+        if (entries.equals(loadedDefinitions)) {
+            return false;
+        }
+        ChainSnapshot next = new ChainSnapshot(snapshot.version + 1, new LinkedHashMap<String, NamedFilterList>(),
+                new IdentityHashMap<Filter, Map<String, String>>());
+        this.building = next;
+        try {
+            for (Map.Entry<String, String> entry : entries) {
+                createChain(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            this.building = null;
+        }
+        publish(next);
+        this.loadedDefinitions = entries;
+        LOG.info("Reloaded {} filter chain definitions.", entries.size());
+        return true;
+    }
+
+    /**
+     * Runs the change against a copy of the active snapshot and publishes the copy, unless a snapshot is already being built.
+     */
+    private synchronized void modify(Runnable change) {
+        if (building != null) {
+            change.run();
+            return;
+        }
+        ChainSnapshot next = snapshot.copy();
+        this.building = next;
+        try {
+            change.run();
+        } finally {
+            this.building = null;
+        }
+        publish(next);
+    }
+
+    private void publish(ChainSnapshot next) {
+        if (next.appliedPaths != null) {
+            Map<Filter, Map<String, String>> published = snapshot.appliedPaths;
+            for (Map.Entry<Filter, Map<String, String>> entry : next.appliedPaths.entrySet()) {
+                processPathConfig((PathMatchingFilter) entry.getKey(), entry.getValue(),
+                        published != null ? published.get(entry.getKey()) : null);
+            }
+        }
+        this.snapshot = next.freeze();
+    }
+
+    /**
+     * Hands the paths that are new or changed since the published snapshot to the filter.
+     */
+    private static void processPathConfig(PathMatchingFilter filter, Map<String, String> paths, Map<String, String> published) {
+        for (Map.Entry<String, String> path : paths.entrySet()) {
+            if (published == null || !published.containsKey(path.getKey())
+                    || !Objects.equals(path.getValue(), published.get(path.getKey()))) {
+                filter.processPathConfig(path.getKey(), path.getValue());
+            }
+        }
+        if (published != null) {
+            for (String path : published.keySet()) {
+                if (!paths.containsKey(path)) {
+                    LOG.warn("Path [{}] was removed from filter [{}], the filter keeps its last configuration for it.", path, filter);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void createChain(final String chainName, final String chainDefinition) {
+        modify(new Runnable() {
+            @Override
+            public void run() {
+                CustomDefaultFilterChainManager.super.createChain(chainName, chainDefinition);
+            }
+        });
+    }
+
+    @Override
+    public void createDefaultChain(final String chainName) {
+        modify(new Runnable() {
+            @Override
+            public void run() {
+                CustomDefaultFilterChainManager.super.createDefaultChain(chainName);
+            }
+        });
+    }
+
+    @Override
+    protected void applyChainConfig(String chainName, Filter filter, String chainSpecificFilterConfig) {
+        ChainSnapshot snapshot = this.building;
+        if (snapshot != null && snapshot.appliedPaths != null && filter instanceof PathMatchingFilter) {
+            //collected into the snapshot, the filter gets it when the snapshot is published
+            Map<String, String> appliedPaths = snapshot.appliedPaths.get(filter);
+            if (appliedPaths == null) {
+                appliedPaths = new LinkedHashMap<String, String>();
+                snapshot.appliedPaths.put(filter, appliedPaths);
+            }
+            appliedPaths.put(chainName, chainSpecificFilterConfig);
+            return;
+        }
+        super.applyChainConfig(chainName, filter, chainSpecificFilterConfig);
+    }
+
     @Override
     protected void initFilter(Filter filter) {
         //ignore
     }
 
+    /**
+     * @return an unmodifiable view of the active chains
+     */
+    @Override
+    public Map<String, NamedFilterList> getFilterChains() {
+        return snapshot.chains;
+    }
+
+    /**
+     * Publishes the given chains as they are, the {@link PathMatchingFilter}s in them keep their own path configuration.
+     */
+    @Override
+    public synchronized void setFilterChains(Map<String, NamedFilterList> filterChains) {
+        Map<String, NamedFilterList> chains = new LinkedHashMap<String, NamedFilterList>();
+        if (filterChains != null) {
+            for (Map.Entry<String, NamedFilterList> entry : filterChains.entrySet()) {
+                chains.put(entry.getKey(), new SimpleNamedFilterList(entry.getKey(), new ArrayList<Filter>(entry.getValue())));
+            }
+        }
+        publish(new ChainSnapshot(snapshot.version + 1, chains, null));
+        this.loadedDefinitions = null;
+    }
+
+    @Override
+    public NamedFilterList getChain(String chainName) {
+        return snapshot.chains.get(chainName);
+    }
+
+    @Override
+    public boolean hasChains() {
+        return !snapshot.chains.isEmpty();
+    }
+
+    @Override
+    public Set<String> getChainNames() {
+        return snapshot.chains.keySet();
+    }
+
+    @Override
+    protected NamedFilterList ensureChain(final String chainName) {
+        ChainSnapshot snapshot = this.building;
+        if (snapshot == null) {
+            final NamedFilterList[] chain = new NamedFilterList[1];
+            modify(new Runnable() {
+                @Override
+                public void run() {
+                    chain[0] = ensureChain(chainName);
+                }
+            });
+            return chain[0];
+        }
+        NamedFilterList chain = snapshot.chains.get(chainName);
+        if (chain == null) {
+            chain = new SimpleNamedFilterList(chainName);
+            snapshot.chains.put(chainName, chain);
+        }
+        return chain;
+    }
+
+    @Override
+    public void addToChain(final String chainName, final String filterName, final String chainSpecificFilterConfig) {
+        modify(new Runnable() {
+            @Override
+            public void run() {
+                CustomDefaultFilterChainManager.super.addToChain(chainName, filterName, chainSpecificFilterConfig);
+            }
+        });
+    }
+
+    /**
+     * @return a number that changes whenever the chains change
+     */
+    public int getChainVersion() {
+        return snapshot.version;
+    }
+
+    @Override
+    public FilterChain proxy(FilterChain original, String chainName) {
+        ChainSnapshot current = this.snapshot;
+        NamedFilterList configured = current.chains.get(chainName);
+        if (configured == null) {
+            throw new IllegalArgumentException("There is no configured chain under the name/key [" + chainName + "].");
+        }
+        return proxy(current, original, Collections.singletonList(chainName));
+    }
+
     public FilterChain proxy(FilterChain original, List<String> chainNames) {
-        NamedFilterList configured = new SimpleNamedFilterList(chainNames.toString());
-        for(String chainName : chainNames) {
-            configured.addAll(getChain(chainName));
+        return proxy(this.snapshot, original, chainNames);
+    }
+
+    /**
+     * Same as {@link #proxy(FilterChain, List)}, but only if the chains are still those of the given version.
+     * @param original the original chain, the target resource
+     * @param chainNames the chain names matched against version {@code chainVersion}
+     * @param chainVersion the {@link #getChainVersion()} the names were matched against
+     * @return the proxied chain, or {@code null} if the chains changed since and the names must be matched again
+     */
+    public FilterChain proxy(FilterChain original, List<String> chainNames, int chainVersion) {
+        ChainSnapshot current = this.snapshot;
+        return current.version == chainVersion ? proxy(current, original, chainNames) : null;
+    }
+
+    /**
+     * With metrics enabled the matched chains are proxied one after another instead of merged,
+     * so their time is recorded under each configured chain name rather than per combination of names.
+     */
+    private FilterChain proxy(ChainSnapshot current, FilterChain original, List<String> chainNames) {
+        FilterMetricsRegistry registry = getMetricsRegistry();
+        if (registry == null) {
+            return getCombinedChain(current, chainNames).proxy(original);
         }
-        return configured.proxy(original);
+        CombinedChains combined = getCombinedChains(current);
+        List<NamedFilterList> chains = new ArrayList<NamedFilterList>(chainNames.size());
+        for (String chainName : chainNames) {
+            NamedFilterList instrumented = combined.instrumented.get(chainName);
+            if (instrumented == null) {
+                NamedFilterList chain = current.chains.get(chainName);
+                if (chain == null) {
+                    continue;
+                }
+                instrumented = new SimpleNamedFilterList(chainName, new ArrayList<Filter>(chain));
+                instrument(registry, instrumented);
+                combined.instrumented.putIfAbsent(chainName, instrumented);
+            }
+            chains.add(instrumented);
+        }
+        return registry.proxy(original, chains);
+    }
+
+    /**
+     * Returns the filters of the given chains merged in order, reusing the list built for the same chain names
+     * until any chain changes. Names the active chains do not know, e.g. matched before a reload, are skipped.
+     * @param chainNames the matched chain names
+     * @return the merged filter list, must not be modified
+     */
+    public NamedFilterList getCombinedChain(List<String> chainNames) {
+        return getCombinedChain(this.snapshot, chainNames);
+    }
+
+    private NamedFilterList getCombinedChain(ChainSnapshot snapshot, List<String> chainNames) {
+        CombinedChains current = getCombinedChains(snapshot);
+        NamedFilterList configured = current.lists.getIfPresent(chainNames);
+        if (configured == null) {
+            configured = new SimpleNamedFilterList(chainNames.toString());
+            for(String chainName : chainNames) {
+                NamedFilterList chain = snapshot.chains.get(chainName);
+                if (chain != null) {
+                    configured.addAll(chain);
+                }
+            }
+            current.lists.put(new ArrayList<String>(chainNames), configured);
+        }
+        return configured;
+    }
+
+    private CombinedChains getCombinedChains(ChainSnapshot snapshot) {
+        CombinedChains current = this.combinedChains;
+        if (current == null || current.snapshot != snapshot) {
+            current = new CombinedChains(snapshot, combinedCacheSize);
+            this.combinedChains = current;
+        }
+        return current;
+    }
+
+    private void instrument(FilterMetricsRegistry registry, NamedFilterList configured) {
+        Map<Filter, String> names = new IdentityHashMap<Filter, String>();
+        for (Map.Entry<String, Filter> entry : getFilters().entrySet()) {
+            names.put(entry.getValue(), entry.getKey());
+        }
+        for (int i = 0; i < configured.size(); i++) {
+            Filter filter = configured.get(i);
+            String name = names.get(filter);
+            configured.set(i, registry.instrument(name != null ? name : filter.getClass().getSimpleName(), filter));
+        }
+    }
+
+    public FilterChainDefinitionSource getFilterChainDefinitionSource() {
+        return filterChainDefinitionSource;
+    }
+
+    public void setFilterChainDefinitionSource(FilterChainDefinitionSource filterChainDefinitionSource) {
+        this.filterChainDefinitionSource = filterChainDefinitionSource;
+    }
+
+    public long getReloadInterval() {
+        return reloadInterval;
+    }
+
+    public void setReloadInterval(long reloadInterval) {
+        this.reloadInterval = reloadInterval;
+    }
+
+    public FilterMetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    public void setMetricsRegistry(FilterMetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        this.combinedChains = null;
+    }
+
+    public int getCombinedCacheSize() {
+        return combinedCacheSize;
+    }
+
+    public void setCombinedCacheSize(int combinedCacheSize) {
+        this.combinedCacheSize = combinedCacheSize;
+        this.combinedChains = null;
     }
 
     private void applyLoginUrlIfNecessary(Filter filter) {
@@ -170,4 +612,60 @@ public class CustomDefaultFilterChainManager extends DefaultFilterChainManager {
         applySuccessUrlIfNecessary(filter);
         applyUnauthorizedUrlIfNecessary(filter);
     }
+
+    private static final class ChainSnapshot {
+
+        private final int version;
+        private final Map<String, NamedFilterList> chains;
+        /**
+         * Filter -&gt; chain name -&gt; config of the {@link PathMatchingFilter}s in the chains,
+         * {@code null} if the chains were set from outside and the filters keep their own configuration.
+         */
+        private final Map<Filter, Map<String, String>> appliedPaths;
+
+        ChainSnapshot(int version, Map<String, NamedFilterList> chains, Map<Filter, Map<String, String>> appliedPaths) {
+            this.version = version;
+            this.chains = chains;
+            this.appliedPaths = appliedPaths;
+        }
+
+        /**
+         * @return a modifiable deep copy with the next version
+         */
+        ChainSnapshot copy() {
+            Map<String, NamedFilterList> chains = new LinkedHashMap<String, NamedFilterList>();
+            for (Map.Entry<String, NamedFilterList> entry : this.chains.entrySet()) {
+                chains.put(entry.getKey(), new SimpleNamedFilterList(entry.getKey(), new ArrayList<Filter>(entry.getValue())));
+            }
+            Map<Filter, Map<String, String>> appliedPaths = null;
+            if (this.appliedPaths != null) {
+                appliedPaths = new IdentityHashMap<Filter, Map<String, String>>();
+                for (Map.Entry<Filter, Map<String, String>> entry : this.appliedPaths.entrySet()) {
+                    appliedPaths.put(entry.getKey(), new LinkedHashMap<String, String>(entry.getValue()));
+                }
+            }
+            return new ChainSnapshot(version + 1, chains, appliedPaths);
+        }
+
+        ChainSnapshot freeze() {
+            return new ChainSnapshot(version, Collections.unmodifiableMap(chains), appliedPaths);
+        }
+
+    }
+
+    private static final class CombinedChains {
+
+        private final ChainSnapshot snapshot;
+        private final Cache<List<String>, NamedFilterList> lists;
+        /**
+         * Chain name -&gt; the chain's filters wrapped for metrics, bounded by the number of chains.
+         */
+        private final ConcurrentMap<String, NamedFilterList> instrumented = new ConcurrentHashMap<String, NamedFilterList>();
+
+        CombinedChains(ChainSnapshot snapshot, int maximumSize) {
+            this.snapshot = snapshot;
+            this.lists = CacheBuilder.newBuilder().maximumSize(maximumSize).<List<String>, NamedFilterList>build();
+        }
+
+    }
 }
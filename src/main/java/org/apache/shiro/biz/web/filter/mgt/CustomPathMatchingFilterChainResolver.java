@@ -1,12 +1,18 @@
 package org.apache.shiro.biz.web.filter.mgt;
 
+import org.apache.shiro.biz.utils.CompiledPathMatcher;
+import org.apache.shiro.util.AntPathMatcher;
 import org.apache.shiro.web.filter.mgt.FilterChainManager;
 import org.apache.shiro.web.filter.mgt.PathMatchingFilterChainResolver;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import javax.servlet.FilterChain;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -16,7 +22,20 @@ import java.util.List;
  */
 public class CustomPathMatchingFilterChainResolver extends PathMatchingFilterChainResolver {
 
+    /**
+     * The default number of distinct request paths whose matched chain names are remembered.
+     */
+    public static final int DEFAULT_RESOLVED_CACHE_SIZE = 10000;
+
     private CustomDefaultFilterChainManager customDefaultFilterChainManager;
+    /**
+     * The maximum number of remembered request paths, {@code 0} disables the cache.
+     */
+    private int resolvedCacheSize = DEFAULT_RESOLVED_CACHE_SIZE;
+    /**
+     * The chain names compiled into a segment trie plus the per-path match cache, rebuilt when the chains change.
+     */
+    private volatile CompiledChains compiledChains;
 
     public void setCustomDefaultFilterChainManager(CustomDefaultFilterChainManager customDefaultFilterChainManager) {
         this.customDefaultFilterChainManager = customDefaultFilterChainManager;
@@ -32,6 +51,58 @@ public class CustomPathMatchingFilterChainResolver extends PathMatchingFilterCha
 
         String requestURI = getPathWithinApplication(request);
 
+        //the names must be proxied against the chains they were matched with, match again if a reload came in between
+        for (;;) {
+            int version = customDefaultFilterChainManager.getChainVersion();
+
+            List<String> chainNames = getMatchingChainNames(filterChainManager, requestURI);
+
+            if(chainNames.size() == 0) {
+                return null;
+            }
+
+            FilterChain proxied = customDefaultFilterChainManager.proxy(originalChain, chainNames, version);
+            if (proxied != null) {
+                return proxied;
+            }
+        }
+    }
+
+    /**
+     * Returns the chain names the request is matched with by {@link #getChain(ServletRequest, ServletResponse, FilterChain)}.
+     * @param request the incoming request
+     * @return the matching chain names in definition order, empty if none
+     */
+    public List<String> getMatchingChainNames(ServletRequest request) {
+        FilterChainManager filterChainManager = getFilterChainManager();
+        if (!filterChainManager.hasChains()) {
+            return Collections.emptyList();
+        }
+        return getMatchingChainNames(filterChainManager, getPathWithinApplication(request));
+    }
+
+    /**
+     * Returns the chain names matching the request, in definition order.
+     * Results are remembered per request path in a bounded LRU that is dropped whenever the chains change;
+     * matching itself uses a {@link CompiledPathMatcher} when the default Ant matcher is in use, otherwise checks every chain.
+     */
+    protected List<String> getMatchingChainNames(FilterChainManager filterChainManager, String requestURI) {
+        CompiledChains current = getCompiledChains(filterChainManager);
+        if (current == null) {
+            return scanChainNames(filterChainManager, requestURI);
+        }
+        if (current.resolved == null) {
+            return current.match(this, filterChainManager, requestURI);
+        }
+        List<String> chainNames = current.resolved.getIfPresent(requestURI);
+        if (chainNames == null) {
+            chainNames = current.match(this, filterChainManager, requestURI);
+            current.resolved.put(requestURI, chainNames);
+        }
+        return chainNames;
+    }
+
+    private List<String> scanChainNames(FilterChainManager filterChainManager, String requestURI) {
         List<String> chainNames = new ArrayList<String>();
         //the 'chain names' in this implementation are actually path patterns defined by the user.  We just use them
         //as the chain name for the FilterChainManager's requirements
@@ -42,11 +113,62 @@ public class CustomPathMatchingFilterChainResolver extends PathMatchingFilterCha
                 chainNames.add(pathPattern);
             }
         }
+        return chainNames;
+    }
 
-        if(chainNames.size() == 0) {
+    /**
+     * Only chains owned by the {@link CustomDefaultFilterChainManager} report changes, other managers are scanned each time.
+     */
+    private CompiledChains getCompiledChains(FilterChainManager filterChainManager) {
+        if (filterChainManager != customDefaultFilterChainManager) {
             return null;
         }
+        int version = customDefaultFilterChainManager.getChainVersion();
+        CompiledChains current = this.compiledChains;
+        if (current == null || current.version != version || current.pathMatcher != getPathMatcher()) {
+            List<String> names = new ArrayList<String>(filterChainManager.getChainNames());
+            if (customDefaultFilterChainManager.getChainVersion() != version) {
+                //the names belong to a later version, compile them next time
+                return null;
+            }
+            CompiledPathMatcher matcher = getPathMatcher().getClass() == AntPathMatcher.class
+                    && CompiledPathMatcher.isCompilable(names) ? CompiledPathMatcher.compile(names) : null;
+            Cache<String, List<String>> resolved = resolvedCacheSize > 0
+                    ? CacheBuilder.newBuilder().maximumSize(resolvedCacheSize).<String, List<String>>build() : null;
+            current = new CompiledChains(version, getPathMatcher(), matcher, resolved);
+            this.compiledChains = current;
+        }
+        return current;
+    }
+
+    public int getResolvedCacheSize() {
+        return resolvedCacheSize;
+    }
+
+    public void setResolvedCacheSize(int resolvedCacheSize) {
+        this.resolvedCacheSize = resolvedCacheSize;
+        this.compiledChains = null;
+    }
+
+    private static final class CompiledChains {
+
+        private final int version;
+        private final Object pathMatcher;
+        private final CompiledPathMatcher matcher;
+        private final Cache<String, List<String>> resolved;
+
+        CompiledChains(int version, Object pathMatcher, CompiledPathMatcher matcher, Cache<String, List<String>> resolved) {
+            this.version = version;
+            this.pathMatcher = pathMatcher;
+            this.matcher = matcher;
+            this.resolved = resolved;
+        }
+
+        List<String> match(CustomPathMatchingFilterChainResolver resolver, FilterChainManager filterChainManager, String requestURI) {
+            List<String> chainNames = matcher != null ? matcher.matchAll(requestURI)
+                    : resolver.scanChainNames(filterChainManager, requestURI);
+            return chainNames.isEmpty() ? Collections.<String>emptyList() : Collections.unmodifiableList(chainNames);
+        }
 
-        return customDefaultFilterChainManager.proxy(originalChain, chainNames);
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.web.filter.mgt;
+
+import java.util.Map;
+
+/**
+ * 过滤器链定义来源（数据库、配置文件等），供 {@link CustomDefaultFilterChainManager#reload()} 在运行时重新加载。
+ * 返回的 Map 需保持定义顺序，例如 {@link java.util.LinkedHashMap}：
+ * <pre>
+ * /login = anon
+ * /admin/** = authc, roles[admin]
+ * /** = authc
+ * </pre>
+ * @author <a href="https://github.com/hiwepy">hiwepy</a>
+ */
+public interface FilterChainDefinitionSource {
+
+	/**
+	 * Returns the current chain definitions, url pattern -&gt; chain definition, in matching order.
+	 * @return the chain definitions
+	 * @throws Exception if the definitions can not be loaded, the active chains are kept in that case
+	 */
+	Map<String, String> getFilterChainDefinitions() throws Exception;
+
+}
@@ -18,6 +18,13 @@ package org.apache.shiro.session.mgt;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @SuppressWarnings("serial")
 public class SimpleOnlineSession extends SimpleSession {
@@ -59,6 +66,7 @@ public class SimpleOnlineSession extends SimpleSession {
 
     public void setUserAgent(String userAgent) {
         this.userAgent = userAgent;
+        markStateChanged();
     }
 
     public OnlineStatus getStatus() {
@@ -67,6 +75,7 @@ public class SimpleOnlineSession extends SimpleSession {
 
     public void setStatus(OnlineStatus status) {
         this.status = status;
+        markStateChanged();
     }
 
     public String getSystemHost() {
@@ -75,34 +84,225 @@ public class SimpleOnlineSession extends SimpleSession {
 
     public void setSystemHost(String systemHost) {
         this.systemHost = systemHost;
+        markStateChanged();
     }
 	
 	/**
-     * 属性是否改变 优化session数据同步
+     * 属性是否改变 优化session数据同步。
+     * 仅 setAttribute/removeAttribute/setAttributes 会标记变化，直接修改属性值内部状态（如取出集合后修改）不会被检测，
+     * 修改后需重新调用 setAttribute 或 {@link #markAttributeChanged()}，否则变化不会被持久化
      */
-    private transient boolean attributeChanged = false;
+    private transient volatile boolean attributeChanged = false;
+    /**
+     * 属性发生改变但无法确定具体的属性（如整体替换属性 Map）
+     */
+    private transient volatile boolean allAttributesChanged = false;
+    /**
+     * 除属性和最后访问时间以外的状态（超时时间、停止时间、过期标记、主机、在线状态等）是否改变
+     */
+    private transient volatile boolean stateChanged = false;
+    /**
+     * 最后访问时间是否改变
+     */
+    private transient volatile boolean lastAccessTimeChanged = false;
+    /**
+     * 发生改变（设置或移除）的属性名称
+     */
+    private transient Set<Object> changedAttributeKeys = newKeySet();
+    /**
+     * 标记变化次数，用于判断写入期间会话是否再次发生变化
+     */
+    private transient long changeCount = 0;
 
-    public void markAttributeChanged() {
+    private static Set<Object> newKeySet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+    }
+
+    /**
+     * 标记属性已改变但不记录具体属性，持久化时将写入完整会话
+     */
+    public synchronized void markAttributeChanged() {
         this.attributeChanged = true;
+        this.allAttributesChanged = true;
+        this.changeCount++;
     }
 
-    public void resetAttributeChanged() {
+    protected synchronized void markAttributeChanged(Object key) {
+        if (key != null) {
+            this.changedAttributeKeys.add(key);
+        }
+        this.attributeChanged = true;
+        this.changeCount++;
+    }
+
+    protected synchronized void markStateChanged() {
+        this.stateChanged = true;
+        this.changeCount++;
+    }
+
+    protected synchronized void markLastAccessTimeChanged() {
+        this.lastAccessTimeChanged = true;
+        this.changeCount++;
+    }
+
+    /**
+     * 重置所有改变标记，仅用于刚创建或刚加载、尚未被其他线程共享的会话
+     */
+    public synchronized void resetAttributeChanged() {
         this.attributeChanged = false;
+        this.allAttributesChanged = false;
+        this.stateChanged = false;
+        this.lastAccessTimeChanged = false;
+        this.changedAttributeKeys.clear();
+    }
+
+    /**
+     * 会话持久化成功后调用：若自 {@link #getChanges()} 快照以来未再发生变化则重置所有改变标记，
+     * 否则保留全部标记，由下次写入覆盖
+     * @param changes the snapshot taken before the write
+     * @return true if the flags were reset
+     */
+    public synchronized boolean resetAttributeChanged(Changes changes) {
+        if (changes.getChangeCount() != this.changeCount) {
+            return false;
+        }
+        resetAttributeChanged();
+        return true;
+    }
+
+    /**
+     * @return a consistent snapshot of the change flags
+     */
+    public synchronized Changes getChanges() {
+        return new Changes(attributeChanged, allAttributesChanged, stateChanged, lastAccessTimeChanged,
+                new HashSet<Object>(changedAttributeKeys), changeCount);
     }
 
     public boolean isAttributeChanged() {
         return attributeChanged;
     }
+
+    /**
+     * @return true if attributes changed without key information, so only a full write is safe
+     */
+    public boolean isAllAttributesChanged() {
+        return allAttributesChanged;
+    }
+
+    public boolean isStateChanged() {
+        return stateChanged;
+    }
+
+    public boolean isLastAccessTimeChanged() {
+        return lastAccessTimeChanged;
+    }
+
+    /**
+     * @return true if anything other than the last access time changed
+     */
+    public boolean isChanged() {
+        return attributeChanged || stateChanged;
+    }
+
+    /**
+     * @return true if only the last access time moved since the last reset
+     */
+    public boolean isOnlyLastAccessTimeChanged() {
+        return lastAccessTimeChanged && !isChanged();
+    }
+
+    /**
+     * @return a snapshot of the keys set or removed since the last reset
+     */
+    public Set<Object> getChangedAttributeKeys() {
+        return new HashSet<Object>(changedAttributeKeys);
+    }
 	
 	@Override
     public void setAttribute(Object key, Object value) {
         super.setAttribute(key, value);
+        markAttributeChanged(key);
     }
 
 
     @Override
     public Object removeAttribute(Object key) {
-        return super.removeAttribute(key);
+        Object removed = super.removeAttribute(key);
+        if (removed != null) {
+            markAttributeChanged(key);
+        }
+        return removed;
+    }
+
+    @Override
+    public void setAttributes(Map<Object, Object> attributes) {
+        Map<Object, Object> previous = getAttributes();
+        super.setAttributes(attributes);
+        // SimpleSession 首次 setAttribute 时以空 Map 延迟初始化，并未改变任何属性
+        if ((previous == null || previous.isEmpty()) && (attributes == null || attributes.isEmpty())) {
+            return;
+        }
+        markAttributeChanged();
+    }
+
+    @Override
+    public void touch() {
+        super.touch();
+        markLastAccessTimeChanged();
+    }
+
+    @Override
+    public void setLastAccessTime(Date lastAccessTime) {
+        super.setLastAccessTime(lastAccessTime);
+        markLastAccessTimeChanged();
+    }
+
+    @Override
+    public void setId(Serializable id) {
+        super.setId(id);
+        markStateChanged();
+    }
+
+    @Override
+    public void setStartTimestamp(Date startTimestamp) {
+        super.setStartTimestamp(startTimestamp);
+        markStateChanged();
+    }
+
+    @Override
+    public void setStopTimestamp(Date stopTimestamp) {
+        super.setStopTimestamp(stopTimestamp);
+        markStateChanged();
+    }
+
+    @Override
+    public void setExpired(boolean expired) {
+        super.setExpired(expired);
+        markStateChanged();
+    }
+
+    @Override
+    public void setTimeout(long timeout) {
+        super.setTimeout(timeout);
+        markStateChanged();
+    }
+
+    @Override
+    public void setHost(String host) {
+        super.setHost(host);
+        markStateChanged();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        markStateChanged();
+    }
+
+    @Override
+    protected void expire() {
+        super.expire();
+        markStateChanged();
     }
 
 
@@ -136,6 +336,7 @@ public class SimpleOnlineSession extends SimpleSession {
      */
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
+        this.changedAttributeKeys = newKeySet();
         short bitMask = in.readShort();
 
         if (isFieldPresent(bitMask, USER_AGENT_BIT_MASK)) {
@@ -177,4 +378,52 @@ public class SimpleOnlineSession extends SimpleSession {
         return (bitMask & fieldBitMask) != 0;
     }
     
+    /**
+     * 改变标记快照
+     */
+    public static final class Changes {
+
+        private final boolean attributeChanged;
+        private final boolean allAttributesChanged;
+        private final boolean stateChanged;
+        private final boolean lastAccessTimeChanged;
+        private final Set<Object> changedAttributeKeys;
+        private final long changeCount;
+
+        Changes(boolean attributeChanged, boolean allAttributesChanged, boolean stateChanged,
+                boolean lastAccessTimeChanged, Set<Object> changedAttributeKeys, long changeCount) {
+            this.attributeChanged = attributeChanged;
+            this.allAttributesChanged = allAttributesChanged;
+            this.stateChanged = stateChanged;
+            this.lastAccessTimeChanged = lastAccessTimeChanged;
+            this.changedAttributeKeys = changedAttributeKeys;
+            this.changeCount = changeCount;
+        }
+
+        public boolean isAttributeChanged() {
+            return attributeChanged;
+        }
+
+        public boolean isAllAttributesChanged() {
+            return allAttributesChanged;
+        }
+
+        public boolean isStateChanged() {
+            return stateChanged;
+        }
+
+        public boolean isLastAccessTimeChanged() {
+            return lastAccessTimeChanged;
+        }
+
+        public Set<Object> getChangedAttributeKeys() {
+            return changedAttributeKeys;
+        }
+
+        public long getChangeCount() {
+            return changeCount;
+        }
+
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.authc.credential;
+
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.authc.credential.CredentialsMatcher;
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.apache.shiro.biz.authz.principal.ShiroPrincipalRepositoryImpl;
+import org.apache.shiro.crypto.hash.Sha256Hash;
+import org.apache.shiro.util.ByteSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VerifiedCredentialsCacheTest {
+
+	private static AuthenticationInfo account(String password, String salt) {
+		return new SimpleAuthenticationInfo("admin", new Sha256Hash(password, salt, 1024).toHex(), ByteSource.Util.bytes(salt), "realm");
+	}
+
+	private static AuthenticationToken token(String password) {
+		return new UsernamePasswordToken("admin", password);
+	}
+
+	@Test
+	public void testRemembersOnlyTheVerifiedCredentials() {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache();
+		AuthenticationInfo account = account("secret", "salt");
+		Assert.assertFalse(cache.isVerified(token("secret"), account));
+		cache.verified(token("secret"), account);
+		Assert.assertTrue(cache.isVerified(token("secret"), account));
+		Assert.assertFalse(cache.isVerified(token("wrong"), account));
+		Assert.assertFalse(cache.isVerified(new UsernamePasswordToken("other", "secret"), account));
+		// a wrong attempt does not drop the entry
+		Assert.assertTrue(cache.isVerified(token("secret"), account));
+	}
+
+	@Test
+	public void testChangedStoredCredentialsDropTheEntry() {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache();
+		cache.verified(token("secret"), account("secret", "salt"));
+		Assert.assertFalse(cache.isVerified(token("secret"), account("changed", "salt")));
+		Assert.assertEquals(0, cache.size());
+
+		cache.verified(token("secret"), account("secret", "salt"));
+		// same password, new salt: the stored credentials changed all the same
+		Assert.assertFalse(cache.isVerified(token("secret"), account("secret", "pepper")));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testExpiryAndInvalidation() throws Exception {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache();
+		cache.setTtl(20);
+		AuthenticationInfo account = account("secret", "salt");
+		cache.verified(token("secret"), account);
+		Thread.sleep(40);
+		Assert.assertFalse(cache.isVerified(token("secret"), account));
+		Assert.assertEquals(0, cache.size());
+
+		cache.setTtl(60000);
+		cache.verified(token("secret"), account);
+		cache.invalidate("admin");
+		Assert.assertFalse(cache.isVerified(token("secret"), account));
+	}
+
+	@Test
+	public void testBoundedEntries() {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache();
+		cache.setMaxEntries(2);
+		AuthenticationInfo account = account("secret", "salt");
+		cache.verified(new UsernamePasswordToken("a", "secret"), account);
+		cache.verified(new UsernamePasswordToken("b", "secret"), account);
+		cache.verified(new UsernamePasswordToken("c", "secret"), account);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertFalse(cache.isVerified(new UsernamePasswordToken("c", "secret"), account));
+	}
+
+	@Test
+	public void testMatcherSkipsHashingOnlyForVerifiedCredentials() {
+		final int[] hashed = new int[1];
+		CredentialsRetryLimitCredentialsMatcher matcher = new CredentialsRetryLimitCredentialsMatcher() {
+			@Override
+			protected Object hashProvidedCredentials(AuthenticationToken token, AuthenticationInfo info) {
+				hashed[0]++;
+				return super.hashProvidedCredentials(token, info);
+			}
+		};
+		matcher.setHashAlgorithmName(Sha256Hash.ALGORITHM_NAME);
+		matcher.setHashIterations(1024);
+		matcher.setVerifiedCredentialsCache(new VerifiedCredentialsCache());
+		assertMatches(matcher, "secret", account("secret", "salt"), true);
+		assertMatches(matcher, "secret", account("secret", "salt"), true);
+		Assert.assertEquals(1, hashed[0]);
+		assertMatches(matcher, "wrong", account("secret", "salt"), false);
+		Assert.assertEquals(2, hashed[0]);
+		// the old password stops working as soon as the store holds the new one
+		assertMatches(matcher, "secret", account("changed", "salt"), false);
+		Assert.assertEquals(3, hashed[0]);
+	}
+
+	@Test
+	public void testUpdateCredentialsInvalidates() {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache();
+		ShiroPrincipalRepositoryImpl repository = new ShiroPrincipalRepositoryImpl() {
+			@Override
+			public AuthenticationInfo getAuthenticationInfo(AuthenticationToken token) {
+				throw new UnsupportedOperationException();
+			}
+		};
+		repository.setVerifiedCredentialsCache(cache);
+		cache.verified(token("secret"), account("secret", "salt"));
+		ShiroPrincipal principal = new ShiroPrincipal();
+		principal.setUsername("admin");
+		principal.setPassword("changed");
+		repository.updateCredentials(principal, Sha256Hash.ALGORITHM_NAME, 1024);
+		Assert.assertEquals(0, cache.size());
+		Assert.assertNotEquals("changed", principal.getPassword());
+	}
+
+	private static void assertMatches(CredentialsMatcher matcher, String password, AuthenticationInfo account, boolean expected) {
+		Assert.assertEquals(expected, matcher.doCredentialsMatch(token(password), account));
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.near;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.MemoryConstrainedCacheManager;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NearCacheManagerTest {
+
+	private MemoryConstrainedCacheManager remote;
+	private MemoryCacheInvalidationBroadcaster broadcaster;
+	private NearCacheManager node1;
+	private NearCacheManager node2;
+
+	@Before
+	public void setUp() {
+		// 共享的 L2 与广播通道，每个节点拥有独立的 L1
+		remote = new MemoryConstrainedCacheManager();
+		broadcaster = new MemoryCacheInvalidationBroadcaster();
+		node1 = new NearCacheManager(new MemoryConstrainedCacheManager(), remote, broadcaster);
+		node2 = new NearCacheManager(new MemoryConstrainedCacheManager(), remote, broadcaster);
+	}
+
+	@Test
+	public void testReadThroughPopulatesLocal() {
+		Cache<String, String> cache1 = node1.getCache("authz");
+		NearCache<String, String> cache2 = (NearCache<String, String>) node2.<String, String>getCache("authz");
+
+		cache1.put("zhang", "admin");
+		Assert.assertNull(cache2.getLocal().get("zhang"));
+		Assert.assertEquals("admin", cache2.get("zhang"));
+		Assert.assertEquals("admin", cache2.getLocal().get("zhang"));
+	}
+
+	@Test
+	public void testRemoveInvalidatesOtherNodes() {
+		Cache<String, String> cache1 = node1.getCache("authz");
+		NearCache<String, String> cache2 = (NearCache<String, String>) node2.<String, String>getCache("authz");
+
+		cache1.put("zhang", "admin");
+		Assert.assertEquals("admin", cache2.get("zhang"));
+
+		cache1.remove("zhang");
+		Assert.assertNull(cache2.getLocal().get("zhang"));
+		Assert.assertNull(cache2.get("zhang"));
+	}
+
+	@Test
+	public void testPutAndClearInvalidateOtherNodes() {
+		Cache<String, String> cache1 = node1.getCache("authz");
+		NearCache<String, String> cache2 = (NearCache<String, String>) node2.<String, String>getCache("authz");
+
+		cache1.put("zhang", "admin");
+		Assert.assertEquals("admin", cache2.get("zhang"));
+
+		cache1.put("zhang", "guest");
+		Assert.assertEquals("guest", cache2.get("zhang"));
+
+		cache1.clear();
+		Assert.assertNull(cache2.getLocal().get("zhang"));
+		Assert.assertNull(cache2.get("zhang"));
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.redis.serializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.apache.shiro.session.mgt.SimpleOnlineSession;
+import org.apache.shiro.session.mgt.SimpleOnlineSession.OnlineStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.hiwepy.jwt.JwtPayload.RolePair;
+
+public class BinarySerializerTest {
+
+	private final BinarySerializer<Object> serializer = new BinarySerializer<Object>();
+
+	@SuppressWarnings("unchecked")
+	private <T> T roundTrip(T value) throws Exception {
+		return (T) serializer.deserialize(serializer.serialize(value));
+	}
+
+	@Test
+	public void testOnlineSessionRoundTrip() throws Exception {
+		SimpleOnlineSession session = new SimpleOnlineSession("10.0.0.1");
+		session.setId("5f0c-会话-éü");
+		session.setStartTimestamp(new Date(1500000000000L));
+		session.setStopTimestamp(new Date(1500000360000L));
+		session.setLastAccessTime(new Date(1500000300000L));
+		session.setTimeout(-1L);
+		session.setExpired(true);
+		session.setUserAgent("Mozilla/5.0 (Windows NT 10.0) 浏览器");
+		session.setStatus(OnlineStatus.FORCE_LOGOUT);
+		session.setSystemHost("192.168.1.10");
+		Map<Object, Object> attributes = new HashMap<Object, Object>();
+		attributes.put("string", "中文 ✓ 😀");
+		attributes.put("empty", "");
+		attributes.put("null", null);
+		attributes.put("int", Integer.MIN_VALUE);
+		attributes.put("long", Long.MAX_VALUE);
+		attributes.put("double", -0.5d);
+		attributes.put("bool", Boolean.FALSE);
+		attributes.put("date", new Date(0));
+		attributes.put("bytes", new byte[] { 0, -1, 127 });
+		attributes.put("list", new ArrayList<Object>(Arrays.asList("a", null, 1L)));
+		attributes.put("emptyList", new ArrayList<Object>());
+		attributes.put("set", new HashSet<Object>(Arrays.asList("x", "y")));
+		attributes.put("emptySet", new LinkedHashSet<Object>());
+		attributes.put("emptyMap", new LinkedHashMap<Object, Object>());
+		attributes.put("serializable", Collections.singletonList("fallback"));
+		attributes.put(42, "non-string key");
+		session.setAttributes(attributes);
+
+		SimpleOnlineSession copy = roundTrip(session);
+
+		Assert.assertEquals(session.getId(), copy.getId());
+		Assert.assertEquals(session.getStartTimestamp(), copy.getStartTimestamp());
+		Assert.assertEquals(session.getStopTimestamp(), copy.getStopTimestamp());
+		Assert.assertEquals(session.getLastAccessTime(), copy.getLastAccessTime());
+		Assert.assertEquals(session.getTimeout(), copy.getTimeout());
+		Assert.assertEquals(session.isExpired(), copy.isExpired());
+		Assert.assertEquals(session.getHost(), copy.getHost());
+		Assert.assertEquals(session.getUserAgent(), copy.getUserAgent());
+		Assert.assertEquals(session.getStatus(), copy.getStatus());
+		Assert.assertEquals(session.getSystemHost(), copy.getSystemHost());
+		Assert.assertEquals(attributes.size(), copy.getAttributes().size());
+		for (Map.Entry<Object, Object> entry : attributes.entrySet()) {
+			Object actual = copy.getAttributes().get(entry.getKey());
+			if (entry.getValue() instanceof byte[]) {
+				Assert.assertArrayEquals((byte[]) entry.getValue(), (byte[]) actual);
+			} else {
+				Assert.assertEquals(String.valueOf(entry.getKey()), entry.getValue(), actual);
+			}
+		}
+	}
+
+	@Test
+	public void testSessionWithNullsRoundTrip() throws Exception {
+		SimpleOnlineSession session = new SimpleOnlineSession();
+		session.setStartTimestamp(null);
+		session.setLastAccessTime(null);
+		session.setStatus(null);
+		session.setAttributes(null);
+
+		SimpleOnlineSession copy = roundTrip(session);
+
+		Assert.assertNull(copy.getId());
+		Assert.assertNull(copy.getStartTimestamp());
+		Assert.assertNull(copy.getStopTimestamp());
+		Assert.assertNull(copy.getLastAccessTime());
+		Assert.assertNull(copy.getHost());
+		Assert.assertNull(copy.getUserAgent());
+		Assert.assertNull(copy.getStatus());
+		Assert.assertNull(copy.getSystemHost());
+		Assert.assertNull(copy.getAttributes());
+		Assert.assertEquals(session.getTimeout(), copy.getTimeout());
+	}
+
+	@Test
+	public void testPrincipalRoundTrip() throws Exception {
+		ShiroPrincipal principal = new ShiroPrincipal("张三", "$2a$10$hash");
+		principal.setUserid("10001");
+		principal.setUserkey("key-ключ");
+		principal.setUsercode("zs");
+		principal.setSalt("c2FsdA==");
+		principal.setSecret(null);
+		principal.setAlias("");
+		principal.setNickname("小张 😀");
+		principal.setRoleid("r1");
+		principal.setRole("admin");
+		principal.setFaceId(null);
+		List<RolePair> roles = new ArrayList<RolePair>();
+		roles.add(new RolePair("r1", "admin", "管理员"));
+		roles.add(new RolePair("r2", "user", null));
+		principal.setRoles(roles);
+		principal.setPerms(new LinkedHashSet<String>(Arrays.asList("user:read", "user:写")));
+		Map<String, Object> profile = new HashMap<String, Object>();
+		profile.put("age", 30);
+		profile.put("tags", new ArrayList<Object>());
+		profile.put("missing", null);
+		principal.setProfile(profile);
+		principal.setDisabled(false);
+		principal.setLocked(true);
+		principal.setInitial(false);
+		principal.setFace(true);
+
+		ShiroPrincipal copy = roundTrip(principal);
+
+		Assert.assertEquals(principal.getUserid(), copy.getUserid());
+		Assert.assertEquals(principal.getUserkey(), copy.getUserkey());
+		Assert.assertEquals(principal.getUsercode(), copy.getUsercode());
+		Assert.assertEquals(principal.getUsername(), copy.getUsername());
+		Assert.assertEquals(principal.getPassword(), copy.getPassword());
+		Assert.assertEquals(principal.getSalt(), copy.getSalt());
+		Assert.assertNull(copy.getSecret());
+		Assert.assertEquals("", copy.getAlias());
+		Assert.assertEquals(principal.getNickname(), copy.getNickname());
+		Assert.assertEquals(principal.getRoleid(), copy.getRoleid());
+		Assert.assertEquals(principal.getRole(), copy.getRole());
+		Assert.assertNull(copy.getFaceId());
+		Assert.assertEquals(roles.size(), copy.getRoles().size());
+		for (int i = 0; i < roles.size(); i++) {
+			Assert.assertEquals(roles.get(i).getId(), copy.getRoles().get(i).getId());
+			Assert.assertEquals(roles.get(i).getKey(), copy.getRoles().get(i).getKey());
+			Assert.assertEquals(roles.get(i).getValue(), copy.getRoles().get(i).getValue());
+		}
+		Assert.assertEquals(new ArrayList<String>(principal.getPerms()), new ArrayList<String>(copy.getPerms()));
+		Assert.assertEquals(profile, copy.getProfile());
+		Assert.assertEquals(principal.isDisabled(), copy.isDisabled());
+		Assert.assertEquals(principal.isLocked(), copy.isLocked());
+		Assert.assertEquals(principal.isInitial(), copy.isInitial());
+		Assert.assertEquals(principal.isFace(), copy.isFace());
+	}
+
+	@Test
+	public void testPrincipalWithEmptyCollectionsRoundTrip() throws Exception {
+		ShiroPrincipal principal = new ShiroPrincipal();
+		principal.setRoles(new ArrayList<RolePair>());
+		principal.setPerms(new HashSet<String>());
+		principal.setProfile(new HashMap<String, Object>());
+
+		ShiroPrincipal copy = roundTrip(principal);
+
+		Assert.assertNull(copy.getUsername());
+		Assert.assertTrue(copy.getRoles().isEmpty());
+		Assert.assertTrue(copy.getPerms().isEmpty());
+		Assert.assertTrue(copy.getProfile().isEmpty());
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.cache.redis.serializer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.shiro.biz.cache.redis.serializer.CompressionSerializer.Codec;
+import org.crazycake.shiro.exception.SerializationException;
+import org.crazycake.shiro.serializer.ObjectSerializer;
+import org.crazycake.shiro.serializer.StringSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompressionSerializerTest {
+
+	private static String repetitive(int length) {
+		StringBuilder builder = new StringBuilder(length);
+		while (builder.length() < length) {
+			builder.append("shiro-session-attribute;");
+		}
+		return builder.substring(0, length);
+	}
+
+	private static String random(int length) {
+		Random random = new Random(42);
+		StringBuilder builder = new StringBuilder(length);
+		while (builder.length() < length) {
+			builder.append((char) ('!' + random.nextInt(90)));
+		}
+		return builder.toString();
+	}
+
+	@Test
+	public void testRoundTripWithEveryCodec() throws Exception {
+		for (Codec codec : Codec.values()) {
+			CompressionSerializer<String> serializer = new CompressionSerializer<String>(new StringSerializer(), codec, 64);
+			for (String value : new String[] { "", "short", repetitive(10000), random(10000), "中文 ✓ 😀" + repetitive(500) }) {
+				byte[] bytes = serializer.serialize(value);
+				Assert.assertEquals(codec + " " + value.length(), value, serializer.deserialize(bytes));
+			}
+		}
+	}
+
+	@Test
+	public void testHeaders() throws Exception {
+		String value = repetitive(10000);
+		byte[] raw = new StringSerializer().serialize(value);
+		byte[] fast = new CompressionSerializer<String>(new StringSerializer(), Codec.FAST, 64).serialize(value);
+		byte[] deflate = new CompressionSerializer<String>(new StringSerializer(), Codec.DEFLATE, 64).serialize(value);
+		Assert.assertEquals(Codec.FAST.getHeader(), fast[0]);
+		Assert.assertEquals(Codec.DEFLATE.getHeader(), deflate[0]);
+		Assert.assertTrue(fast.length < raw.length && deflate.length < raw.length);
+		// below the threshold and incompressible payloads are stored as they are
+		Assert.assertEquals(Codec.RAW.getHeader(), new CompressionSerializer<String>(new StringSerializer(), Codec.FAST, 64).serialize("short")[0]);
+		Assert.assertEquals(Codec.RAW.getHeader(), new CompressionSerializer<String>(new StringSerializer(), Codec.DEFLATE, 64).serialize(random(200))[0]);
+		// the header decides, not the configured codec
+		CompressionSerializer<String> reader = new CompressionSerializer<String>(new StringSerializer(), Codec.RAW, 64);
+		Assert.assertEquals(value, reader.deserialize(fast));
+		Assert.assertEquals(value, reader.deserialize(deflate));
+	}
+
+	@Test
+	public void testLegacyPayloadWithoutHeader() throws Exception {
+		CompressionSerializer<Object> serializer = new CompressionSerializer<Object>(new ObjectSerializer(), Codec.FAST, 64);
+		byte[] legacy = new ObjectSerializer().serialize(repetitive(100));
+		Assert.assertEquals(repetitive(100), serializer.deserialize(legacy));
+		serializer.setLegacyFallback(false);
+		try {
+			serializer.deserialize(legacy);
+			Assert.fail();
+		} catch (SerializationException expected) {
+		}
+	}
+
+	@Test
+	public void testRejectsInvalidLength() throws Exception {
+		for (Codec codec : new Codec[] { Codec.FAST, Codec.DEFLATE }) {
+			CompressionSerializer<String> serializer = new CompressionSerializer<String>(new StringSerializer(), codec, 64);
+			byte[] bytes = serializer.serialize(repetitive(10000));
+			assertRejected(serializer, withLength(bytes, -1));
+			assertRejected(serializer, withLength(bytes, Integer.MAX_VALUE));
+			// more than the format can expand the payload to
+			assertRejected(serializer, withLength(bytes, (bytes.length - 5) * 2000));
+			serializer.setMaxDecompressedLength(5000);
+			assertRejected(serializer, bytes);
+			assertRejected(serializer, Arrays.copyOf(bytes, 3));
+		}
+	}
+
+	@Test
+	public void testRejectsCorruptPayload() throws Exception {
+		for (Codec codec : new Codec[] { Codec.FAST, Codec.DEFLATE }) {
+			CompressionSerializer<String> serializer = new CompressionSerializer<String>(new StringSerializer(), codec, 64);
+			byte[] bytes = serializer.serialize(repetitive(10000));
+			assertRejected(serializer, Arrays.copyOf(bytes, bytes.length / 2));
+			assertRejected(serializer, withLength(bytes, 10001));
+			byte[] garbage = bytes.clone();
+			Arrays.fill(garbage, 5, garbage.length, (byte) 0x7F);
+			assertRejected(serializer, garbage);
+		}
+	}
+
+	private static byte[] withLength(byte[] bytes, int length) {
+		byte[] copy = bytes.clone();
+		copy[1] = (byte) (length >>> 24);
+		copy[2] = (byte) (length >>> 16);
+		copy[3] = (byte) (length >>> 8);
+		copy[4] = (byte) length;
+		return copy;
+	}
+
+	private static void assertRejected(CompressionSerializer<String> serializer, byte[] bytes) {
+		try {
+			String value = serializer.deserialize(bytes);
+			Assert.fail("Accepted " + (value != null ? value.length() : 0) + " chars");
+		} catch (SerializationException expected) {
+		}
+	}
+
+}
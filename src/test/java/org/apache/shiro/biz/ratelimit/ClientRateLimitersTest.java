@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClientRateLimitersTest {
+
+	@Test
+	public void clientsGetSeparateBuckets() {
+		ClientRateLimiters limiters = new ClientRateLimiters(1, 1);
+		try {
+			Assert.assertTrue(limiters.tryAcquire("a"));
+			Assert.assertFalse(limiters.tryAcquire("a"));
+			Assert.assertTrue(limiters.tryAcquire("b"));
+			Assert.assertTrue(limiters.tryAcquire(null));
+			Assert.assertFalse(limiters.tryAcquire(null));
+			Assert.assertEquals(2, limiters.size());
+		} finally {
+			limiters.close();
+		}
+	}
+
+	@Test
+	public void idleBucketsAreSweptInTheBackground() throws InterruptedException {
+		ClientRateLimiters limiters = new ClientRateLimiters(1000, 1, 50, 100);
+		try {
+			limiters.tryAcquire("a");
+			limiters.tryAcquire("b");
+			Assert.assertEquals(2, limiters.size());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (limiters.size() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			Assert.assertEquals(0, limiters.size());
+		} finally {
+			limiters.close();
+		}
+	}
+
+}
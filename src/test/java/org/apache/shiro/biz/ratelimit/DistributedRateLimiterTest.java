@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DistributedRateLimiterTest {
+
+	/**
+	 * Records the leased windows, flagging a lease of a window older than one already leased.
+	 */
+	static final class RecordingStore implements PermitStore {
+
+		final PermitStore delegate = new MemoryPermitStore();
+		final ConcurrentHashMap<Long, AtomicLong> granted = new ConcurrentHashMap<Long, AtomicLong>();
+		final AtomicLong latest = new AtomicLong(Long.MIN_VALUE);
+		final AtomicBoolean wentBack = new AtomicBoolean();
+
+		@Override
+		public long lease(String key, long window, long requested, long limit, long windowMillis) {
+			if (latest.getAndAccumulate(window, Math::max) > window) {
+				wentBack.set(true);
+			}
+			long grant = delegate.lease(key, window, requested, limit, windowMillis);
+			granted.computeIfAbsent(window, w -> new AtomicLong()).addAndGet(grant);
+			return grant;
+		}
+
+	}
+
+	@Test
+	public void limitsEachWindow() {
+		RecordingStore store = new RecordingStore();
+		DistributedRateLimiter limiter = new DistributedRateLimiter(store, "api", 100, 1000, 0.5);
+		int granted = 0;
+		for (int i = 0; i < 150; i++) {
+			granted += limiter.tryAcquire(7) ? 1 : 0;
+		}
+		Assert.assertEquals(100, granted);
+		Assert.assertTrue(limiter.tryAcquire(8));
+	}
+
+	@Test
+	public void staleCallersUseTheCurrentLease() {
+		RecordingStore store = new RecordingStore();
+		DistributedRateLimiter limiter = new DistributedRateLimiter(store, "api", 100, 1000, 0.5);
+		Assert.assertTrue(limiter.tryAcquire(7));
+		Assert.assertTrue(limiter.tryAcquire(8));
+		Assert.assertTrue(limiter.tryAcquire(7));
+		Assert.assertFalse(store.wentBack.get());
+		Assert.assertEquals(1, store.granted.get(7L).get());
+		Assert.assertEquals(store.granted.get(8L).get(), limiter.getLeased());
+	}
+
+	@Test
+	public void concurrentRolloverNeverGoesBack() throws InterruptedException {
+		final RecordingStore store = new RecordingStore();
+		final DistributedRateLimiter limiter = new DistributedRateLimiter(store, "api", 1000, 1000, 0.1);
+		final int threads = 8;
+		final int windows = 50;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicLong admitted = new AtomicLong();
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < windows * 200; i++) {
+							long window = i / 200;
+							// 部分线程在窗口切换后仍带着上一窗口的时间
+							if ((i + offset) % 3 == 0 && window > 0) {
+								window--;
+							}
+							if (limiter.tryAcquire(window)) {
+								admitted.incrementAndGet();
+							}
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		done.await();
+		Assert.assertFalse(store.wentBack.get());
+		long leased = 0;
+		for (AtomicLong granted : store.granted.values()) {
+			Assert.assertTrue(granted.get() <= limiter.getLimit());
+			leased += granted.get();
+		}
+		Assert.assertTrue(admitted.get() <= leased);
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GcraRateLimiterTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void allowsTheBurstThenTheSteadyRate() {
+		GcraRateLimiter limiter = new GcraRateLimiter(10, 3, 0);
+		Assert.assertTrue(limiter.tryAcquire(0));
+		Assert.assertTrue(limiter.tryAcquire(0));
+		Assert.assertTrue(limiter.tryAcquire(0));
+		Assert.assertFalse(limiter.tryAcquire(0));
+		Assert.assertFalse(limiter.tryAcquire(SECOND / 10 - 1));
+		Assert.assertTrue(limiter.tryAcquire(SECOND / 10));
+		Assert.assertFalse(limiter.tryAcquire(SECOND / 10));
+		Assert.assertEquals(10d, limiter.getPermitsPerSecond(), 0.001);
+		Assert.assertEquals(3, limiter.getBurst());
+	}
+
+	@Test
+	public void refillsUpToTheBurstOnly() {
+		GcraRateLimiter limiter = new GcraRateLimiter(10, 2, 0);
+		Assert.assertTrue(limiter.tryAcquire(0));
+		Assert.assertTrue(limiter.tryAcquire(10 * SECOND));
+		Assert.assertTrue(limiter.tryAcquire(10 * SECOND));
+		Assert.assertFalse(limiter.tryAcquire(10 * SECOND));
+	}
+
+	@Test
+	public void becomesIdleOnceFull() {
+		GcraRateLimiter limiter = new GcraRateLimiter(10, 1, 0);
+		Assert.assertTrue(limiter.tryAcquire(0));
+		Assert.assertFalse(limiter.isIdle(SECOND / 10, SECOND));
+		Assert.assertTrue(limiter.isIdle(SECOND / 10 + SECOND + 1, SECOND));
+	}
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.session.mgt;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.shiro.biz.cache.redis.serializer.BinarySerializer;
+import org.apache.shiro.biz.session.mgt.eis.PartialUpdateSessionDAO;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SimpleOnlineSession;
+import org.apache.shiro.session.mgt.eis.SessionDAO;
+import org.crazycake.shiro.exception.SerializationException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SessionTouchCoalescerTest {
+
+	private static final long TIMEOUT = 100000L;
+	private static final long START = System.currentTimeMillis();
+
+	/**
+	 * Stores serialized copies like a remote store does, every read returns a new instance.
+	 */
+	private static class SerializingSessionDAO implements SessionDAO {
+
+		private final BinarySerializer<Object> serializer = new BinarySerializer<Object>();
+		private final Map<Serializable, byte[]> store = new ConcurrentHashMap<Serializable, byte[]>();
+		int reads;
+		int updates;
+
+		private byte[] write(Session session) {
+			try {
+				return serializer.serialize(session);
+			} catch (SerializationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private Session read(byte[] bytes) {
+			try {
+				return (Session) serializer.deserialize(bytes);
+			} catch (SerializationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public Serializable create(Session session) {
+			store.put(session.getId(), write(session));
+			return session.getId();
+		}
+
+		@Override
+		public Session readSession(Serializable sessionId) throws UnknownSessionException {
+			reads++;
+			byte[] bytes = store.get(sessionId);
+			return bytes != null ? read(bytes) : null;
+		}
+
+		@Override
+		public void update(Session session) throws UnknownSessionException {
+			updates++;
+			store.put(session.getId(), write(session));
+		}
+
+		@Override
+		public void delete(Session session) {
+			store.remove(session.getId());
+		}
+
+		@Override
+		public Collection<Session> getActiveSessions() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	private static class PartialSessionDAO extends SerializingSessionDAO implements PartialUpdateSessionDAO {
+
+		Date lastAccessTime;
+
+		@Override
+		public void updateLastAccessTime(Session session) throws UnknownSessionException {
+			lastAccessTime = session.getLastAccessTime();
+		}
+
+		@Override
+		public void updateAttributes(Session session, Collection<Object> changedKeys) throws UnknownSessionException {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	private SessionTouchCoalescer coalescer;
+
+	private SessionTouchCoalescer coalescer(SessionDAO sessionDAO) {
+		coalescer = new SessionTouchCoalescer(sessionDAO);
+		// flushed by the tests only
+		coalescer.setFlushInterval(3600000L);
+		return coalescer;
+	}
+
+	@After
+	public void destroy() throws Exception {
+		if (coalescer != null) {
+			coalescer.destroy();
+		}
+	}
+
+	private static SimpleOnlineSession session(String id, long lastAccessTime) {
+		SimpleOnlineSession session = new SimpleOnlineSession("127.0.0.1");
+		session.setId(id);
+		session.setTimeout(TIMEOUT);
+		session.setLastAccessTime(new Date(lastAccessTime));
+		return session;
+	}
+
+	private static SimpleOnlineSession at(SimpleOnlineSession session, long lastAccessTime) {
+		session.setLastAccessTime(new Date(lastAccessTime));
+		return session;
+	}
+
+	@Test
+	public void testTouchesBelowThresholdAreAbsorbed() {
+		SerializingSessionDAO dao = new SerializingSessionDAO();
+		SessionTouchCoalescer coalescer = coalescer(dao);
+		coalescer.setTouchThreshold(0.1d);
+		SimpleOnlineSession session = session("s1", START);
+		dao.create(session);
+		coalescer.synced(session);
+
+		// less than timeout * threshold = 10s since the stored access time
+		coalescer.touch(at(session, START + 5000L));
+		coalescer.touch(at(session, START + 9999L));
+		Assert.assertEquals(0, coalescer.getPendingCount());
+		Assert.assertEquals(2, coalescer.getAbsorbedCount());
+
+		coalescer.touch(at(session, START + 10000L));
+		coalescer.touch(at(session, START + 12000L));
+		Assert.assertEquals(1, coalescer.getPendingCount());
+		Assert.assertEquals(3, coalescer.getAbsorbedCount());
+
+		Assert.assertEquals(1, coalescer.flush());
+		Assert.assertEquals(START + 12000L, dao.readSession("s1").getLastAccessTime().getTime());
+		// the flushed time is the new reference
+		coalescer.touch(at(session, START + 20000L));
+		Assert.assertEquals(0, coalescer.getPendingCount());
+	}
+
+	@Test
+	public void testFlushOnlyMovesTheStoredAccessTime() {
+		SerializingSessionDAO dao = new SerializingSessionDAO();
+		SessionTouchCoalescer coalescer = coalescer(dao);
+		SimpleOnlineSession touched = session("s1", START);
+		dao.create(touched);
+		coalescer.touch(at(touched, START + 50000L));
+
+		// another node wrote an attribute after the touch
+		SimpleOnlineSession other = (SimpleOnlineSession) dao.readSession("s1");
+		other.setAttribute("written", "later");
+		dao.update(other);
+
+		dao.reads = dao.updates = 0;
+		Assert.assertEquals(1, coalescer.flush());
+		Assert.assertEquals(1, dao.reads);
+		Assert.assertEquals(1, dao.updates);
+		Session stored = dao.readSession("s1");
+		Assert.assertEquals("later", stored.getAttribute("written"));
+		Assert.assertEquals(START + 50000L, stored.getLastAccessTime().getTime());
+	}
+
+	@Test
+	public void testFlushNeverMovesTheStoredAccessTimeBack() {
+		SerializingSessionDAO dao = new SerializingSessionDAO();
+		SessionTouchCoalescer coalescer = coalescer(dao);
+		SimpleOnlineSession session = session("s1", START);
+		dao.create(session);
+		coalescer.touch(at(session("s1", START), START + 50000L));
+		dao.update(session("s1", START + 60000L));
+
+		dao.updates = 0;
+		Assert.assertEquals(0, coalescer.flush());
+		Assert.assertEquals(0, dao.updates);
+		Assert.assertEquals(START + 60000L, dao.readSession("s1").getLastAccessTime().getTime());
+	}
+
+	@Test
+	public void testSyncedKeepsNewerPendingTouch() {
+		SerializingSessionDAO dao = new SerializingSessionDAO();
+		SessionTouchCoalescer coalescer = coalescer(dao);
+		dao.create(session("s1", START));
+		coalescer.touch(session("s1", START + 50000L));
+
+		// a full write of an older copy finishing after the touch does not cover it
+		coalescer.synced(session("s1", START + 40000L));
+		Assert.assertEquals(1, coalescer.getPendingCount());
+		// a full write of the same or a later access time does
+		coalescer.synced(session("s1", START + 50000L));
+		Assert.assertEquals(0, coalescer.getPendingCount());
+		Assert.assertEquals(0, coalescer.flush());
+	}
+
+	@Test
+	public void testFlushUsesPartialUpdate() {
+		PartialSessionDAO dao = new PartialSessionDAO();
+		SessionTouchCoalescer coalescer = coalescer(dao);
+		dao.create(session("s1", START));
+		coalescer.touch(session("s1", START + 50000L));
+		dao.reads = dao.updates = 0;
+		Assert.assertEquals(1, coalescer.flush());
+		Assert.assertEquals(0, dao.reads);
+		Assert.assertEquals(0, dao.updates);
+		Assert.assertEquals(START + 50000L, dao.lastAccessTime.getTime());
+	}
+
+	@Test
+	public void testDeletedSessionIsDropped() {
+		SerializingSessionDAO dao = new SerializingSessionDAO();
+		SessionTouchCoalescer coalescer = coalescer(dao);
+		coalescer.touch(session("gone", START));
+		Assert.assertEquals(0, coalescer.flush());
+		Assert.assertEquals(0, coalescer.getPendingCount());
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.session.mgt.eis;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SimpleOnlineSession;
+import org.apache.shiro.session.mgt.eis.MemorySessionDAO;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DirtyCheckingSessionDAOTest {
+
+	private static class RecordingSessionDAO extends MemorySessionDAO implements PartialUpdateSessionDAO {
+
+		private final boolean partial;
+		private final List<String> writes = new ArrayList<String>();
+		private boolean failing;
+
+		RecordingSessionDAO(boolean partial) {
+			this.partial = partial;
+		}
+
+		private void write(String write) {
+			if (failing) {
+				throw new IllegalStateException("store unavailable");
+			}
+			writes.add(write);
+		}
+
+		@Override
+		public void update(Session session) throws UnknownSessionException {
+			write("update");
+			super.update(session);
+		}
+
+		@Override
+		public void updateLastAccessTime(Session session) throws UnknownSessionException {
+			Assert.assertTrue(partial);
+			write("lastAccessTime");
+		}
+
+		@Override
+		public void updateAttributes(Session session, Collection<Object> changedKeys) throws UnknownSessionException {
+			Assert.assertTrue(partial);
+			write("attributes" + new HashSet<Object>(changedKeys));
+		}
+
+	}
+
+	private RecordingSessionDAO store;
+	private DirtyCheckingSessionDAO dao;
+
+	private Serializable create(boolean partial) {
+		store = new RecordingSessionDAO(partial);
+		dao = new DirtyCheckingSessionDAO(partial ? store : new MemorySessionDAO() {
+			@Override
+			public void update(Session session) throws UnknownSessionException {
+				store.update(session);
+			}
+		});
+		return dao.create(new SimpleOnlineSession("127.0.0.1"));
+	}
+
+	@Test
+	public void testUnchangedSessionIsNotWritten() {
+		Serializable id = create(false);
+		Session session = dao.readSession(id);
+		session.getAttribute("any");
+		dao.update(session);
+		dao.update(dao.readSession(id));
+		Assert.assertEquals(new ArrayList<String>(), store.writes);
+	}
+
+	@Test
+	public void testChangedSessionIsWrittenOnce() {
+		Serializable id = create(false);
+		Session session = dao.readSession(id);
+		session.setAttribute("user", "admin");
+		dao.update(session);
+		dao.update(session);
+		Assert.assertEquals(Arrays.asList("update"), store.writes);
+	}
+
+	@Test
+	public void testFailedWriteKeepsFlags() {
+		Serializable id = create(false);
+		SimpleOnlineSession session = (SimpleOnlineSession) dao.readSession(id);
+		session.setAttribute("user", "admin");
+		store.failing = true;
+		try {
+			dao.update(session);
+			Assert.fail();
+		} catch (IllegalStateException expected) {
+		}
+		Assert.assertTrue(session.isAttributeChanged());
+		store.failing = false;
+		dao.update(session);
+		Assert.assertFalse(session.isAttributeChanged());
+		Assert.assertEquals(Arrays.asList("update"), store.writes);
+	}
+
+	@Test
+	public void testPartialUpdates() {
+		Serializable id = create(true);
+		Session session = dao.readSession(id);
+		session.touch();
+		dao.update(session);
+		session.setAttribute("a", 1);
+		session.removeAttribute("b");
+		dao.update(session);
+		session.setTimeout(1000L);
+		dao.update(session);
+		Assert.assertEquals(Arrays.asList("lastAccessTime", "attributes[a]", "update"), store.writes);
+	}
+
+	@Test
+	public void testInPlaceChangesAreNotDetected() {
+		Serializable id = create(false);
+		Session session = dao.readSession(id);
+		List<String> roles = new ArrayList<String>();
+		session.setAttribute("roles", roles);
+		dao.update(session);
+		roles.add("admin");
+		dao.update(session);
+		Assert.assertEquals(1, store.writes.size());
+		// setting the attribute again marks it
+		session.setAttribute("roles", roles);
+		dao.update(session);
+		Assert.assertEquals(2, store.writes.size());
+	}
+
+}
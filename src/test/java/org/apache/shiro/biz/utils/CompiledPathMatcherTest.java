@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018 (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.shiro.util.AntPathMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompiledPathMatcherTest {
+
+	private static final List<String> PATTERNS = Arrays.asList(
+			"/", "/*", "/**", "**", "*",
+			"/login", "/login/", "/log?n", "/login*", "/*.html", "/static/*.js", "/s?atic/**",
+			"/api/**", "/api/**/", "/api/**/users", "/api/*/users/**", "/api/**/*.json", "/a/**/b/**/c",
+			"/user/?/detail", "/user/*/", "/docs/**/index.html",
+			"api/**", "api/*", "login", "*.html", "**/users");
+
+	private static final List<String> PATHS = Arrays.asList(
+			"", "/", "//", "/login", "/login/", "/logon", "/login.do", "/index.html", "/static/app.js",
+			"/static/js/app.js", "/stattic/x", "/api", "/api/", "/api/users", "/api/v1/users", "/api/v1/users/",
+			"/api/v1/users/1", "/api/v1/v2/users", "/api/v1/data.json", "/api/data.json", "/a/b/c", "/a/x/b/y/c",
+			"/a/b/x/c/d", "/user/1/detail", "/user/12/detail", "/user/1/", "/user/1", "/docs/index.html",
+			"/docs/a/b/index.html", "api/users", "api", "login", "index.html", "x/users", "users");
+
+	@Test
+	public void testMatchAllAgreesWithAntPathMatcher() {
+		AntPathMatcher ant = new AntPathMatcher();
+		CompiledPathMatcher compiled = CompiledPathMatcher.compile(PATTERNS);
+		for (String path : PATHS) {
+			List<String> expected = new ArrayList<String>();
+			for (String pattern : PATTERNS) {
+				if (ant.match(pattern, path)) {
+					expected.add(pattern);
+				}
+			}
+			Assert.assertEquals("path [" + path + "]", expected, compiled.matchAll(path));
+			Assert.assertEquals("path [" + path + "]", expected.isEmpty() ? null : expected.get(0), compiled.matchFirst(path));
+		}
+	}
+
+	@Test
+	public void testVariablesAreNotCompilable() {
+		Assert.assertFalse(CompiledPathMatcher.isCompilable("/user/{id}"));
+		Assert.assertTrue(CompiledPathMatcher.isCompilable(PATTERNS));
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.net.InetAddresses;
+
+public class IpPrefixTrieTest {
+
+	private static final List<String> ADDRESSES = Arrays.asList(
+			"0.0.0.0", "10.1.2.3", "255.255.255.255", "192.168.001.1",
+			"::", "::1", "1::", "2001:db8::8a2e:370:7334", "2001:0db8:0000:0000:0000:ff00:0042:8329",
+			"fe80::1%eth0", "::ffff:10.1.2.3", "64:ff9b::192.0.2.33", "1:2:3:4:5:6:7:8",
+			"", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3", "1.2.3.-1", "a.b.c.d", " 10.1.2.3",
+			":", ":::", "1:::2", "1::2::3", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7", "12345::", "g::1",
+			"::1.2.3", "::1.2.3.4.5", "1:2:3:4:5:6:7:1.2.3.4", "1::2:", ":1::2", "fe80::1%", "%eth0");
+
+	@Test
+	public void lookupParserAgreesWithInetAddresses() {
+		IpPrefixTrie<String> any = new IpPrefixTrie<String>();
+		any.put("0.0.0.0/0", "v4");
+		any.put("::/0", "v6");
+		for (String address : ADDRESSES) {
+			boolean valid = InetAddresses.isInetAddress(address);
+			Assert.assertEquals(address, valid, any.lookup(address) != null);
+			if (valid) {
+				IpPrefixTrie<String> exact = new IpPrefixTrie<String>();
+				exact.put(address, address);
+				Assert.assertEquals(address, exact.lookup(address));
+			}
+		}
+	}
+
+	@Test
+	public void longestPrefixWins() {
+		IpPrefixTrie<String> trie = new IpPrefixTrie<String>();
+		trie.put("10.0.0.0/8", "wide");
+		trie.put("10.1.0.0/16", "narrow");
+		trie.put("10.1.2.3", "host");
+		trie.put("2001:db8::/32", "doc");
+		trie.put("2001:db8:1::/48", "doc-1");
+		Assert.assertEquals("host", trie.lookup("10.1.2.3"));
+		Assert.assertEquals("narrow", trie.lookup("10.1.2.4"));
+		Assert.assertEquals("wide", trie.lookup("10.2.0.1"));
+		Assert.assertNull(trie.lookup("11.0.0.1"));
+		Assert.assertEquals("doc-1", trie.lookup("2001:db8:1::5"));
+		Assert.assertEquals("doc", trie.lookup("2001:db8:2::5"));
+		Assert.assertNull(trie.lookup("2001:db9::1"));
+		// 同一前缀后放入的规则覆盖先前的规则
+		trie.put("10.0.0.0/8", "replaced");
+		Assert.assertEquals("replaced", trie.lookup("10.2.0.1"));
+	}
+
+	@Test
+	public void firstInOrderWins() {
+		IpPrefixTrie<Integer> trie = new IpPrefixTrie<Integer>();
+		trie.put("10.0.0.0/8", 0);
+		trie.put("10.1.0.0/16", 1);
+		trie.put("0.0.0.0/0", 2);
+		Assert.assertEquals(Integer.valueOf(0), trie.lookup("10.1.2.3", natural()));
+		Assert.assertEquals(Integer.valueOf(1), trie.lookup("10.1.2.3"));
+		Assert.assertEquals(Integer.valueOf(2), trie.lookup("11.0.0.1", natural()));
+	}
+
+	@Test
+	public void mappedAddressesMatchIPv4Rules() {
+		IpPrefixTrie<String> trie = new IpPrefixTrie<String>();
+		trie.put("192.168.0.0/16", "lan");
+		trie.put("::ffff:10.0.0.0/104", "mapped");
+		Assert.assertEquals("lan", trie.lookup("::ffff:192.168.1.1"));
+		Assert.assertEquals("lan", trie.lookup("::FFFF:c0a8:0101"));
+		Assert.assertEquals("mapped", trie.lookup("10.9.9.9"));
+		Assert.assertEquals("mapped", trie.lookup("::ffff:10.9.9.9"));
+		Assert.assertNull(trie.lookup("::192.168.1.1"));
+	}
+
+	@Test
+	public void invalidRulesAreRejected() {
+		IpPrefixTrie<String> trie = new IpPrefixTrie<String>();
+		for (String rule : Arrays.asList("10.0.0.0/33", "10.0.0.0/-1", "10.0.0.0/x", "::/129", "1::2::3/64",
+				"256.0.0.0/8", "1.2.3/24", "localhost", "", "/8")) {
+			try {
+				trie.put(rule, rule);
+				Assert.fail(rule);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		Assert.assertNull(trie.lookup("10.0.0.1"));
+		Assert.assertNull(trie.lookup(null));
+	}
+
+	private static java.util.Comparator<Integer> natural() {
+		return new java.util.Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return o1.compareTo(o2);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.biz.utils;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RemoteAddrResolverTest {
+
+	static HttpServletRequest request(final String remoteAddr, String... headers) {
+		final Map<String, String> values = new HashMap<String, String>();
+		for (int i = 0; i < headers.length; i += 2) {
+			values.put(headers[i].toLowerCase(), headers[i + 1]);
+		}
+		return (HttpServletRequest) Proxy.newProxyInstance(RemoteAddrResolverTest.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+					if ("getRemoteAddr".equals(method.getName())) {
+						return remoteAddr;
+					}
+					if ("getHeader".equals(method.getName())) {
+						return values.get(((String) args[0]).toLowerCase());
+					}
+					return null;
+				});
+	}
+
+	private static RemoteAddrResolver trusting(String... proxies) {
+		RemoteAddrResolver resolver = new RemoteAddrResolver();
+		resolver.setTrustedProxies(Arrays.asList(proxies));
+		return resolver;
+	}
+
+	@Test
+	public void testIgnoresForwardedHeaderByDefault() {
+		RemoteAddrResolver resolver = new RemoteAddrResolver();
+		Assert.assertEquals("203.0.113.7", resolver.resolve(request("203.0.113.7", "X-Forwarded-For", "198.51.100.1")));
+		Assert.assertEquals("203.0.113.7", resolver.resolve(request("203.0.113.7")));
+	}
+
+	@Test
+	public void testIgnoresForwardedHeaderFromUntrustedPeer() {
+		RemoteAddrResolver resolver = trusting("10.0.0.1");
+		Assert.assertEquals("203.0.113.7", resolver.resolve(request("203.0.113.7", "X-Forwarded-For", "198.51.100.1")));
+	}
+
+	@Test
+	public void testSkipsTrustedProxiesFromTheRight() {
+		RemoteAddrResolver resolver = trusting("10.0.0.1", "10.0.0.2");
+		Assert.assertEquals("198.51.100.1", resolver.resolve(request("10.0.0.1", "X-Forwarded-For", "198.51.100.1")));
+		Assert.assertEquals("198.51.100.1", resolver.resolve(request("10.0.0.1", "X-Forwarded-For", "198.51.100.1, 10.0.0.2")));
+		// whatever the client put on the left is not trusted
+		Assert.assertEquals("198.51.100.1", resolver.resolve(request("10.0.0.1", "X-Forwarded-For", "1.2.3.4, 198.51.100.1, 10.0.0.2")));
+		Assert.assertEquals("198.51.100.1", resolver.resolve(request("10.0.0.1", "X-Forwarded-For", " , 198.51.100.1 ,")));
+	}
+
+	@Test
+	public void testFallsBackToPeerWithoutUsableHeader() {
+		RemoteAddrResolver resolver = trusting("10.0.0.1", "10.0.0.2");
+		Assert.assertEquals("10.0.0.1", resolver.resolve(request("10.0.0.1")));
+		Assert.assertEquals("10.0.0.1", resolver.resolve(request("10.0.0.1", "X-Forwarded-For", "  ")));
+		Assert.assertEquals("10.0.0.1", resolver.resolve(request("10.0.0.1", "X-Forwarded-For", "10.0.0.2, 10.0.0.1")));
+	}
+
+	@Test
+	public void testCustomHeader() {
+		RemoteAddrResolver resolver = trusting("10.0.0.1");
+		resolver.setForwardedHeader("X-Real-IP");
+		Assert.assertEquals("198.51.100.1", resolver.resolve(request("10.0.0.1", "X-Real-IP", "198.51.100.1", "X-Forwarded-For", "1.2.3.4")));
+		resolver.setTrustedProxies(null);
+		Assert.assertEquals("10.0.0.1", resolver.resolve(request("10.0.0.1", "X-Real-IP", "198.51.100.1")));
+	}
+
+}
@@ -0,0 +1,43 @@
+package org.apache.shiro.biz.web.filter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpServletRequestLimitWithIPFilterTest {
+
+	static HttpServletRequestLimitWithIPFilter filter(String... patterns) {
+		Map<String, String> definitions = new LinkedHashMap<String, String>();
+		for (String pattern : patterns) {
+			definitions.put(pattern, "10");
+		}
+		HttpServletRequestLimitWithIPFilter filter = new HttpServletRequestLimitWithIPFilter();
+		filter.setLimiterDefinitionMap(definitions);
+		return filter;
+	}
+
+	@Test
+	public void firstDefinedRuleWinsByDefault() {
+		HttpServletRequestLimitWithIPFilter filter = filter("10.*", "10.1.2.?", "10.1.0.0/16", "*");
+		Assert.assertEquals("10.*", filter.getMatchedPattern("10.1.2.3"));
+		Assert.assertEquals("*", filter.getMatchedPattern("11.1.2.3"));
+		Assert.assertEquals("*", filter.getMatchedPattern("2001:db8::1"));
+		Assert.assertNull(filter.getMatchedPattern("not-an-ip"));
+
+		filter = filter("10.1.2.?", "10.*");
+		Assert.assertEquals("10.1.2.?", filter.getMatchedPattern("10.1.2.3"));
+		Assert.assertEquals("10.*", filter.getMatchedPattern("10.1.2.30"));
+	}
+
+	@Test
+	public void longestPrefixWinsWhenEnabled() {
+		HttpServletRequestLimitWithIPFilter filter = filter("10.1.2.?", "10.*", "10.1.0.0/16", "*");
+		filter.setLongestPrefixMatch(true);
+		Assert.assertEquals("10.1.0.0/16", filter.getMatchedPattern("10.1.2.3"));
+		Assert.assertEquals("10.*", filter.getMatchedPattern("10.2.2.3"));
+		Assert.assertEquals("*", filter.getMatchedPattern("11.1.2.3"));
+	}
+
+}
@@ -0,0 +1,85 @@
+package org.apache.shiro.biz.web.filter;
+
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.shiro.biz.web.filter.mgt.CustomDefaultFilterChainManager;
+import org.apache.shiro.biz.web.filter.mgt.CustomPathMatchingFilterChainResolver;
+import org.apache.shiro.web.filter.authc.AnonymousFilter;
+import org.apache.shiro.web.filter.mgt.PathMatchingFilterChainResolver;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpServletShiroFilterTest {
+
+	static HttpServletRequest request(final String uri) {
+		return (HttpServletRequest) Proxy.newProxyInstance(HttpServletShiroFilterTest.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getServletPath":
+					case "getRequestURI":
+						return uri;
+					case "getContextPath":
+						return "";
+					default:
+						return null;
+					}
+				});
+	}
+
+	static Map<String, String> definitions(String... pairs) {
+		Map<String, String> definitions = new LinkedHashMap<String, String>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			definitions.put(pairs[i], pairs[i + 1]);
+		}
+		return definitions;
+	}
+
+	static HttpServletShiroFilter filter(CustomDefaultFilterChainManager manager, boolean combined) {
+		HttpServletShiroFilter filter = new HttpServletShiroFilter();
+		if (combined) {
+			CustomPathMatchingFilterChainResolver resolver = new CustomPathMatchingFilterChainResolver();
+			resolver.setCustomDefaultFilterChainManager(manager);
+			filter.setFilterChainResolver(resolver);
+		} else {
+			PathMatchingFilterChainResolver resolver = new PathMatchingFilterChainResolver();
+			resolver.setFilterChainManager(manager);
+			filter.setFilterChainResolver(resolver);
+		}
+		filter.setBypassAnonymousChains(true);
+		return filter;
+	}
+
+	@Test
+	public void anonymousChainsFollowReloads() {
+		CustomDefaultFilterChainManager manager = new CustomDefaultFilterChainManager();
+		manager.addFilter("public", new AnonymousFilter());
+		manager.reload(definitions("/public/**", " anon ", "/static/**", "public", "/api/**", "authc"));
+		HttpServletShiroFilter filter = filter(manager, true);
+		Assert.assertTrue(filter.isBypassed(request("/public/a")));
+		Assert.assertTrue(filter.isBypassed(request("/static/a.js")));
+		Assert.assertFalse(filter.isBypassed(request("/api/a")));
+		Assert.assertFalse(filter.isBypassed(request("/other")));
+
+		manager.reload(definitions("/public/**", "authc", "/static/**", "anon"));
+		Assert.assertFalse(filter.isBypassed(request("/public/a")));
+		Assert.assertTrue(filter.isBypassed(request("/static/a.js")));
+
+		filter.setBypassAnonymousChains(false);
+		Assert.assertFalse(filter.isBypassed(request("/static/a.js")));
+	}
+
+	@Test
+	public void combinedChainsMustAllBeAnonymous() {
+		CustomDefaultFilterChainManager manager = new CustomDefaultFilterChainManager();
+		manager.reload(definitions("/public/**", "anon", "/**", "authc"));
+		Assert.assertFalse(filter(manager, true).isBypassed(request("/public/a")));
+		// 首个匹配生效的解析器只看首个匹配的过滤器链
+		Assert.assertTrue(filter(manager, false).isBypassed(request("/public/a")));
+		Assert.assertFalse(filter(manager, false).isBypassed(request("/private/a")));
+	}
+
+}
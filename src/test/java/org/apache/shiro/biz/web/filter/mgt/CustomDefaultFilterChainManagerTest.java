@@ -0,0 +1,134 @@
+package org.apache.shiro.biz.web.filter.mgt;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.shiro.biz.web.filter.metrics.FilterMetricsRegistry;
+import org.apache.shiro.web.filter.PathMatchingFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CustomDefaultFilterChainManagerTest {
+
+	static final class ProbeFilter extends PathMatchingFilter {
+
+		Object config(String path) {
+			return appliedPaths.get(path);
+		}
+
+		@Override
+		protected boolean onPreHandle(ServletRequest request, ServletResponse response, Object mappedValue) {
+			return true;
+		}
+
+	}
+
+	static Map<String, String> definitions(String... pairs) {
+		Map<String, String> definitions = new LinkedHashMap<String, String>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			definitions.put(pairs[i], pairs[i + 1]);
+		}
+		return definitions;
+	}
+
+	@Test
+	public void reloadHandsPathConfigToTheFilters() {
+		ProbeFilter probe = new ProbeFilter();
+		CustomDefaultFilterChainManager manager = new CustomDefaultFilterChainManager();
+		manager.addFilter("probe", probe);
+
+		Assert.assertTrue(manager.reload(definitions("/api/**", "probe[a]", "/**", "anon")));
+		Assert.assertArrayEquals(new String[] { "a" }, (Object[]) probe.config("/api/**"));
+
+		Assert.assertTrue(manager.reload(definitions("/api/**", "probe[b]", "/admin/**", "probe[c]")));
+		Assert.assertArrayEquals(new String[] { "b" }, (Object[]) probe.config("/api/**"));
+		Assert.assertArrayEquals(new String[] { "c" }, (Object[]) probe.config("/admin/**"));
+		Assert.assertEquals(Arrays.asList("/api/**", "/admin/**"), Arrays.asList(manager.getChainNames().toArray()));
+		Assert.assertFalse(manager.reload(definitions("/api/**", "probe[b]", "/admin/**", "probe[c]")));
+	}
+
+	@Test
+	public void failedReloadKeepsChainsAndConfig() {
+		ProbeFilter probe = new ProbeFilter();
+		CustomDefaultFilterChainManager manager = new CustomDefaultFilterChainManager();
+		manager.addFilter("probe", probe);
+		manager.reload(definitions("/api/**", "probe[a]"));
+		int version = manager.getChainVersion();
+		try {
+			manager.reload(definitions("/api/**", "probe[b]", "/x/**", "missing"));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Assert.assertEquals(version, manager.getChainVersion());
+		Assert.assertArrayEquals(new String[] { "a" }, (Object[]) probe.config("/api/**"));
+	}
+
+	@Test
+	public void combinedChainsAreReusedPerCombination() {
+		CustomDefaultFilterChainManager manager = new CustomDefaultFilterChainManager();
+		manager.addFilter("probe", new ProbeFilter());
+		manager.setCombinedCacheSize(2);
+		manager.reload(definitions("/a/**", "probe[a]", "/b/**", "probe[b]", "/**", "anon"));
+		Object combined = manager.getCombinedChain(Arrays.asList("/a/**", "/**"));
+		Assert.assertSame(combined, manager.getCombinedChain(Arrays.asList("/a/**", "/**")));
+		Assert.assertEquals(2, manager.getCombinedChain(Arrays.asList("/a/**", "/**")).size());
+		Assert.assertEquals(1, manager.getCombinedChain(Arrays.asList("/b/**", "/gone/**")).size());
+	}
+
+	@Test
+	public void metricsAreRecordedPerConfiguredChain() throws Exception {
+		final AtomicInteger passes = new AtomicInteger();
+		Filter pass = new Filter() {
+			@Override
+			public void init(FilterConfig filterConfig) {
+			}
+
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+				passes.incrementAndGet();
+				chain.doFilter(request, response);
+			}
+
+			@Override
+			public void destroy() {
+			}
+		};
+		FilterMetricsRegistry registry = new FilterMetricsRegistry();
+		registry.setJmxEnabled(false);
+		CustomDefaultFilterChainManager manager = new CustomDefaultFilterChainManager();
+		manager.addFilter("pass", pass);
+		manager.setMetricsRegistry(registry);
+		manager.reload(definitions("/a/**", "pass", "/b/**", "pass", "/**", "pass"));
+
+		final AtomicInteger targets = new AtomicInteger();
+		FilterChain target = new FilterChain() {
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response) {
+				targets.incrementAndGet();
+			}
+		};
+		manager.proxy(target, Arrays.asList("/a/**", "/**")).doFilter(null, null);
+		manager.proxy(target, Arrays.asList("/b/**", "/**")).doFilter(null, null);
+		manager.proxy(target, "/**").doFilter(null, null);
+
+		Assert.assertEquals(3, targets.get());
+		Assert.assertEquals(5, passes.get());
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("/a/**", "/b/**", "/**")), registry.getChainMetrics().keySet());
+		Assert.assertEquals(3, registry.getChainMetrics().get("/**").getInvocations());
+		Assert.assertEquals(1, registry.getChainMetrics().get("/a/**").getInvocations());
+		Assert.assertEquals(5, registry.getFilterMetrics().get("pass").getInvocations());
+	}
+
+}